@@ -0,0 +1,120 @@
+package io.whitfin.dropwizard.configuration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of reading a large ".env" file via {@link DotenvSource}.
+ *
+ * Compares reading the file onto the heap and parsing it on a single thread
+ * against mapping the file and parsing it in parallel chunks. The generated
+ * file mixes variables inside and outside of the namespace, comments, quoted
+ * values and repeated keys.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DotenvBenchmark {
+
+    /**
+     * The number of lines in the file.
+     */
+    @Param({ "10000", "100000", "1000000" })
+    public int lines;
+
+    /**
+     * Whether to map and parse the file in parallel.
+     */
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    /**
+     * The generated file.
+     */
+    private Path file;
+
+    /**
+     * The source being measured.
+     */
+    private DotenvSource source;
+
+    /**
+     * Generates the file for this trial.
+     *
+     * @throws IOException
+     *      if the file cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        this.file = Files.createTempFile("overrides", ".env");
+
+        try (final BufferedWriter writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < this.lines; i++) {
+                switch (i % 5) {
+                    case 0:
+                        writer.write(SubstitutionBenchmark.NAMESPACE + "_FLAGS_FLAG" + i + "=true");
+                        break;
+                    case 1:
+                        writer.write("export " + SubstitutionBenchmark.NAMESPACE + "_FLAGS_NAME" + i + "=\"value " + i + "\"");
+                        break;
+                    case 2:
+                        writer.write("UNRELATED_VARIABLE_" + i + "=ignored");
+                        break;
+                    case 3:
+                        writer.write("# generated comment " + i);
+                        break;
+                    default:
+                        writer.write(SubstitutionBenchmark.NAMESPACE + "_FLAGS_FLAG" + (i - 4) + "=false # repeated");
+                }
+                writer.newLine();
+            }
+        }
+
+        this.source = new DotenvSource(this.file, this.parallel ? 0 : Long.MAX_VALUE);
+    }
+
+    /**
+     * Removes the generated file.
+     *
+     * @throws IOException
+     *      if the file cannot be removed.
+     */
+    @TearDown
+    public void teardown() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * Measures reading all entries within the namespace.
+     *
+     * @return
+     *      the list of entries read.
+     * @throws IOException
+     *      if the file cannot be read.
+     */
+    @Benchmark
+    public List<OverrideEntry> read() throws IOException {
+        return this.source.read(SubstitutionBenchmark.NAMESPACE);
+    }
+}
@@ -0,0 +1,123 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of tokenizing environment keys, measured per segment.
+ *
+ * Compares the {@link KeyLexer} against the original approach of splitting,
+ * lower-casing and parsing each segment through Jackson. Run with "-prof gc"
+ * to see allocation per segment via the "gc.alloc.rate.norm" metric.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(LexerBenchmark.SEGMENTS)
+public class LexerBenchmark {
+
+    /**
+     * The total number of segments across all keys.
+     */
+    static final int SEGMENTS = 20;
+
+    /**
+     * A representative set of keys, with the namespace already removed.
+     */
+    private static final String[] KEYS = {
+        "SERVER_APPLICATIONCONNECTORS_0_PORT",
+        "SERVER_ADMINCONNECTORS_0_PORT",
+        "DATABASE_URL",
+        "DATABASE_MAX__SIZE",
+        "LOGGING_LEVEL",
+        "LOGGING_APPENDERS_1_THRESHOLD",
+        "HTTP___CLIENT_TIMEOUT"
+    };
+
+    /**
+     * The lexer being measured, shared across invocations for memoization.
+     */
+    private KeyLexer lexer;
+
+    /**
+     * The list of tokens, re-used across invocations.
+     */
+    private List<PathToken> tokens;
+
+    /**
+     * The mapper used by the original approach.
+     */
+    private ObjectMapper mapper;
+
+    /**
+     * Prepares the lexer and mapper for this trial.
+     */
+    @Setup
+    public void setup() {
+        this.lexer = new KeyLexer();
+        this.tokens = new ArrayList<>();
+        this.mapper = Jackson.newObjectMapper(new YAMLFactory());
+    }
+
+    /**
+     * Measures lexing all keys with the {@link KeyLexer}.
+     *
+     * @param blackhole
+     *      the JMH {@link Blackhole} to sink results into.
+     */
+    @Benchmark
+    public void lexer(Blackhole blackhole) {
+        for (String key : KEYS) {
+            this.lexer.lex(key, 0, key.length(), this.tokens);
+            blackhole.consume(this.tokens);
+            this.tokens.clear();
+        }
+    }
+
+    /**
+     * Measures tokenizing all keys via split, lower-case and Jackson.
+     *
+     * @param blackhole
+     *      the JMH {@link Blackhole} to sink results into.
+     */
+    @Benchmark
+    public void split(Blackhole blackhole) {
+        for (String key : KEYS) {
+            for (String segment : key.split("_")) {
+                segment = segment.toLowerCase();
+
+                JsonNode parsed;
+                try {
+                    parsed = this.mapper.readTree(segment);
+                } catch (IOException e) {
+                    parsed = TextNode.valueOf(segment);
+                }
+
+                blackhole.consume(parsed);
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import io.dropwizard.configuration.FileConfigurationSourceProvider;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase by phase benchmarks of {@link EnvironmentSubstitutor#open(String)}.
+ *
+ * Each benchmark isolates a single phase of substitution, with the inputs of
+ * that phase prepared ahead of time. Run with "-prof gc" to also report the
+ * allocation of each phase via the "gc.alloc.rate.norm" metric.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhaseBenchmark {
+
+    /**
+     * The number of variables in the environment.
+     */
+    @Param({ "50", "1000", "10000" })
+    public int envSize;
+
+    /**
+     * The size of the base configuration, in bytes.
+     */
+    @Param({ "1024", "1048576", "20971520" })
+    public int configSize;
+
+    /**
+     * The number of variables matching the namespace.
+     */
+    @Param({ "0", "50", "5000" })
+    public int overrides;
+
+    /**
+     * The delegate used to read the configuration file.
+     */
+    private ConfigurationSourceProvider delegate;
+
+    /**
+     * The mapper used to read and write configuration.
+     */
+    private ObjectMapper mapper;
+
+    /**
+     * The environment to scan for overrides.
+     */
+    private Map<String, String> environment;
+
+    /**
+     * The temporary file containing the base configuration.
+     */
+    private File file;
+
+    /**
+     * The raw bytes of the base configuration.
+     */
+    private byte[] bytes;
+
+    /**
+     * The parsed configuration, which overrides are applied to.
+     */
+    private ObjectNode config;
+
+    /**
+     * The environment entries matching the namespace.
+     */
+    private List<Map.Entry<String, String>> matched;
+
+    /**
+     * The tokenized paths of all matched entries.
+     */
+    private List<List<PathToken>> paths;
+
+    /**
+     * The parsed values of all matched entries.
+     */
+    private List<OverrideValue> values;
+
+    /**
+     * The trie of all matched entries.
+     */
+    private OverrideTrie trie;
+
+    /**
+     * Generates the configuration and environment, and prepares the inputs
+     * of every phase by running the phase before it.
+     *
+     * @throws IOException
+     *      if the configuration cannot be written or parsed.
+     */
+    @Setup
+    public void setup() throws IOException {
+        final SyntheticConfig config = SyntheticConfig.generate(this.configSize);
+
+        this.file = config.writeTemporary();
+        this.bytes = config.getBytes();
+        this.delegate = new FileConfigurationSourceProvider();
+        this.mapper = Jackson.newObjectMapper(new YAMLFactory());
+        this.environment = SyntheticEnvironment.generate(SubstitutionBenchmark.NAMESPACE, config, this.envSize, this.overrides);
+
+        this.config = this.parse();
+        this.matched = this.scan();
+        this.paths = this.tokenize();
+        this.values = this.values();
+        this.trie = new OverrideTrie();
+
+        for (int i = 0, j = this.paths.size(); i < j; i++) {
+            this.trie.insert(this.paths.get(i), this.values.get(i));
+        }
+
+        this.trie.apply(this.config);
+    }
+
+    /**
+     * Removes the temporary configuration file.
+     */
+    @TearDown
+    public void teardown() {
+        this.file.delete();
+    }
+
+    /**
+     * Measures opening and draining the delegate source.
+     *
+     * @param blackhole
+     *      the JMH {@link Blackhole} to sink results into.
+     * @throws IOException
+     *      if the configuration cannot be opened.
+     */
+    @Benchmark
+    public void delegateRead(Blackhole blackhole) throws IOException {
+        try (final InputStream in = this.delegate.open(this.file.getPath())) {
+            SubstitutionBenchmark.drain(in, blackhole);
+        }
+    }
+
+    /**
+     * Measures parsing the base YAML into a tree.
+     *
+     * @return
+     *      the parsed configuration tree.
+     * @throws IOException
+     *      if the configuration cannot be parsed.
+     */
+    @Benchmark
+    public ObjectNode yamlParse() throws IOException {
+        return this.parse();
+    }
+
+    /**
+     * Measures scanning the environment for namespaced variables.
+     *
+     * @return
+     *      the list of matched environment entries.
+     */
+    @Benchmark
+    public List<Map.Entry<String, String>> envScan() {
+        return this.scan();
+    }
+
+    /**
+     * Measures tokenizing all matched keys into paths.
+     *
+     * @return
+     *      the list of tokenized paths.
+     */
+    @Benchmark
+    public List<List<PathToken>> keyTokenize() {
+        return this.tokenize();
+    }
+
+    /**
+     * Measures parsing all matched override values.
+     *
+     * @return
+     *      the list of parsed values.
+     */
+    @Benchmark
+    public List<OverrideValue> valueParse() {
+        return this.values();
+    }
+
+    /**
+     * Measures applying all overrides to the tree one path at a time.
+     *
+     * This is the baseline for {@link #trieApply()}, with every override
+     * walking down from the root on its own. The tree is shared across
+     * invocations; as all paths were already created during setup, this
+     * measures the steady state of replacing values.
+     *
+     * @return
+     *      the mutated configuration tree.
+     */
+    @Benchmark
+    public ObjectNode treeApply() {
+        return this.apply();
+    }
+
+    /**
+     * Measures applying all overrides to the tree via {@link OverrideTrie}.
+     *
+     * Unlike {@link #treeApply()}, overrides sharing a parent share a single
+     * navigation of the tree, rather than each walking down from the root.
+     *
+     * @return
+     *      the number of overrides applied.
+     * @throws IOException
+     *      if the overrides violate any limit.
+     */
+    @Benchmark
+    public int trieApply() throws IOException {
+        return this.trie.apply(this.config);
+    }
+
+    /**
+     * Measures writing the substituted tree back out as YAML.
+     *
+     * @return
+     *      the serialized configuration.
+     * @throws IOException
+     *      if the configuration cannot be written.
+     */
+    @Benchmark
+    public byte[] writeValueAsBytes() throws IOException {
+        return this.mapper.writeValueAsBytes(this.config);
+    }
+
+    /**
+     * Parses the base configuration bytes into a tree.
+     */
+    private ObjectNode parse() throws IOException {
+        return this.mapper.readValue(this.bytes, ObjectNode.class);
+    }
+
+    /**
+     * Scans the environment for variables inside the namespace.
+     */
+    private List<Map.Entry<String, String>> scan() {
+        final String prefix = SubstitutionBenchmark.NAMESPACE + "_";
+        final List<Map.Entry<String, String>> matched = new ArrayList<>();
+
+        for (Map.Entry<String, String> prop : this.environment.entrySet()) {
+            if (prop.getKey().startsWith(prefix)) {
+                matched.add(prop);
+            }
+        }
+
+        return matched;
+    }
+
+    /**
+     * Tokenizes all matched keys into paths.
+     */
+    private List<List<PathToken>> tokenize() {
+        final int offset = SubstitutionBenchmark.NAMESPACE.length() + 1;
+        final KeyLexer lexer = new KeyLexer();
+        final List<List<PathToken>> paths = new ArrayList<>(this.matched.size());
+
+        for (Map.Entry<String, String> prop : this.matched) {
+            final String key = prop.getKey();
+            final List<PathToken> tokens = new ArrayList<>();
+
+            lexer.lex(key, offset, key.length(), tokens);
+            paths.add(tokens);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Parses all matched override values.
+     */
+    private List<OverrideValue> values() {
+        final ValueParser parser = new ValueParser(this.mapper);
+        final List<OverrideValue> values = new ArrayList<>(this.matched.size());
+
+        for (Map.Entry<String, String> prop : this.matched) {
+            final OverrideValue value = new OverrideValue(prop.getKey(), prop.getValue(), null, parser);
+            value.generic();
+            values.add(value);
+        }
+
+        return values;
+    }
+
+    /**
+     * Applies all parsed overrides to the configuration tree, one at a time.
+     */
+    private ObjectNode apply() {
+        final KeyIndex index = new KeyIndex();
+        for (int i = 0, j = this.paths.size(); i < j; i++) {
+            set(this.config, this.paths.get(i), this.values.get(i), index);
+        }
+        return this.config;
+    }
+
+    /**
+     * Sets a value at a path within a tree, walking down from the root.
+     *
+     * Missing (or null) containers along the path are created to match the
+     * type of the following token, and keyed elements are never created.
+     */
+    private static boolean set(ObjectNode root, List<PathToken> path, OverrideValue value, KeyIndex index) {
+        final int last = path.size() - 1;
+
+        JsonNode current = root;
+
+        // walk down to the parent of the final token
+        for (int i = 0; i < last; i++) {
+            final PathToken token = PathWriter.resolve(current, path.get(i), index);
+            if (token.getType() == PathToken.Type.KEY) {
+                return false;
+            }
+
+            JsonNode child = PathWriter.child(current, token);
+
+            // create any missing containers along the way
+            if (child == null || child.isNull()) {
+                child = path.get(i + 1).getType() != PathToken.Type.FIELD
+                    ? root.arrayNode()
+                    : root.objectNode();
+
+                if (!PathWriter.put(current, token, child)) {
+                    return false;
+                }
+            }
+
+            current = child;
+        }
+
+        final PathToken token = PathWriter.resolve(current, path.get(last), index);
+        if (token.getType() == PathToken.Type.KEY) {
+            return false;
+        }
+
+        final JsonNode existing = PathWriter.child(current, token);
+
+        return PathWriter.put(current, token, value.resolve(ValueType.of(existing)));
+    }
+}
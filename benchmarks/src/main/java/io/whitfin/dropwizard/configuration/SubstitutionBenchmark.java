@@ -0,0 +1,140 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.FileConfigurationSourceProvider;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmarks of {@link EnvironmentSubstitutor#open(String)}.
+ *
+ * Each invocation opens the configuration through a file based delegate and
+ * drains the substituted stream, exactly as Dropwizard would at startup.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SubstitutionBenchmark {
+
+    /**
+     * The namespace used for all generated overrides.
+     */
+    static final String NAMESPACE = "BENCH";
+
+    /**
+     * The number of variables in the environment.
+     */
+    @Param({ "50", "1000", "10000" })
+    public int envSize;
+
+    /**
+     * The size of the base configuration, in bytes.
+     */
+    @Param({ "1024", "1048576", "20971520" })
+    public int configSize;
+
+    /**
+     * The number of variables matching the namespace.
+     */
+    @Param({ "0", "50", "5000" })
+    public int overrides;
+
+    /**
+     * The strategy used to substitute overrides into the stream.
+     */
+    @Param({ "TREE", "STREAMING", "SPLICE" })
+    public SubstitutionMode mode;
+
+    /**
+     * The temporary file containing the base configuration.
+     */
+    private File file;
+
+    /**
+     * The substitutor being measured.
+     */
+    private EnvironmentSubstitutor substitutor;
+
+    /**
+     * Generates the configuration and environment for this trial.
+     *
+     * @throws IOException
+     *      if the configuration cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        final SyntheticConfig config = SyntheticConfig.generate(this.configSize);
+        final Map<String, String> environment = SyntheticEnvironment.generate(NAMESPACE, config, this.envSize, this.overrides);
+
+        this.file = config.writeTemporary();
+        this.substitutor = EnvironmentSubstitutor
+            .builder(NAMESPACE, new FileConfigurationSourceProvider())
+            .mapper(Jackson.newObjectMapper(new YAMLFactory()))
+            .environment(environment)
+            .mode(this.mode)
+            .build();
+    }
+
+    /**
+     * Removes the temporary configuration file.
+     */
+    @TearDown
+    public void teardown() {
+        this.file.delete();
+    }
+
+    /**
+     * Measures a full open of the configuration, including draining the stream.
+     *
+     * @param blackhole
+     *      the JMH {@link Blackhole} to sink results into.
+     * @throws IOException
+     *      if the configuration cannot be opened.
+     */
+    @Benchmark
+    public void open(Blackhole blackhole) throws IOException {
+        try (final InputStream in = this.substitutor.open(this.file.getPath())) {
+            drain(in, blackhole);
+        }
+    }
+
+    /**
+     * Drains an {@link InputStream} into a {@link Blackhole}.
+     *
+     * @param in
+     *      the stream to drain.
+     * @param blackhole
+     *      the JMH {@link Blackhole} to sink results into.
+     * @throws IOException
+     *      if the stream cannot be read.
+     */
+    static void drain(InputStream in, Blackhole blackhole) throws IOException {
+        final byte[] buffer = new byte[8192];
+
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            blackhole.consume(read);
+        }
+    }
+}
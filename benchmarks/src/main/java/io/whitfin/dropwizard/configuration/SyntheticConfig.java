@@ -0,0 +1,142 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A generator of synthetic YAML configuration documents.
+ *
+ * Documents are built from repeated sections containing a mix of strings,
+ * numbers, booleans, nested objects and arrays. Generation is seeded, so the
+ * same size always produces the same document (and the same set of leaves).
+ */
+public class SyntheticConfig {
+
+    /**
+     * The seed used for all generated values.
+     */
+    private static final long SEED = 0x5eed;
+
+    /**
+     * The raw YAML bytes of the generated document.
+     */
+    private final byte[] bytes;
+
+    /**
+     * The paths of all scalar leaves in the document, as upper-cased segments.
+     */
+    private final List<String> leaves;
+
+    /**
+     * Create a new instance.
+     *
+     * @param bytes
+     *      the raw YAML bytes of the document.
+     * @param leaves
+     *      the paths of all scalar leaves in the document.
+     */
+    private SyntheticConfig(byte[] bytes, List<String> leaves) {
+        this.bytes = bytes;
+        this.leaves = Collections.unmodifiableList(leaves);
+    }
+
+    /**
+     * Generates a document of (at least) the provided size in bytes.
+     *
+     * @param size
+     *      the target size of the document, in bytes.
+     * @return
+     *      a new {@link SyntheticConfig} instance.
+     */
+    public static SyntheticConfig generate(int size) {
+        final Random random = new Random(SEED);
+        final StringBuilder builder = new StringBuilder(size + 512);
+        final List<String> leaves = new ArrayList<>();
+
+        // keep appending sections until we reach the target size
+        for (int i = 0; builder.length() < size; i++) {
+            final String section = "SECTION" + i;
+
+            builder.append("section").append(i).append(":\n");
+
+            builder.append("  name: \"section-").append(i).append("\"\n");
+            leaves.add(section + "_NAME");
+
+            builder.append("  port: ").append(8000 + random.nextInt(1000)).append('\n');
+            leaves.add(section + "_PORT");
+
+            builder.append("  enabled: ").append(random.nextBoolean()).append('\n');
+            leaves.add(section + "_ENABLED");
+
+            builder.append("  ratio: ").append(random.nextInt(100) / 100.0).append('\n');
+            leaves.add(section + "_RATIO");
+
+            builder.append("  nested:\n");
+            builder.append("    host: \"host-").append(i).append(".example.com\"\n");
+            leaves.add(section + "_NESTED_HOST");
+
+            builder.append("    timeout: ").append(random.nextInt(60000)).append('\n');
+            leaves.add(section + "_NESTED_TIMEOUT");
+
+            builder.append("  items:\n");
+            for (int j = 0; j < 2; j++) {
+                builder.append("    - id: ").append(random.nextLong()).append('\n');
+                leaves.add(section + "_ITEMS_" + j + "_ID");
+
+                builder.append("      value: \"").append(Long.toHexString(random.nextLong())).append("\"\n");
+                leaves.add(section + "_ITEMS_" + j + "_VALUE");
+            }
+        }
+
+        return new SyntheticConfig(builder.toString().getBytes(StandardCharsets.UTF_8), leaves);
+    }
+
+    /**
+     * Retrieves the raw YAML bytes of this document.
+     *
+     * @return
+     *      the raw bytes of the document.
+     */
+    public byte[] getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Retrieves the paths of all scalar leaves in this document.
+     *
+     * Each path is formatted as an environment key suffix, such as
+     * "SECTION1_NESTED_HOST" or "SECTION1_ITEMS_0_ID".
+     *
+     * @return
+     *      a list of leaf paths.
+     */
+    public List<String> getLeaves() {
+        return this.leaves;
+    }
+
+    /**
+     * Writes this document to a temporary file.
+     *
+     * @return
+     *      a temporary {@link File} which is deleted on exit.
+     * @throws IOException
+     *      if the file cannot be written.
+     */
+    public File writeTemporary() throws IOException {
+        final File file = File.createTempFile("synthetic-config", ".yml");
+        file.deleteOnExit();
+
+        try (final OutputStream out = new FileOutputStream(file)) {
+            out.write(this.bytes);
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,94 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A generator of synthetic process environments.
+ *
+ * Environments contain a number of overrides matching a namespace and
+ * targeting leaves of a {@link SyntheticConfig}, padded out with noise
+ * variables outside of the namespace. Generation is seeded, so the same
+ * arguments always produce the same environment.
+ */
+public class SyntheticEnvironment {
+
+    /**
+     * The seed used for all generated values.
+     */
+    private static final long SEED = 0xe4e;
+
+    /**
+     * Private constructor as this is a utility class.
+     */
+    private SyntheticEnvironment() { }
+
+    /**
+     * Generates a new environment.
+     *
+     * Overrides target existing leaves of the configuration, spread evenly
+     * across the document. If there are more overrides than leaves, the rest
+     * will target new paths which do not exist in the base configuration.
+     *
+     * @param namespace
+     *      the namespace to create overrides within.
+     * @param config
+     *      the configuration to target with overrides.
+     * @param size
+     *      the total number of variables in the environment.
+     * @param overrides
+     *      the number of variables matching the namespace.
+     * @return
+     *      an unmodifiable environment mapping.
+     */
+    public static Map<String, String> generate(String namespace, SyntheticConfig config, int size, int overrides) {
+        final Random random = new Random(SEED);
+        final List<String> leaves = config.getLeaves();
+        final Map<String, String> environment = new HashMap<>();
+
+        // spread the overrides evenly across the available leaves
+        final int existing = Math.min(overrides, leaves.size());
+        final int stride = existing == 0 ? 1 : leaves.size() / existing;
+
+        for (int i = 0; i < overrides; i++) {
+            final String leaf = i < existing
+                ? leaves.get(i * stride)
+                : "EXTRA_FIELD" + i;
+
+            environment.put(namespace + "_" + leaf, value(random, i));
+        }
+
+        // pad the rest of the environment with unrelated variables
+        for (int i = 0; environment.size() < size; i++) {
+            environment.put("NOISE_VARIABLE_" + i, "/usr/local/lib/noise/" + Long.toHexString(random.nextLong()));
+        }
+
+        return Collections.unmodifiableMap(environment);
+    }
+
+    /**
+     * Generates a value for an override, rotating through value types.
+     *
+     * @param random
+     *      the random source to generate values from.
+     * @param index
+     *      the index of the override being generated.
+     * @return
+     *      a new override value.
+     */
+    private static String value(Random random, int index) {
+        switch (index % 4) {
+            case 0:
+                return "host-" + Long.toHexString(random.nextLong()) + ".example.com";
+            case 1:
+                return Integer.toString(random.nextInt(65536));
+            case 2:
+                return Boolean.toString(random.nextBoolean());
+            default:
+                return Double.toString(random.nextInt(1000) / 10.0);
+        }
+    }
+}
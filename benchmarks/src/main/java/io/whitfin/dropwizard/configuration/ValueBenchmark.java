@@ -0,0 +1,108 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of parsing override values, measured per value.
+ *
+ * Compares the {@link ValueParser} against the original approach of handing
+ * every value to Jackson and catching the failure for plain strings.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ValueBenchmark.VALUES)
+public class ValueBenchmark {
+
+    /**
+     * The total number of values being parsed.
+     */
+    static final int VALUES = 8;
+
+    /**
+     * A representative set of override values.
+     */
+    private static final String[] RAW = {
+        "db-primary.internal.example.com",
+        "s3cr3t:p@ssw0rd",
+        "8080",
+        "true",
+        "0.75",
+        "null",
+        "[\"a\", \"b\"]",
+        "{\"level\": \"DEBUG\"}"
+    };
+
+    /**
+     * The parser being measured.
+     */
+    private ValueParser parser;
+
+    /**
+     * The mapper used by the original approach.
+     */
+    private ObjectMapper mapper;
+
+    /**
+     * Prepares the parser and mapper for this trial.
+     */
+    @Setup
+    public void setup() {
+        this.mapper = Jackson.newObjectMapper(new YAMLFactory());
+        this.parser = new ValueParser(this.mapper);
+    }
+
+    /**
+     * Measures parsing all values with the {@link ValueParser}.
+     *
+     * @param blackhole
+     *      the JMH {@link Blackhole} to sink results into.
+     */
+    @Benchmark
+    public void sniffer(Blackhole blackhole) {
+        for (String value : RAW) {
+            blackhole.consume(this.parser.parse(value).getNode());
+        }
+    }
+
+    /**
+     * Measures parsing all values via Jackson, falling back to strings.
+     *
+     * @param blackhole
+     *      the JMH {@link Blackhole} to sink results into.
+     */
+    @Benchmark
+    public void jackson(Blackhole blackhole) {
+        for (String value : RAW) {
+            JsonNode parsed;
+            try {
+                parsed = this.mapper.readTree(value);
+            } catch (IOException e) {
+                parsed = TextNode.valueOf(value);
+            }
+            blackhole.consume(parsed);
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An {@link OverrideSource} reading a ".env" file of "KEY=VALUE" lines.
+ *
+ * Lines may be prefixed with "export", blank lines and lines starting with
+ * "#" are ignored, as are lines without a "=". Values may be wrapped in
+ * single quotes (taken literally) or double quotes (supporting the escapes
+ * "\n", "\r", "\t", "\"" and "\\"), and unquoted values may be followed by
+ * a comment starting with " #". Values can't span multiple lines, so every
+ * line can be parsed independently of the others.
+ *
+ * A missing file is treated as empty, as such files are usually optional,
+ * and any leading UTF-8 byte order mark is ignored.
+ *
+ * Large files (such as generated feature flags) are memory mapped rather than
+ * read onto the heap, split into chunks on line boundaries, and the chunks
+ * parsed in parallel on a shared {@link ForkJoinPool}. Lines are read directly
+ * from the mapped bytes, and lines outside of every namespace are skipped without
+ * being decoded at all. Each remaining line is decoded into an {@link OverrideEntry}
+ * of two strings; the entries of all chunks are concatenated in file order, and
+ * then sorted and merged with other sources before their keys are lexed, as with
+ * any other source.
+ */
+final class DotenvSource extends OverrideSources.ScanningSource {
+
+    /**
+     * The size of file above which the file is mapped and parsed in parallel.
+     */
+    private static final long PARALLEL_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The size of chunk below which a chunk is no longer split.
+     */
+    private static final int CHUNK_SIZE = 128 * 1024;
+
+    /**
+     * The bytes of a UTF-8 byte order mark.
+     */
+    private static final byte[] BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    /**
+     * The path of the file to read.
+     */
+    private final Path path;
+
+    /**
+     * The size of file above which the file is parsed in parallel.
+     */
+    private final long threshold;
+
+    /**
+     * Create a new instance.
+     *
+     * @param path
+     *      the path of the file to read.
+     */
+    DotenvSource(Path path) {
+        this(path, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Create a new instance with a custom parallel threshold.
+     *
+     * @param path
+     *      the path of the file to read.
+     * @param threshold
+     *      the size of file above which the file is parsed in parallel.
+     */
+    DotenvSource(Path path, long threshold) {
+        this.path = Objects.requireNonNull(path);
+        this.threshold = threshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    List<OverrideEntry> read(NamespaceTrie namespaces) throws IOException {
+        try (final FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Override file too large to read: " + this.path);
+            }
+
+            // small files aren't worth splitting up
+            if (size <= this.threshold) {
+                final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading until full
+                }
+                return new Chunk(buffer, bom(buffer, buffer.position()), buffer.position(), namespaces).compute();
+            }
+
+            final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return Pool.INSTANCE.invoke(new Chunk(mapped, bom(mapped, (int) size), (int) size, namespaces));
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Path path() {
+        return this.path;
+    }
+
+    /**
+     * Measures any UTF-8 byte order mark at the start of a file.
+     *
+     * @param buffer
+     *      the bytes of the whole file.
+     * @param end
+     *      the number of bytes in the file.
+     * @return
+     *      the length of the byte order mark, or 0 if there is none.
+     */
+    private static int bom(ByteBuffer buffer, int end) {
+        if (end < BOM.length) {
+            return 0;
+        }
+        for (int i = 0; i < BOM.length; i++) {
+            if (buffer.get(i) != BOM[i]) {
+                return 0;
+            }
+        }
+        return BOM.length;
+    }
+
+    /**
+     * Parses a single line of a file, appending any entry within a namespace.
+     *
+     * @param content
+     *      the content to read the line from.
+     * @param start
+     *      the index the line starts at, inclusive.
+     * @param end
+     *      the index the line ends at, exclusive of any newline.
+     * @param namespaces
+     *      the namespaces of allowed configuration overrides.
+     * @param entries
+     *      the list to append any parsed entry to.
+     */
+    static void parse(CharSequence content, int start, int end, NamespaceTrie namespaces, List<OverrideEntry> entries) {
+        // trim the line from both ends, including any carriage return
+        while (start < end && Character.isWhitespace(content.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(content.charAt(end - 1))) {
+            end--;
+        }
+
+        // skip blank lines and comments
+        if (start == end || content.charAt(start) == '#') {
+            return;
+        }
+
+        // skip any leading export keyword
+        if (end - start > 7 && regionEquals(content, start, "export") && Character.isWhitespace(content.charAt(start + 6))) {
+            start += 7;
+            while (start < end && Character.isWhitespace(content.charAt(start))) {
+                start++;
+            }
+        }
+
+        // lines without an assignment are ignored
+        int split = start;
+        while (split < end && content.charAt(split) != '=') {
+            split++;
+        }
+        if (split == end) {
+            return;
+        }
+
+        // skip any keys outside of every namespace before touching the value
+        int keyEnd = split;
+        while (keyEnd > start && Character.isWhitespace(content.charAt(keyEnd - 1))) {
+            keyEnd--;
+        }
+        final int match = namespaces.match(content, start, keyEnd, '_', false);
+        if (match < 0 || keyEnd - start <= namespaces.get(match).length() + 1) {
+            return;
+        }
+
+        int valueStart = split + 1;
+        while (valueStart < end && Character.isWhitespace(content.charAt(valueStart))) {
+            valueStart++;
+        }
+
+        final String value = value(content, valueStart, end);
+        if (value != null) {
+            entries.add(new OverrideEntry(content.subSequence(start, keyEnd).toString(), value));
+        }
+    }
+
+    /**
+     * Parses the value of a line.
+     *
+     * @param content
+     *      the content to read the value from.
+     * @param start
+     *      the index the value starts at, inclusive, which always follows
+     *      the "=" of the line.
+     * @param end
+     *      the index the line ends at, exclusive.
+     * @return
+     *      the parsed value, or null if a quoted value is never closed.
+     */
+    private static String value(CharSequence content, int start, int end) {
+        if (start == end) {
+            return "";
+        }
+
+        final char quote = content.charAt(start);
+
+        // single quoted values are literal
+        if (quote == '\'') {
+            for (int i = start + 1; i < end; i++) {
+                if (content.charAt(i) == '\'') {
+                    return content.subSequence(start + 1, i).toString();
+                }
+            }
+            return null;
+        }
+
+        // double quoted values support a small set of escapes
+        if (quote == '"') {
+            final StringBuilder builder = new StringBuilder(end - start);
+            for (int i = start + 1; i < end; i++) {
+                final char c = content.charAt(i);
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\' || i + 1 == end) {
+                    builder.append(c);
+                    continue;
+                }
+                final char escaped = content.charAt(++i);
+                switch (escaped) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case '"':
+                    case '\\':
+                        builder.append(escaped);
+                        break;
+                    default:
+                        builder.append(c).append(escaped);
+                }
+            }
+            return null;
+        }
+
+        // unquoted values end at any trailing comment, which may be all there is
+        for (int i = start; i < end; i++) {
+            if (content.charAt(i) == '#' && Character.isWhitespace(content.charAt(i - 1))) {
+                end = i;
+                while (end > start && Character.isWhitespace(content.charAt(end - 1))) {
+                    end--;
+                }
+                break;
+            }
+        }
+        return content.subSequence(start, end).toString();
+    }
+
+    /**
+     * Determines whether a region of content begins with a string.
+     *
+     * @param content
+     *      the content to check.
+     * @param start
+     *      the index to check from.
+     * @param expected
+     *      the string to check for.
+     * @return
+     *      true if the content contains the string at the index.
+     */
+    private static boolean regionEquals(CharSequence content, int start, String expected) {
+        final int length = expected.length();
+        if (start + length > content.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (content.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A range of lines within a file, parsed as a fork/join task.
+     *
+     * Ranges larger than {@link #CHUNK_SIZE} are split in two at the first
+     * line boundary after the midpoint, and the two halves are parsed in
+     * parallel; the results are concatenated in file order, so later lines
+     * still win over earlier lines.
+     */
+    private static final class Chunk extends RecursiveTask<List<OverrideEntry>> {
+
+        /**
+         * The serialization version of this task.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The bytes of the whole file, only ever read via absolute gets.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * The index this chunk starts at, inclusive.
+         */
+        private final int start;
+
+        /**
+         * The index this chunk ends at, exclusive.
+         */
+        private final int end;
+
+        /**
+         * The namespaces of allowed configuration overrides.
+         */
+        private final NamespaceTrie namespaces;
+
+        /**
+         * Create a new instance.
+         *
+         * @param buffer
+         *      the bytes of the whole file.
+         * @param start
+         *      the index this chunk starts at, inclusive.
+         * @param end
+         *      the index this chunk ends at, exclusive.
+         * @param namespaces
+         *      the namespaces of allowed configuration overrides.
+         */
+        private Chunk(ByteBuffer buffer, int start, int end, NamespaceTrie namespaces) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.namespaces = namespaces;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected List<OverrideEntry> compute() {
+            // only split when running in a pool, as small files are read inline
+            if (inForkJoinPool() && this.end - this.start > CHUNK_SIZE) {
+                // split just after the first newline past the midpoint
+                int split = this.start + (this.end - this.start) / 2;
+                while (split < this.end && this.buffer.get(split) != '\n') {
+                    split++;
+                }
+
+                if (++split < this.end) {
+                    final Chunk left = new Chunk(this.buffer, this.start, split, this.namespaces);
+                    final Chunk right = new Chunk(this.buffer, split, this.end, this.namespaces);
+
+                    left.fork();
+
+                    final List<OverrideEntry> after = right.compute();
+                    final List<OverrideEntry> before = left.join();
+
+                    before.addAll(after);
+                    return before;
+                }
+            }
+
+            final List<OverrideEntry> entries = new ArrayList<>();
+            final Line line = new Line(this.buffer);
+
+            // parse every line in turn, including a final line without a newline
+            for (int i = this.start; i < this.end; ) {
+                int next = i;
+                boolean ascii = true;
+
+                while (next < this.end) {
+                    final byte b = this.buffer.get(next);
+                    if (b == '\n') {
+                        break;
+                    }
+                    if (b < 0) {
+                        ascii = false;
+                    }
+                    next++;
+                }
+
+                if (ascii) {
+                    line.reset(i, next - i);
+                    parse(line, 0, line.length(), this.namespaces, entries);
+                } else {
+                    final String decoded = line.decode(i, next - i);
+                    parse(decoded, 0, decoded.length(), this.namespaces, entries);
+                }
+
+                i = next + 1;
+            }
+
+            return entries;
+        }
+    }
+
+    /**
+     * A view of a line of ASCII bytes as characters, without copying.
+     *
+     * Lines containing any other bytes are decoded as UTF-8 instead, via
+     * {@link #decode(int, int)}. Instances are re-used for every line of a
+     * chunk, and only ever copy bytes when a sub-sequence is taken.
+     */
+    private static final class Line implements CharSequence {
+
+        /**
+         * The bytes of the whole file.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * The index of the first byte of this line.
+         */
+        private int offset;
+
+        /**
+         * The number of bytes in this line.
+         */
+        private int length;
+
+        /**
+         * Create a new instance.
+         *
+         * @param buffer
+         *      the bytes of the whole file.
+         */
+        private Line(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Moves this view to another line.
+         *
+         * @param offset
+         *      the index of the first byte of the line.
+         * @param length
+         *      the number of bytes in the line.
+         */
+        private void reset(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Decodes a range of bytes as UTF-8.
+         *
+         * @param offset
+         *      the index of the first byte to decode.
+         * @param length
+         *      the number of bytes to decode.
+         * @return
+         *      the decoded string.
+         */
+        private String decode(int offset, int length) {
+            final byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = this.buffer.get(offset + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public char charAt(int index) {
+            return (char) this.buffer.get(this.offset + index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return this.decode(this.offset + start, end - start);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return this.decode(this.offset, this.length);
+        }
+    }
+
+    /**
+     * Lazy holder of the pool used to parse large files.
+     *
+     * The pool is only created once a large file is read, and its threads
+     * are daemon threads, so it never keeps an application alive.
+     */
+    private static final class Pool {
+
+        /**
+         * The shared pool, sized to the available processors.
+         */
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+}
@@ -3,19 +3,30 @@ package io.whitfin.dropwizard.configuration;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-import com.zackehh.dotnotes.DotNotes;
-import com.zackehh.dotnotes.ParseException;
 import io.dropwizard.configuration.ConfigurationSourceProvider;
 import io.dropwizard.jackson.Jackson;
-import io.whitfin.dottie.joiner.NotationJoiner;
+import io.whitfin.dropwizard.configuration.SubstitutionMetrics.Measurement;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A delegating {@link ConfigurationSourceProvider} which replaces variables
@@ -35,9 +46,64 @@ public class EnvironmentSubstitutor implements ConfigurationSourceProvider {
     private final ObjectMapper mapper;
 
     /**
-     * The namespace prefix to use to detect envrionment variables.
+     * The namespace prefixes to use to detect environment variables.
      */
-    private final String namespace;
+    private final NamespaceTrie namespaces;
+
+    /**
+     * The key segment treated as a wildcard, if enabled.
+     */
+    private final String wildcard;
+
+    /**
+     * The sources to read overrides from, in increasing precedence.
+     */
+    private final List<OverrideSource> sources;
+
+    /**
+     * The variables to interpolate placeholders with, if enabled.
+     */
+    private final Map<String, String> interpolation;
+
+    /**
+     * The strategy used to substitute overrides into a stream.
+     */
+    private final SubstitutionMode mode;
+
+    /**
+     * The cache of substituted configurations, if enabled.
+     */
+    private final SubstitutionCache cache;
+
+    /**
+     * The metrics to record substitution phases in, if enabled.
+     */
+    private final SubstitutionMetrics metrics;
+
+    /**
+     * The configuration class to resolve overrides against, if any.
+     */
+    private final Class<?> configuration;
+
+    /**
+     * The limits enforced on all overrides.
+     */
+    private final SubstitutionLimits limits;
+
+    /**
+     * The mode of handling failed overrides.
+     */
+    private final FailureMode failureMode;
+
+    /**
+     * The collector of the latest substitution, if any.
+     */
+    private volatile SubstitutionReport.Collector collector;
+
+    /**
+     * The compiled overrides of this instance, lazily initialized.
+     */
+    private volatile OverridePlan plan;
 
     /**
      * Create a new instance.
@@ -48,7 +114,7 @@ public class EnvironmentSubstitutor implements ConfigurationSourceProvider {
      *      the underlying {@link ConfigurationSourceProvider}.
      */
     public EnvironmentSubstitutor(String namespace, ConfigurationSourceProvider delegate) {
-        this(namespace, delegate, Jackson.newObjectMapper(new YAMLFactory()));
+        this(builder(namespace, delegate));
     }
 
     /**
@@ -62,9 +128,74 @@ public class EnvironmentSubstitutor implements ConfigurationSourceProvider {
      *      a custom {@link ObjectMapper} to use when reading configuration.
      */
     public EnvironmentSubstitutor(String namespace, ConfigurationSourceProvider delegate, ObjectMapper mapper) {
-        this.namespace = Objects.requireNonNull(namespace).toUpperCase();
-        this.delegate = Objects.requireNonNull(delegate);
-        this.mapper = Objects.requireNonNull(mapper);
+        this(builder(namespace, delegate).mapper(mapper));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param namespace
+     *      the namespace of allowed configuration overrides.
+     * @param delegate
+     *      the underlying {@link ConfigurationSourceProvider}.
+     * @param mapper
+     *      a custom {@link ObjectMapper} to use when reading configuration.
+     * @param environment
+     *      the environment to read overrides from, rather than the process.
+     */
+    public EnvironmentSubstitutor(String namespace, ConfigurationSourceProvider delegate, ObjectMapper mapper, Map<String, String> environment) {
+        this(builder(namespace, delegate).mapper(mapper).environment(environment));
+    }
+
+    /**
+     * Create a new instance which resolves overrides against a class.
+     *
+     * @param namespace
+     *      the namespace of allowed configuration overrides.
+     * @param delegate
+     *      the underlying {@link ConfigurationSourceProvider}.
+     * @param configuration
+     *      the configuration class the configuration is bound to.
+     */
+    public EnvironmentSubstitutor(String namespace, ConfigurationSourceProvider delegate, Class<?> configuration) {
+        this(builder(namespace, delegate).configuration(configuration));
+    }
+
+    /**
+     * Create a new instance from a {@link Builder}.
+     *
+     * @param builder
+     *      the builder containing all options.
+     */
+    private EnvironmentSubstitutor(Builder builder) {
+        this.namespaces = new NamespaceTrie(builder.namespaces);
+        this.wildcard = builder.wildcard;
+        this.delegate = builder.delegate;
+        this.mapper = builder.mapper == null ? Jackson.newObjectMapper(new YAMLFactory()) : builder.mapper;
+        this.sources = builder.sources.isEmpty()
+            ? Collections.singletonList(OverrideSources.environment(builder.environment))
+            : Collections.unmodifiableList(new ArrayList<>(builder.sources));
+        this.interpolation = builder.interpolation;
+        this.mode = builder.mode;
+        this.cache = builder.cache;
+        this.metrics = builder.metrics;
+        this.configuration = builder.configuration;
+        this.limits = builder.limits;
+        this.failureMode = builder.failureMode;
+    }
+
+    /**
+     * Creates a new {@link Builder} to configure an instance.
+     *
+     * @param namespace
+     *      the namespace of allowed configuration overrides.
+     * @param delegate
+     *      the underlying {@link ConfigurationSourceProvider}.
+     * @return
+     *      a new {@link Builder} instance.
+     */
+    public static Builder builder(String namespace, ConfigurationSourceProvider delegate) {
+        return new Builder(namespace, delegate);
     }
 
     /**
@@ -72,68 +203,1030 @@ public class EnvironmentSubstitutor implements ConfigurationSourceProvider {
      */
     @Override
     public InputStream open(String path) throws IOException {
-        // use the delegate to open the base configuration
-        try (final InputStream in = this.delegate.open(path)) {
-            // read in the configuration object and construct a notation joiner
-            final ObjectNode config = this.mapper.readValue(in, ObjectNode.class);
-            final NotationJoiner joiner = new NotationJoiner();
-
-            // iterate all pairs of properties in the process environment
-            for (Map.Entry<String, String> prop : System.getenv().entrySet()) {
-                // pull the next key/value pair
-                final String key = prop.getKey();
-                final String value = prop.getValue();
-
-                // skip any keys outside of the namespace
-                if (!key.startsWith(this.namespace + "_")) {
-                    continue;
-                }
+        final SubstitutionReport.Collector collector = this.collector();
 
-                // iterate all segments of the key (denoted by the "_" character in the env)
-                for (String segment : key.substring(this.namespace.length() + 1).split("_")) {
-                    // lower-case the segment value
-                    segment = segment.toLowerCase();
-
-                    // parse the key segment
-                    JsonNode parsed;
-                    try {
-                        parsed = this.mapper.readTree(segment);
-                    } catch (IOException e) {
-                        parsed = TextNode.valueOf(segment);
-                    }
-
-                    // append a new textual field
-                    if (parsed.isTextual()) {
-                        joiner.append(parsed.asText());
-                    }
-
-                    // append a numeric index
-                    if (parsed.isNumber()) {
-                        joiner.append(parsed.asInt());
-                    }
-                }
+        // with nothing to override or interpolate, there's no need to touch the stream
+        if (this.plan().isEmpty() && this.interpolation == null) {
+            this.count(this.plan(), collector);
+            return this.delegate.open(path);
+        }
 
-                // attempt to parse the value
-                JsonNode parsedValue;
+        // serve repeated substitutions of the same source from the cache
+        if (this.cache != null) {
+            final byte[] source = this.load(path);
+            final SubstitutionCache.Key key = new SubstitutionCache.Key(
+                path,
+                this.mapper.getFactory().getFormatName() + ":" + this.mode,
+                SubstitutionCache.digest(source),
+                this.fingerprint()
+            );
+
+            // hits replay the failures of the substitution they came from
+            final SubstitutionCache.Result cached = this.cache.get(key);
+            if (cached != null) {
                 try {
-                    parsedValue = this.mapper.readTree(value);
-                } catch (IOException e) {
-                    parsedValue = TextNode.valueOf(value);
+                    final byte[] result = cached.replay(collector);
+                    this.record(Measurement.BYTES_OUT, result.length);
+                    return new ByteArrayInputStream(result);
+                } finally {
+                    this.count(this.plan(), collector);
                 }
+            }
 
-                // attempt to set the new value
-                try {
-                    DotNotes.create(config, joiner.toString(), parsedValue);
-                } catch (Exception e) {
-                    // we're unable to substitute for some reason?
+            final byte[] result = this.substitute(source, collector);
+            final List<SubstitutionReport.Failure> failures = collector.report().getFailures();
+            final int compiled = this.plan().failures().size();
+
+            this.cache.put(key, new SubstitutionCache.Result(result, failures.subList(compiled, failures.size())));
+            return new ByteArrayInputStream(result);
+        }
+
+        // stream the configuration through, substituting as we go
+        if (this.mode(this.plan()) == SubstitutionMode.STREAMING) {
+            final long start = System.nanoTime();
+            final InputStream in = this.delegate.open(path);
+            this.time(Measurement.DELEGATE_OPEN, start);
+            try {
+                return new Streamed(new StreamingSubstitution(in, this.mapper, this.plan().trie(), collector), collector);
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        // turn the updated configuration back into a byte stream for continuity
+        return new ByteArrayInputStream(this.substitute(this.load(path), collector));
+    }
+
+    /**
+     * Reads the configuration at a path, with all overrides applied.
+     *
+     * This skips serializing the configuration back to a stream, allowing
+     * the tree to be handed straight to a {@link SubstitutingConfigurationFactory}.
+     *
+     * @param path
+     *      the path of the configuration to read.
+     * @return
+     *      the configuration tree, with all overrides applied.
+     * @throws IOException
+     *      if the configuration cannot be opened or parsed.
+     */
+    public ObjectNode read(String path) throws IOException {
+        return this.tree(this.load(path), this.collector());
+    }
+
+    /**
+     * Watches a configuration file, re-substituting it whenever it changes.
+     *
+     * Changes are debounced by 500 milliseconds.
+     *
+     * @param path
+     *      the path of the configuration file to watch.
+     * @return
+     *      a new {@link SubstitutionWatcher}, which must be closed when done.
+     * @throws IOException
+     *      if the configuration cannot be loaded or watched.
+     */
+    public SubstitutionWatcher watch(String path) throws IOException {
+        return this.watch(path, 500, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Watches a configuration file, re-substituting it whenever it changes.
+     *
+     * The path must be a file on a file system which can be watched, even
+     * though it's still loaded through the delegate provider.
+     *
+     * @param path
+     *      the path of the configuration file to watch.
+     * @param debounce
+     *      the period the file must be quiet before reloading.
+     * @param unit
+     *      the unit of the debounce period.
+     * @return
+     *      a new {@link SubstitutionWatcher}, which must be closed when done.
+     * @throws IOException
+     *      if the configuration cannot be loaded or watched.
+     */
+    public SubstitutionWatcher watch(String path, long debounce, TimeUnit unit) throws IOException {
+        return new SubstitutionWatcher(this, path, debounce, unit);
+    }
+
+    /**
+     * Retrieves the names of all variables which name no valid property.
+     *
+     * This is only populated when a configuration class is provided, in which
+     * case such variables are ignored rather than creating unbound fields.
+     *
+     * @return
+     *      an immutable list of unknown variable names.
+     * @throws IOException
+     *      if any override source cannot be read.
+     */
+    public List<String> getUnknownOverrides() throws IOException {
+        return this.plan().unknown();
+    }
+
+    /**
+     * Retrieves the report of failed overrides from the latest substitution.
+     *
+     * The report is complete once {@link #open(String)} (or {@link #read(String)})
+     * returns, or once the stream has been fully read when substituting in the
+     * {@link SubstitutionMode#STREAMING} mode. When a configuration is served
+     * from a {@link SubstitutionCache}, the failures of the substitution which
+     * populated the cache are reported as if they happened again.
+     *
+     * @return
+     *      the latest {@link SubstitutionReport}, which is empty if nothing
+     *      has been substituted yet.
+     */
+    public SubstitutionReport getReport() {
+        final SubstitutionReport.Collector collector = this.collector;
+        return collector == null ? SubstitutionReport.EMPTY : collector.report();
+    }
+
+    /**
+     * Retrieves the underlying {@link ConfigurationSourceProvider}.
+     *
+     * @return
+     *      the delegate provider of the base configuration.
+     */
+    ConfigurationSourceProvider getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Reads the base configuration at a path, without any overrides.
+     *
+     * @param path
+     *      the path of the configuration to read.
+     * @return
+     *      the base configuration tree.
+     * @throws IOException
+     *      if the configuration cannot be opened or parsed.
+     */
+    ObjectNode base(String path) throws IOException {
+        final byte[] source = this.load(path);
+
+        final long start = System.nanoTime();
+        final ObjectNode base = this.mapper.readValue(source, ObjectNode.class);
+        this.time(Measurement.PARSE, start);
+
+        return base;
+    }
+
+    /**
+     * Substitutes a base configuration into the snapshot following another.
+     *
+     * Overrides are only re-applied to the parts of the configuration which
+     * changed since the previous snapshot, or whose overrides changed since
+     * the plan of the previous snapshot (as after {@link #recompile()}), and
+     * the failures of every reused part are replayed from the previous
+     * snapshot. Failures are handled as per the {@link FailureMode} of this
+     * instance, and become the source of {@link #getReport()}.
+     *
+     * @param previous
+     *      the previous snapshot, or null for the first snapshot.
+     * @param base
+     *      the current base configuration, which is never modified.
+     * @return
+     *      the next {@link SubstitutionSnapshot}.
+     * @throws SubstitutionException
+     *      if failing fast and any override failed.
+     * @throws IOException
+     *      if any override source cannot be read.
+     * @see OverridePlan#reapply(OverridePlan, ObjectNode, ObjectNode, ObjectNode, OverrideTrie.Replay)
+     */
+    SubstitutionSnapshot snapshot(SubstitutionSnapshot previous, ObjectNode base) throws IOException {
+        final OverridePlan plan = this.plan();
+        final SubstitutionReport.Collector collector = this.collector();
+        final OverrideTrie.Replay replay = new OverrideTrie.Replay(collector, previous == null ? null : previous.failures());
+        final long version = previous == null ? 1 : previous.getVersion() + 1;
+
+        final ObjectNode config;
+        if (this.interpolation != null) {
+            // placeholders can be anywhere, so interpolated trees are rebuilt in full
+            config = base.deepCopy();
+            plan.apply(config, collector, new Interpolator(this.interpolation, collector, this.limits));
+        } else if (previous == null) {
+            config = plan.reapply(null, null, base, null, replay);
+        } else {
+            // only the parts which changed (or whose overrides changed) are re-applied
+            config = plan.reapply(previous.plan(), previous.base(), base, previous.configuration(), replay);
+        }
+
+        this.count(plan, collector);
+
+        // stop at the first failure when failing fast
+        collector.check();
+
+        return new SubstitutionSnapshot(version, base, config, plan, replay.kept());
+    }
+
+    /**
+     * Recompiles the override plan, in case any override source changed.
+     *
+     * The new plan only replaces the current plan if it differs, so
+     * substitutions (and cached results) carry on as before otherwise.
+     *
+     * @return
+     *      true if the plan changed, false otherwise.
+     * @throws IOException
+     *      if any override source cannot be read.
+     */
+    boolean recompile() throws IOException {
+        final OverridePlan current = this.plan();
+        final OverridePlan compiled = this.compile();
+
+        synchronized (this) {
+            if (Arrays.equals(current.fingerprint(), compiled.fingerprint())
+                    && current.failures().equals(compiled.failures())) {
+                return false;
+            }
+            this.plan = compiled;
+            return true;
+        }
+    }
+
+    /**
+     * Retrieves every path read by the override sources of this instance.
+     *
+     * @return
+     *      the files and directories read by override sources, which may
+     *      not exist yet.
+     */
+    List<Path> watched() {
+        final List<Path> paths = new ArrayList<>();
+        for (OverrideSource source : this.sources) {
+            if (source instanceof OverrideSources.ScanningSource) {
+                final Path path = ((OverrideSources.ScanningSource) source).path();
+                if (path != null) {
+                    paths.add(path);
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Retrieves the override plan for this instance.
+     *
+     * The plan is compiled lazily on first use, and then cached until it's
+     * recompiled (as the sources are otherwise only read once).
+     *
+     * @return
+     *      the compiled {@link OverridePlan}.
+     * @throws IOException
+     *      if any override source cannot be read.
+     */
+    private OverridePlan plan() throws IOException {
+        OverridePlan plan = this.plan;
+        if (plan == null) {
+            synchronized (this) {
+                plan = this.plan;
+                if (plan == null) {
+                    plan = this.plan = this.compile();
                 }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Compiles a new override plan from the sources of this instance.
+     *
+     * @return
+     *      the newly compiled {@link OverridePlan}.
+     * @throws IOException
+     *      if any override source cannot be read.
+     */
+    private OverridePlan compile() throws IOException {
+        final long start = System.nanoTime();
+        final PropertySchema schema = this.configuration == null
+            ? null
+            : PropertySchema.of(this.mapper, this.configuration);
+
+        final OverridePlan plan = OverridePlan.compile(this.namespaces, this.wildcard, this.sources, this.mapper, schema, this.limits);
+        this.time(Measurement.ENV_SCAN, start);
+        return plan;
+    }
+
+    /**
+     * Computes a fingerprint of everything a substitution depends on.
+     *
+     * This is the fingerprint of the plan and the limits enforced on it, along
+     * with every variable when interpolating, as any of them may be named by
+     * a placeholder.
+     *
+     * @return
+     *      a digest identifying the inputs of a substitution.
+     * @throws IOException
+     *      if any override source cannot be read.
+     */
+    private byte[] fingerprint() throws IOException {
+        final MessageDigest digest = SubstitutionCache.digester();
+        digest.update(this.plan().fingerprint());
+
+        // the same plan may pass or fail depending on the limits
+        digest.update(ByteBuffer.allocate(20)
+            .putInt(this.limits.getMaxIndexGap())
+            .putInt(this.limits.getMaxDepth())
+            .putInt(this.limits.getMaxOverrides())
+            .putLong(this.limits.getMaxOutputBytes())
+            .array());
+
+        if (this.interpolation != null) {
+            for (Map.Entry<String, String> variable : new TreeMap<>(this.interpolation).entrySet()) {
+                digest.update(variable.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(variable.getValue().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Starts collecting the failed overrides of a new substitution.
+     *
+     * The collector starts with every override which failed to compile, and
+     * becomes the source of {@link #getReport()}.
+     *
+     * @return
+     *      a new {@link SubstitutionReport.Collector}.
+     * @throws SubstitutionException
+     *      if failing fast and any override failed to compile.
+     * @throws IOException
+     *      if any override source cannot be read.
+     */
+    private SubstitutionReport.Collector collector() throws IOException {
+        final SubstitutionReport.Collector collector = new SubstitutionReport.Collector(this.failureMode);
+        collector.recordAll(this.plan().failures());
+        this.collector = collector;
+        collector.check();
+        return collector;
+    }
+
+    /**
+     * Resolves the mode to substitute a plan with.
+     *
+     * Plans which can only be applied to a tree (such as those containing
+     * patch documents) are always substituted in {@link SubstitutionMode#TREE},
+     * as is everything when interpolating placeholders.
+     *
+     * @param plan
+     *      the plan being substituted.
+     * @return
+     *      the {@link SubstitutionMode} to use.
+     */
+    private SubstitutionMode mode(OverridePlan plan) {
+        return plan.requiresTree() || this.interpolation != null ? SubstitutionMode.TREE : this.mode;
+    }
 
-                // re-use the joiner
-                joiner.reset();
+    /**
+     * Loads all bytes of the base configuration at a path.
+     *
+     * @param path
+     *      the path of the configuration to load.
+     * @return
+     *      all bytes of the base configuration.
+     * @throws IOException
+     *      if the configuration cannot be opened or read.
+     */
+    private byte[] load(String path) throws IOException {
+        final long start = System.nanoTime();
+        try (final InputStream in = this.delegate.open(path)) {
+            final byte[] source = readFully(in);
+            this.time(Measurement.DELEGATE_OPEN, start);
+            this.record(Measurement.BYTES_IN, source.length);
+            return source;
+        }
+    }
+
+    /**
+     * Substitutes all overrides into the bytes of a base configuration.
+     *
+     * @param source
+     *      the bytes of the base configuration.
+     * @param collector
+     *      the collector to record failed overrides into.
+     * @return
+     *      the bytes of the substituted configuration.
+     * @throws IOException
+     *      if the configuration cannot be parsed or written.
+     */
+    private byte[] substitute(byte[] source, SubstitutionReport.Collector collector) throws IOException {
+        final OverridePlan plan = this.plan();
+
+        long start = System.nanoTime();
+
+        final SubstitutionMode mode = this.mode(plan);
+
+        if (mode == SubstitutionMode.SPLICE) {
+            final byte[] spliced = SplicingSubstitution.splice(source, this.mapper, plan.trie(), collector);
+            if (spliced != null) {
+                this.count(plan, collector);
+                collector.check();
+                Output.check(spliced.length, this.limits.getMaxOutputBytes());
+                this.time(Measurement.APPLY, start);
+                this.record(Measurement.BYTES_OUT, spliced.length);
+                return spliced;
+            }
+        }
+
+        // streams are measured as they close, so this matches streaming via open
+        if (mode == SubstitutionMode.STREAMING) {
+            try (final InputStream in = new Streamed(new StreamingSubstitution(new ByteArrayInputStream(source), this.mapper, plan.trie(), collector), collector)) {
+                return readFully(in);
             }
+        }
+
+        final ObjectNode config = this.tree(source, collector);
+
+        start = System.nanoTime();
+        final Output output = new Output(this.limits.getMaxOutputBytes());
+        this.mapper.writeValue(output, config);
+        final byte[] serialized = output.toByteArray();
+        this.time(Measurement.SERIALIZE, start);
+        this.record(Measurement.BYTES_OUT, serialized.length);
+
+        return serialized;
+    }
+
+    /**
+     * Parses the bytes of a base configuration and applies all overrides.
+     *
+     * @param source
+     *      the bytes of the base configuration.
+     * @param collector
+     *      the collector to record failed overrides into.
+     * @return
+     *      the configuration tree, with all overrides applied.
+     * @throws IOException
+     *      if the configuration cannot be parsed.
+     */
+    private ObjectNode tree(byte[] source, SubstitutionReport.Collector collector) throws IOException {
+        final OverridePlan plan = this.plan();
+
+        // read in the configuration object
+        long start = System.nanoTime();
+        final ObjectNode config = this.mapper.readValue(source, ObjectNode.class);
+        this.time(Measurement.PARSE, start);
+
+        // apply all overrides (and interpolate placeholders) in a single walk
+        start = System.nanoTime();
+        plan.apply(config, collector, this.interpolation == null
+            ? null
+            : new Interpolator(this.interpolation, collector, this.limits));
+        this.time(Measurement.APPLY, start);
+        this.count(plan, collector);
+
+        // stop at the first failure when failing fast
+        collector.check();
+
+        if (this.metrics != null) {
+            this.metrics.record(Measurement.NODES, count(config));
+        }
+
+        return config;
+    }
+
+    /**
+     * Records the time elapsed since a starting point, if metrics are enabled.
+     *
+     * @param measurement
+     *      the timer measurement being recorded.
+     * @param start
+     *      the starting point, from {@link System#nanoTime()}.
+     */
+    private void time(Measurement measurement, long start) {
+        if (this.metrics != null) {
+            this.metrics.time(measurement, start);
+        }
+    }
+
+    /**
+     * Records a single measurement, if metrics are enabled.
+     *
+     * @param measurement
+     *      the measurement being recorded.
+     * @param value
+     *      the value of the measurement.
+     */
+    private void record(Measurement measurement, long value) {
+        if (this.metrics != null) {
+            this.metrics.record(measurement, value);
+        }
+    }
+
+    /**
+     * Records the outcome of a substitution, if metrics are enabled.
+     *
+     * The overrides applied, skipped and failed are all derived from the
+     * failures collected, so every mode (and every cache hit) is counted in
+     * the same way, including the overrides which failed to compile.
+     *
+     * @param plan
+     *      the plan which was substituted.
+     * @param collector
+     *      the collector the substitution recorded failures into.
+     */
+    private void count(OverridePlan plan, SubstitutionReport.Collector collector) {
+        if (this.metrics != null) {
+            final List<SubstitutionReport.Failure> failures = collector.report().getFailures();
+            final int skipped = plan.skipped(failures);
+
+            this.metrics.record(Measurement.APPLIED, plan.size() - skipped);
+            this.metrics.record(Measurement.SKIPPED, skipped);
+            this.metrics.record(Measurement.FAILED, failures.size());
+        }
+    }
+
+    /**
+     * Counts the number of nodes in a tree.
+     *
+     * @param node
+     *      the root of the tree to count.
+     * @return
+     *      the number of nodes in the tree, including the root.
+     */
+    static int count(JsonNode node) {
+        int count = 1;
+        for (Iterator<JsonNode> it = node.elements(); it.hasNext(); ) {
+            count += count(it.next());
+        }
+        return count;
+    }
+
+    /**
+     * Reads all remaining bytes from an {@link InputStream}.
+     *
+     * @param in
+     *      the stream to read from.
+     * @return
+     *      all bytes read from the stream.
+     * @throws IOException
+     *      if the stream cannot be read.
+     */
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+        final byte[] buffer = new byte[8192];
+
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * A streaming substitution which is measured once it's closed.
+     *
+     * Output is generated as the stream is read, so the time spent applying
+     * (and everything generated) is only known once the caller is done with
+     * the stream, however much of it was read.
+     */
+    private final class Streamed extends FilterInputStream {
+
+        /**
+         * The collector the substitution records failures into.
+         */
+        private final SubstitutionReport.Collector collector;
+
+        /**
+         * The starting point of the substitution, from {@link System#nanoTime()}.
+         */
+        private final long start;
+
+        /**
+         * Whether this stream has been closed (and measured) already.
+         */
+        private boolean closed;
+
+        /**
+         * Create a new instance.
+         *
+         * @param substitution
+         *      the streaming substitution being measured.
+         * @param collector
+         *      the collector the substitution records failures into.
+         */
+        private Streamed(StreamingSubstitution substitution, SubstitutionReport.Collector collector) {
+            super(substitution);
+            this.collector = collector;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+
+            try {
+                super.close();
+            } finally {
+                final StreamingSubstitution substitution = (StreamingSubstitution) this.in;
+
+                EnvironmentSubstitutor.this.time(Measurement.APPLY, this.start);
+                EnvironmentSubstitutor.this.record(Measurement.BYTES_OUT, substitution.generated());
+                EnvironmentSubstitutor.this.record(Measurement.NODES, substitution.nodes());
+                EnvironmentSubstitutor.this.count(EnvironmentSubstitutor.this.plan(), this.collector);
+            }
+        }
+    }
+
+    /**
+     * An in-memory output which fails once it grows beyond a limit.
+     *
+     * The limit is checked before each write is buffered, so an oversized
+     * configuration never grows the buffer beyond the limit.
+     */
+    private static final class Output extends OutputStream {
+
+        /**
+         * The buffer of bytes written so far.
+         */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+        /**
+         * The maximum number of bytes which can be written.
+         */
+        private final long limit;
+
+        /**
+         * Create a new instance.
+         *
+         * @param limit
+         *      the maximum number of bytes which can be written.
+         */
+        private Output(long limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(int b) throws IOException {
+            check(this.buffer.size() + 1L, this.limit);
+            this.buffer.write(b);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            check(this.buffer.size() + (long) len, this.limit);
+            this.buffer.write(b, off, len);
+        }
+
+        /**
+         * Retrieves all bytes written so far.
+         *
+         * @return
+         *      a copy of the written bytes.
+         */
+        private byte[] toByteArray() {
+            return this.buffer.toByteArray();
+        }
+
+        /**
+         * Checks the size of an output against a limit.
+         *
+         * @param size
+         *      the size of the output, in bytes.
+         * @param limit
+         *      the maximum size of the output, in bytes.
+         * @throws SubstitutionException
+         *      if the output is larger than the limit.
+         */
+        private static void check(long size, long limit) throws SubstitutionException {
+            if (size > limit) {
+                throw new SubstitutionException(new SubstitutionException.Violation(
+                    SubstitutionLimits.Limit.OUTPUT_BYTES, null, null, size, limit));
+            }
+        }
+    }
+
+    /**
+     * A builder to configure {@link EnvironmentSubstitutor} instances.
+     */
+    public static final class Builder {
+
+        /**
+         * The original configuration provider (from the config file).
+         */
+        private final ConfigurationSourceProvider delegate;
+
+        /**
+         * The namespace prefixes to use to detect environment variables.
+         */
+        private final List<String> namespaces = new ArrayList<>();
+
+        /**
+         * A mapper used to read in the base configuration, if customized.
+         */
+        private ObjectMapper mapper;
+
+        /**
+         * The key segment treated as a wildcard, if enabled.
+         */
+        private String wildcard;
+
+        /**
+         * The environment to source overrides from, if no sources are added.
+         */
+        private Map<String, String> environment = System.getenv();
+
+        /**
+         * The sources to read overrides from, in increasing precedence.
+         */
+        private final List<OverrideSource> sources = new ArrayList<>();
+
+        /**
+         * The variables to interpolate placeholders with, if enabled.
+         */
+        private Map<String, String> interpolation;
+
+        /**
+         * The strategy used to substitute overrides into a stream.
+         */
+        private SubstitutionMode mode = SubstitutionMode.TREE;
+
+        /**
+         * The cache of substituted configurations, if enabled.
+         */
+        private SubstitutionCache cache;
+
+        /**
+         * The metrics to record substitution phases in, if enabled.
+         */
+        private SubstitutionMetrics metrics;
+
+        /**
+         * The configuration class to resolve overrides against, if any.
+         */
+        private Class<?> configuration;
+
+        /**
+         * The limits enforced on all overrides.
+         */
+        private SubstitutionLimits limits = SubstitutionLimits.defaults();
+
+        /**
+         * The mode of handling failed overrides.
+         */
+        private FailureMode failureMode = FailureMode.LENIENT;
+
+        /**
+         * Create a new instance.
+         *
+         * @param namespace
+         *      the namespace of allowed configuration overrides.
+         * @param delegate
+         *      the underlying {@link ConfigurationSourceProvider}.
+         */
+        private Builder(String namespace, ConfigurationSourceProvider delegate) {
+            this.namespaces.add(Objects.requireNonNull(namespace).toUpperCase());
+            this.delegate = Objects.requireNonNull(delegate);
+        }
+
+        /**
+         * Adds another namespace of allowed configuration overrides.
+         *
+         * Namespaces take precedence over all namespaces added before them
+         * (including the namespace the builder was created with), as if each
+         * were substituted on top of the last; overrides of all namespaces are
+         * read in a single scan of each source, and applied in a single pass.
+         * The only exception is a JSON Patch, which is applied at the precedence
+         * of its namespace, in a separate pass over the result of the namespaces
+         * before it. Namespaces may not overlap, such as "APP" and "APP_POD".
+         *
+         * @param namespace
+         *      the namespace of allowed configuration overrides.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder namespace(String namespace) {
+            final String upper = Objects.requireNonNull(namespace).toUpperCase();
+            if (upper.isEmpty()) {
+                throw new IllegalArgumentException("namespace must not be empty");
+            }
+            this.namespaces.add(upper);
+            return this;
+        }
+
+        /**
+         * Sets a custom {@link ObjectMapper} to use when reading configuration.
+         *
+         * @param mapper
+         *      the mapper to read and write configuration with.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder mapper(ObjectMapper mapper) {
+            this.mapper = Objects.requireNonNull(mapper);
+            return this;
+        }
+
+        /**
+         * Enables a key segment which matches every element of an array, or
+         * every value of an object.
+         *
+         * With a wildcard of "STAR", "MY_APP_SERVERS_STAR_PORT" sets the port
+         * of every server in a single override, applied in a single walk of
+         * the servers. Specific overrides (such as "MY_APP_SERVERS_0_PORT")
+         * take precedence over the wildcard. Wildcards are only matched in
+         * whole segments, in any case, and configurations with wildcard
+         * overrides are always substituted via {@link SubstitutionMode#TREE}.
+         *
+         * @param wildcard
+         *      the alphanumeric segment to treat as a wildcard.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder wildcard(String wildcard) {
+            Objects.requireNonNull(wildcard);
+            boolean numeric = true;
+            for (int i = 0, j = wildcard.length(); i < j; i++) {
+                final char c = wildcard.charAt(i);
+                if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')) {
+                    throw new IllegalArgumentException("wildcard must be alphanumeric");
+                }
+                numeric &= c >= '0' && c <= '9';
+            }
+            if (wildcard.isEmpty() || numeric) {
+                throw new IllegalArgumentException("wildcard must contain a letter");
+            }
+            this.wildcard = wildcard.toUpperCase();
+            return this;
+        }
+
+        /**
+         * Sets the environment to read overrides from, rather than the process.
+         *
+         * This is only used when no sources are added via {@link #source(OverrideSource)}.
+         *
+         * @param environment
+         *      the environment to read overrides from.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder environment(Map<String, String> environment) {
+            this.environment = Objects.requireNonNull(environment);
+            return this;
+        }
+
+        /**
+         * Adds a source to read overrides from.
+         *
+         * Sources take precedence over all sources added before them, so the
+         * last source to provide a key wins. Once any source is added, the
+         * environment is only used if added as a source itself (such as via
+         * {@link OverrideSources#environment()}).
+         *
+         * @param source
+         *      the {@link OverrideSource} to add.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder source(OverrideSource source) {
+            this.sources.add(Objects.requireNonNull(source));
+            return this;
+        }
+
+        /**
+         * Enables interpolation of "${VAR}" placeholders within string values.
+         *
+         * Placeholders are resolved against the variables provided (such as
+         * {@link System#getenv()}), in the same walk of the configuration which
+         * applies the overrides, including within the values of overrides.
+         * This replaces wrapping the provider with Dropwizard's own
+         * EnvironmentVariableSubstitutor, and supports the same syntax of
+         * "${VAR:-default}" defaults and "$${VAR}" escapes. Undefined variables
+         * (and variables referring back to themselves) are reported via
+         * {@link EnvironmentSubstitutor#getReport()}, and left in place.
+         * Configurations are always substituted via {@link SubstitutionMode#TREE}
+         * when interpolating.
+         *
+         * @param variables
+         *      the variables to resolve placeholders against.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder interpolation(Map<String, String> variables) {
+            this.interpolation = Objects.requireNonNull(variables);
+            return this;
+        }
+
+        /**
+         * Sets the strategy used to substitute overrides into a stream.
+         *
+         * @param mode
+         *      the {@link SubstitutionMode} to use.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder mode(SubstitutionMode mode) {
+            this.mode = Objects.requireNonNull(mode);
+            return this;
+        }
+
+        /**
+         * Sets a cache to store substituted configurations in.
+         *
+         * The same cache can be shared between many instances, in which case
+         * a configuration is only substituted once for as long as its base
+         * configuration and overrides remain unchanged.
+         *
+         * @param cache
+         *      the {@link SubstitutionCache} to use.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder cache(SubstitutionCache cache) {
+            this.cache = Objects.requireNonNull(cache);
+            return this;
+        }
+
+        /**
+         * Sets the metrics to record each phase of substitution in.
+         *
+         * @param metrics
+         *      the {@link SubstitutionMetrics} to record into.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder metrics(SubstitutionMetrics metrics) {
+            this.metrics = Objects.requireNonNull(metrics);
+            return this;
+        }
+
+        /**
+         * Sets the configuration class to resolve overrides against.
+         *
+         * Overrides are then resolved against the properties of the class
+         * (and any polymorphic subtypes), as introspected via the mapper.
+         * Variables which don't name a valid property are reported via
+         * {@link EnvironmentSubstitutor#getUnknownOverrides()} and ignored.
+         *
+         * @param configuration
+         *      the configuration class the configuration is bound to.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder configuration(Class<?> configuration) {
+            this.configuration = Objects.requireNonNull(configuration);
+            return this;
+        }
+
+        /**
+         * Sets the mode of handling failed overrides.
+         *
+         * Failed overrides are always available via {@link EnvironmentSubstitutor#getReport()};
+         * this controls whether they're also logged, or fail substitution.
+         *
+         * @param failureMode
+         *      the {@link FailureMode} to use.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder failureMode(FailureMode failureMode) {
+            this.failureMode = Objects.requireNonNull(failureMode);
+            return this;
+        }
+
+        /**
+         * Sets the limits enforced on all overrides.
+         *
+         * Violating any limit fails substitution with a {@link SubstitutionException}
+         * before anything is allocated on behalf of the offending overrides.
+         *
+         * @param limits
+         *      the {@link SubstitutionLimits} to enforce.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder limits(SubstitutionLimits limits) {
+            this.limits = Objects.requireNonNull(limits);
+            return this;
+        }
 
-            // turn the updated node back into a byte stream for continuity
-            return new ByteArrayInputStream(this.mapper.writeValueAsBytes(config));
+        /**
+         * Constructs a new {@link EnvironmentSubstitutor} from this builder.
+         *
+         * @return
+         *      a new {@link EnvironmentSubstitutor} instance.
+         */
+        public EnvironmentSubstitutor build() {
+            return new EnvironmentSubstitutor(this);
         }
     }
 }
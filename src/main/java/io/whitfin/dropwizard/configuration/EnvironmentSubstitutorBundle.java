@@ -0,0 +1,100 @@
+package io.whitfin.dropwizard.configuration;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+
+import java.util.Objects;
+
+/**
+ * A {@link ConfiguredBundle} to install environment overrides in a single call.
+ *
+ * On initialization this wraps the configuration source of the application
+ * in an {@link EnvironmentSubstitutor}, and replaces the configuration factory
+ * with a {@link SubstitutingConfigurationFactoryFactory} so that the substituted
+ * tree is bound directly, rather than being written to YAML and parsed again.
+ *
+ * If {@link SubstitutionMetrics} are provided, they're registered with the
+ * application {@link com.codahale.metrics.MetricRegistry} once it's available,
+ * replaying any measurements taken while the configuration was loaded.
+ *
+ * @param <T>
+ *      the type of the application configuration.
+ */
+public class EnvironmentSubstitutorBundle<T extends Configuration> implements ConfiguredBundle<T> {
+
+    /**
+     * The namespace prefix to use to detect environment variables.
+     */
+    private final String namespace;
+
+    /**
+     * The metrics to record substitution phases in, if enabled.
+     */
+    private final SubstitutionMetrics metrics;
+
+    /**
+     * Create a new instance.
+     *
+     * @param namespace
+     *      the namespace of allowed configuration overrides.
+     */
+    public EnvironmentSubstitutorBundle(String namespace) {
+        this.namespace = Objects.requireNonNull(namespace);
+        this.metrics = null;
+    }
+
+    /**
+     * Create a new instance with metrics enabled.
+     *
+     * @param namespace
+     *      the namespace of allowed configuration overrides.
+     * @param metrics
+     *      the {@link SubstitutionMetrics} to record substitution in.
+     */
+    public EnvironmentSubstitutorBundle(String namespace, SubstitutionMetrics metrics) {
+        this.namespace = Objects.requireNonNull(namespace);
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialize(Bootstrap<?> bootstrap) {
+        this.install(bootstrap);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run(T configuration, Environment environment) {
+        // replay anything measured during bootstrap into the registry
+        if (this.metrics != null) {
+            this.metrics.register(environment.metrics());
+        }
+    }
+
+    /**
+     * Installs the substitutor and factory into a {@link Bootstrap}.
+     *
+     * @param bootstrap
+     *      the application {@link Bootstrap} to install into.
+     * @param <C>
+     *      the type of the application configuration.
+     */
+    private <C extends Configuration> void install(Bootstrap<C> bootstrap) {
+        final EnvironmentSubstitutor.Builder builder = EnvironmentSubstitutor
+            .builder(this.namespace, bootstrap.getConfigurationSourceProvider());
+
+        if (this.metrics != null) {
+            builder.metrics(this.metrics);
+        }
+
+        bootstrap.setConfigurationSourceProvider(builder.build());
+        bootstrap.setConfigurationFactoryFactory(
+            new SubstitutingConfigurationFactoryFactory<C>());
+    }
+}
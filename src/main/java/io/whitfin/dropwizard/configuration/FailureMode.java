@@ -0,0 +1,26 @@
+package io.whitfin.dropwizard.configuration;
+
+/**
+ * Modes controlling how failed overrides are handled.
+ *
+ * Failures are always recorded into a {@link SubstitutionReport}, no matter
+ * the mode; the mode only decides what happens beyond that.
+ */
+public enum FailureMode {
+    /**
+     * Failures are recorded silently, and substitution carries on.
+     */
+    LENIENT,
+
+    /**
+     * Failures are recorded and logged as warnings, and substitution
+     * carries on.
+     */
+    WARN,
+
+    /**
+     * The first failure stops substitution, which then fails with a
+     * {@link SubstitutionException} carrying the report.
+     */
+    FAIL_FAST
+}
@@ -0,0 +1,455 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves "${VAR}" placeholders within the string values of a tree.
+ *
+ * Placeholders follow the same syntax as the substitution performed by
+ * Dropwizard's own EnvironmentVariableSubstitutor:
+ *
+ * - "${VAR}" is replaced with the value of VAR.
+ * - "${VAR:-default}" falls back to the default when VAR is undefined.
+ * - "$${VAR}" is a literal "${VAR}".
+ *
+ * Placeholders may be nested within variable names and defaults, and the
+ * values of variables are interpolated in turn. Each variable is resolved
+ * once and memoized, so a variable referenced throughout a configuration is
+ * only ever expanded once. Variables which refer back to themselves (either
+ * directly or via others) are detected as they're resolved; both cycles and
+ * undefined variables are recorded as failures into a
+ * {@link SubstitutionReport.Collector}, with the placeholder left in place.
+ *
+ * Any expanded value larger than the maximum output of the
+ * {@link SubstitutionLimits} (measured in bytes of UTF-8) is reported as a
+ * violation, so a small set of variables can't expand into an unbounded
+ * configuration. Instances are intended to live for a single walk of a
+ * single tree, and are not thread safe.
+ */
+final class Interpolator {
+
+    /**
+     * The variables to resolve placeholders against.
+     */
+    private final Map<String, String> variables;
+
+    /**
+     * The collector to record failed placeholders into.
+     */
+    private final SubstitutionReport.Collector collector;
+
+    /**
+     * The limits enforced on all expanded values.
+     */
+    private final SubstitutionLimits limits;
+
+    /**
+     * The memoized values of all variables resolved so far, or null if undefined.
+     */
+    private final Map<String, String> resolved = new HashMap<>();
+
+    /**
+     * The variables currently being resolved, to detect cycles.
+     */
+    private final Set<String> resolving = new HashSet<>();
+
+    /**
+     * The path of the value currently being interpolated.
+     */
+    private final List<PathToken> path = new ArrayList<>();
+
+    /**
+     * The limits violated during the walk, lazily initialized.
+     */
+    private List<SubstitutionException.Violation> violations;
+
+    /**
+     * Create a new instance.
+     *
+     * @param variables
+     *      the variables to resolve placeholders against.
+     * @param collector
+     *      the collector to record failed placeholders into.
+     * @param limits
+     *      the limits enforced on all expanded values.
+     */
+    Interpolator(Map<String, String> variables, SubstitutionReport.Collector collector, SubstitutionLimits limits) {
+        this.variables = variables;
+        this.collector = collector;
+        this.limits = limits;
+    }
+
+    /**
+     * Enters a child of the value currently being interpolated.
+     *
+     * @param token
+     *      the token of the child within its parent.
+     */
+    void enter(PathToken token) {
+        this.path.add(token);
+    }
+
+    /**
+     * Leaves the child most recently entered.
+     */
+    void leave() {
+        this.path.remove(this.path.size() - 1);
+    }
+
+    /**
+     * Interpolates a node and everything beneath it.
+     *
+     * Containers are modified in place, and a new node is returned in place
+     * of any string containing a placeholder.
+     *
+     * @param node
+     *      the node to interpolate, which may be null.
+     * @return
+     *      the interpolated node.
+     */
+    JsonNode sweep(JsonNode node) {
+        if (node == null) {
+            return null;
+        }
+        if (node.isTextual()) {
+            final String text = node.textValue();
+            final String expanded = this.interpolate(text);
+            return expanded == text ? node : JsonNodeFactory.instance.textNode(expanded);
+        }
+        if (node.isContainerNode()) {
+            this.sweep(node, Collections.<PathToken>emptySet());
+        }
+        return node;
+    }
+
+    /**
+     * Interpolates every child of a container, apart from those skipped.
+     *
+     * This is used to interpolate everything an override walk didn't touch,
+     * as each child written by an override is interpolated as it's written.
+     *
+     * @param container
+     *      the container to interpolate the children of.
+     * @param skip
+     *      the tokens of the children which are already interpolated.
+     */
+    void sweep(JsonNode container, Set<PathToken> skip) {
+        if (container.isArray()) {
+            final ArrayNode elements = (ArrayNode) container;
+            for (int i = 0, j = elements.size(); i < j && !this.collector.halted(); i++) {
+                final JsonNode element = elements.get(i);
+                if (!candidate(element) || (!skip.isEmpty() && skip.contains(PathToken.index(i)))) {
+                    continue;
+                }
+                this.enter(PathToken.index(i));
+                final JsonNode updated = this.sweep(element);
+                this.leave();
+                if (updated != element) {
+                    elements.set(i, updated);
+                }
+            }
+            return;
+        }
+
+        for (Iterator<Map.Entry<String, JsonNode>> it = container.fields(); it.hasNext() && !this.collector.halted(); ) {
+            final Map.Entry<String, JsonNode> field = it.next();
+            if (!candidate(field.getValue())) {
+                continue;
+            }
+
+            final PathToken token = PathToken.field(field.getKey());
+            if (!skip.isEmpty() && skip.contains(token)) {
+                continue;
+            }
+
+            this.enter(token);
+            final JsonNode updated = this.sweep(field.getValue());
+            this.leave();
+            if (updated != field.getValue()) {
+                field.setValue(updated);
+            }
+        }
+    }
+
+    /**
+     * Interpolates all placeholders within a string.
+     *
+     * @param text
+     *      the string to interpolate.
+     * @return
+     *      the interpolated string, or the string itself if unchanged.
+     */
+    String interpolate(String text) {
+        if (text.indexOf('$') < 0) {
+            return text;
+        }
+        final String expanded = this.expand(text);
+        return expanded.equals(text) ? text : expanded;
+    }
+
+    /**
+     * Fails the walk if any limits were violated.
+     *
+     * @throws SubstitutionException
+     *      if any violations were recorded.
+     */
+    void check() throws SubstitutionException {
+        if (this.violations != null) {
+            throw new SubstitutionException(this.violations);
+        }
+    }
+
+    /**
+     * Expands every placeholder within a string.
+     *
+     * @param text
+     *      the string to expand.
+     * @return
+     *      the expanded string.
+     */
+    private String expand(String text) {
+        int i = text.indexOf('$');
+
+        // nothing more is expanded once a limit is violated
+        if (i < 0 || this.violations != null) {
+            return text;
+        }
+
+        final int length = text.length();
+        final StringBuilder builder = new StringBuilder(length + 16).append(text, 0, i);
+
+        while (i < length) {
+            final char c = text.charAt(i);
+
+            if (c == '$' && i + 1 < length) {
+                final char next = text.charAt(i + 1);
+
+                // escaped placeholders are kept, minus the escape
+                if (next == '$' && i + 2 < length && text.charAt(i + 2) == '{') {
+                    builder.append("${");
+                    i += 3;
+                    continue;
+                }
+
+                // unterminated placeholders are kept as they are
+                final int end = next == '{' ? close(text, i + 2) : -1;
+                if (end >= 0) {
+                    if (!this.placeholder(text, i, end, builder)) {
+                        return text;
+                    }
+                    i = end + 1;
+                    continue;
+                }
+            }
+
+            builder.append(c);
+            i++;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Expands a single placeholder into a builder.
+     *
+     * @param text
+     *      the string containing the placeholder.
+     * @param start
+     *      the index of the "$" opening the placeholder.
+     * @param end
+     *      the index of the "}" closing the placeholder.
+     * @param builder
+     *      the builder to append the expansion to.
+     * @return
+     *      false if the expansion would exceed the limits.
+     */
+    private boolean placeholder(String text, int start, int end, StringBuilder builder) {
+        int split = -1;
+        int depth = 0;
+
+        // locate any default at the top level of the placeholder
+        for (int i = start + 2; i < end - 1; i++) {
+            final char c = text.charAt(i);
+            if (c == '$' && text.charAt(i + 1) == '{') {
+                depth++;
+                i++;
+            } else if (c == '}') {
+                depth--;
+            } else if (c == ':' && depth == 0 && text.charAt(i + 1) == '-') {
+                split = i;
+                break;
+            }
+        }
+
+        final String name = this.expand(text.substring(start + 2, split < 0 ? end : split));
+
+        // a variable which refers back to itself can never be resolved
+        if (this.resolving.contains(name)) {
+            this.fail(SubstitutionReport.Reason.CYCLIC_VARIABLE, name);
+            return this.append(builder, text.substring(start, end + 1), name);
+        }
+
+        final String value = this.lookup(name);
+        if (value != null) {
+            return this.append(builder, value, name);
+        }
+
+        if (split >= 0) {
+            return this.append(builder, this.expand(text.substring(split + 2, end)), name);
+        }
+
+        this.fail(SubstitutionReport.Reason.UNDEFINED_VARIABLE, name);
+        return this.append(builder, text.substring(start, end + 1), name);
+    }
+
+    /**
+     * Appends an expansion to a builder, unless it would exceed the limits.
+     *
+     * The check happens before appending, as memoized values can double in
+     * size with every level of nesting. Sizes are measured in bytes of UTF-8,
+     * as the limit is on the bytes of the configuration; as no character is
+     * more than 3 bytes, they're only measured exactly near the limit.
+     *
+     * @param builder
+     *      the builder to append to.
+     * @param expansion
+     *      the expansion to append.
+     * @param variable
+     *      the variable the expansion came from.
+     * @return
+     *      false if the expansion would exceed the limits.
+     */
+    private boolean append(StringBuilder builder, String expansion, String variable) {
+        final long length = (long) builder.length() + expansion.length();
+        final long maximum = this.limits.getMaxOutputBytes();
+
+        // nothing more is expanded once a limit is violated
+        if (this.violations != null) {
+            return false;
+        }
+
+        if (length * 3 > maximum) {
+            final long bytes = utf8Length(builder) + utf8Length(expansion);
+            if (bytes > maximum) {
+                this.violations = Collections.singletonList(new SubstitutionException.Violation(
+                    SubstitutionLimits.Limit.OUTPUT_BYTES, variable, PathToken.join(this.path), bytes, maximum));
+                return false;
+            }
+        }
+
+        builder.append(expansion);
+        return true;
+    }
+
+    /**
+     * Resolves the expanded value of a variable, memoizing the result.
+     *
+     * @param name
+     *      the name of the variable to resolve.
+     * @return
+     *      the expanded value, or null if the variable is undefined.
+     */
+    private String lookup(String name) {
+        if (this.resolved.containsKey(name)) {
+            return this.resolved.get(name);
+        }
+
+        final String raw = this.variables.get(name);
+
+        String value = null;
+        if (raw != null) {
+            this.resolving.add(name);
+            value = this.expand(raw);
+            this.resolving.remove(name);
+        }
+
+        this.resolved.put(name, value);
+        return value;
+    }
+
+    /**
+     * Records a failed placeholder at the current path.
+     *
+     * @param reason
+     *      the reason the placeholder failed.
+     * @param variable
+     *      the variable named by the placeholder.
+     */
+    private void fail(SubstitutionReport.Reason reason, String variable) {
+        this.collector.record(new SubstitutionReport.Failure(reason, variable, PathToken.join(this.path)));
+    }
+
+    /**
+     * Determines whether a node may contain a placeholder.
+     *
+     * @param node
+     *      the node to check.
+     * @return
+     *      true if the node is a container, or a string containing a "$".
+     */
+    private static boolean candidate(JsonNode node) {
+        return node != null && (node.isContainerNode() || (node.isTextual() && node.textValue().indexOf('$') >= 0));
+    }
+
+    /**
+     * Measures the length of a sequence of characters encoded as UTF-8.
+     *
+     * @param chars
+     *      the characters to measure.
+     * @return
+     *      the number of bytes needed to encode the characters.
+     */
+    static long utf8Length(CharSequence chars) {
+        long length = 0;
+        for (int i = 0, j = chars.length(); i < j; i++) {
+            final char c = chars.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < j && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                // surrogate pairs encode a single 4 byte character
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Locates the "}" closing a placeholder, accounting for nesting.
+     *
+     * @param text
+     *      the string containing the placeholder.
+     * @param from
+     *      the index just after the opening "${".
+     * @return
+     *      the index of the closing "}", or -1 if unterminated.
+     */
+    private static int close(String text, int from) {
+        int depth = 1;
+        for (int i = from, j = text.length(); i < j; i++) {
+            final char c = text.charAt(i);
+            if (c == '$' && i + 1 < j && text.charAt(i + 1) == '{') {
+                depth++;
+                i++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,365 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A compiled RFC 6902 JSON Patch document.
+ *
+ * Patches are validated when compiled, so any malformed operation rejects
+ * the patch as a whole before it's ever applied. Applying a patch is atomic;
+ * operations are applied in order to a copy of the configuration, and only
+ * if every operation (including any "test") succeeds is the copy kept.
+ */
+final class JsonPatch {
+
+    /**
+     * Compares numbers by value, so 1 and 1.0 are equal when testing.
+     */
+    private static final Comparator<JsonNode> NUMERIC = new Comparator<JsonNode>() {
+        @Override
+        public int compare(JsonNode left, JsonNode right) {
+            if (left.isNumber() && right.isNumber()) {
+                return left.decimalValue().compareTo(right.decimalValue());
+            }
+            return left.equals(right) ? 0 : 1;
+        }
+    };
+
+    /**
+     * The operations of this patch, in order.
+     */
+    private final List<Operation> operations;
+
+    /**
+     * Create a new instance.
+     *
+     * @param operations
+     *      the operations of this patch, in order.
+     */
+    private JsonPatch(List<Operation> operations) {
+        this.operations = Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Compiles a patch from a parsed patch document.
+     *
+     * @param document
+     *      the parsed patch document.
+     * @return
+     *      a new {@link JsonPatch}, or null if the document is malformed.
+     */
+    static JsonPatch compile(JsonNode document) {
+        if (!document.isArray()) {
+            return null;
+        }
+
+        final List<Operation> operations = new ArrayList<>(document.size());
+
+        for (JsonNode op : document) {
+            final Type type = Type.of(op.path("op").asText());
+            final JsonPointer path = pointer(op.get("path"));
+
+            if (type == null || path == null) {
+                return null;
+            }
+
+            JsonPointer from = null;
+            JsonNode value = null;
+
+            switch (type) {
+                case ADD:
+                case REPLACE:
+                case TEST:
+                    if ((value = op.get("value")) == null) {
+                        return null;
+                    }
+                    break;
+
+                case MOVE:
+                case COPY:
+                    if ((from = pointer(op.get("from"))) == null) {
+                        return null;
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+
+            operations.add(new Operation(type, path, from, value));
+        }
+
+        return new JsonPatch(operations);
+    }
+
+    /**
+     * Applies this patch to a configuration.
+     *
+     * @param config
+     *      the configuration to patch in place.
+     * @return
+     *      null if the patch was applied, otherwise the path of the first
+     *      operation which failed (in which case the configuration is left
+     *      untouched).
+     */
+    String apply(ObjectNode config) {
+        final ObjectNode copy = config.deepCopy();
+
+        for (Operation operation : this.operations) {
+            if (!operation.apply(copy)) {
+                return operation.path.toString();
+            }
+        }
+
+        config.removeAll();
+        config.setAll(copy);
+        return null;
+    }
+
+    /**
+     * Retrieves the number of operations in this patch.
+     *
+     * @return
+     *      the number of operations.
+     */
+    int size() {
+        return this.operations.size();
+    }
+
+    /**
+     * Parses a JSON Pointer, rejecting the root pointer.
+     *
+     * The root can't be targeted, as the root of a configuration must always
+     * remain an object.
+     *
+     * @param node
+     *      the node containing the pointer.
+     * @return
+     *      the parsed pointer, or null if it's invalid.
+     */
+    private static JsonPointer pointer(JsonNode node) {
+        if (node == null || !node.isTextual() || node.asText().isEmpty()) {
+            return null;
+        }
+        try {
+            return JsonPointer.compile(node.asText());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the container holding the target of a pointer.
+     *
+     * @param root
+     *      the root to resolve against.
+     * @param pointer
+     *      the pointer to the target.
+     * @return
+     *      the container of the target, or null if there is no such container.
+     */
+    private static JsonNode parent(JsonNode root, JsonPointer pointer) {
+        final JsonNode parent = root.at(pointer.head());
+        return parent.isContainerNode() ? parent : null;
+    }
+
+    /**
+     * Retrieves the target of a pointer within its container.
+     *
+     * @param parent
+     *      the container of the target.
+     * @param last
+     *      the final segment of the pointer.
+     * @return
+     *      the target node, or null if missing.
+     */
+    private static JsonNode get(JsonNode parent, JsonPointer last) {
+        return parent.isObject()
+            ? parent.get(last.getMatchingProperty())
+            : parent.get(last.getMatchingIndex());
+    }
+
+    /**
+     * Adds a value at a pointer, as per the "add" operation.
+     *
+     * @param root
+     *      the root to add the value within.
+     * @param pointer
+     *      the pointer to add the value at.
+     * @param value
+     *      the value to add.
+     * @return
+     *      true if the value was added.
+     */
+    private static boolean add(JsonNode root, JsonPointer pointer, JsonNode value) {
+        final JsonNode parent = parent(root, pointer);
+        if (parent == null) {
+            return false;
+        }
+
+        final JsonPointer last = pointer.last();
+
+        if (parent.isObject()) {
+            ((ObjectNode) parent).set(last.getMatchingProperty(), value);
+            return true;
+        }
+
+        final ArrayNode array = (ArrayNode) parent;
+
+        // "-" appends to the end of the array
+        if ("-".equals(last.getMatchingProperty())) {
+            array.add(value);
+            return true;
+        }
+
+        final int index = last.getMatchingIndex();
+        if (index < 0 || index > array.size()) {
+            return false;
+        }
+
+        array.insert(index, value);
+        return true;
+    }
+
+    /**
+     * Removes the value at a pointer, as per the "remove" operation.
+     *
+     * @param root
+     *      the root to remove the value from.
+     * @param pointer
+     *      the pointer to the value to remove.
+     * @return
+     *      the removed value, or null if there was no value.
+     */
+    private static JsonNode remove(JsonNode root, JsonPointer pointer) {
+        final JsonNode parent = parent(root, pointer);
+        if (parent == null) {
+            return null;
+        }
+
+        final JsonPointer last = pointer.last();
+
+        return parent.isObject()
+            ? ((ObjectNode) parent).remove(last.getMatchingProperty())
+            : ((ArrayNode) parent).remove(last.getMatchingIndex());
+    }
+
+    /**
+     * The types of operation.
+     */
+    private enum Type {
+        ADD, REMOVE, REPLACE, MOVE, COPY, TEST;
+
+        /**
+         * Resolves a type from the name used in a patch document.
+         *
+         * @param name
+         *      the name of the operation.
+         * @return
+         *      the matching {@link Type}, or null if unknown.
+         */
+        private static Type of(String name) {
+            for (Type type : values()) {
+                if (type.name().toLowerCase().equals(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A single operation of a patch.
+     */
+    private static final class Operation {
+
+        /**
+         * The type of this operation.
+         */
+        private final Type type;
+
+        /**
+         * The pointer this operation targets.
+         */
+        private final JsonPointer path;
+
+        /**
+         * The pointer this operation reads from, for moves and copies.
+         */
+        private final JsonPointer from;
+
+        /**
+         * The value of this operation, for adds, replaces and tests.
+         */
+        private final JsonNode value;
+
+        /**
+         * Create a new instance.
+         *
+         * @param type
+         *      the type of this operation.
+         * @param path
+         *      the pointer this operation targets.
+         * @param from
+         *      the pointer this operation reads from, if any.
+         * @param value
+         *      the value of this operation, if any.
+         */
+        private Operation(Type type, JsonPointer path, JsonPointer from, JsonNode value) {
+            this.type = type;
+            this.path = path;
+            this.from = from;
+            this.value = value;
+        }
+
+        /**
+         * Applies this operation to a configuration.
+         *
+         * @param root
+         *      the configuration to apply this operation to.
+         * @return
+         *      true if the operation succeeded.
+         */
+        private boolean apply(ObjectNode root) {
+            switch (this.type) {
+                case ADD:
+                    return add(root, this.path, this.value.deepCopy());
+
+                case REMOVE:
+                    return remove(root, this.path) != null;
+
+                case REPLACE:
+                    return remove(root, this.path) != null && add(root, this.path, this.value.deepCopy());
+
+                case MOVE:
+                    // a value can't be moved inside of itself
+                    if (this.path.toString().startsWith(this.from.toString() + "/")) {
+                        return false;
+                    }
+                    final JsonNode moved = remove(root, this.from);
+                    return moved != null && add(root, this.path, moved);
+
+                case COPY:
+                    final JsonNode source = parent(root, this.from);
+                    final JsonNode copied = source == null ? null : get(source, this.from.last());
+                    return copied != null && add(root, this.path, copied.deepCopy());
+
+                case TEST:
+                    final JsonNode parent = parent(root, this.path);
+                    final JsonNode actual = parent == null ? null : get(parent, this.path.last());
+                    return actual != null && actual.equals(NUMERIC, this.value);
+
+                default:
+                    return false;
+            }
+        }
+    }
+}
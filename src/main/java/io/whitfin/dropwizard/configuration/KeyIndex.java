@@ -0,0 +1,210 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An index of field names within a tree, folded for loose matching.
+ *
+ * Environment variables can't express case or dashes, so field names are
+ * matched after folding: names are lower-cased and all "-" and "_" removed,
+ * so "maxThreads", "max-threads", "max_threads" and "MAXTHREADS" all match.
+ * Names containing a "." (such as logger names) only fold in case, as their
+ * "-" and "_" are significant; "io.my_app" never matches "io.myApp".
+ *
+ * Each object is indexed the first time it's resolved against, so every
+ * later lookup within the same object is a single hash lookup. Arrays are
+ * indexed in the same way when their elements are selected by the value of
+ * a field, once per field, so selecting many elements of a large array
+ * never scans the array more than once. Instances are intended to live for
+ * a single pass over a single tree, and are not thread safe.
+ */
+final class KeyIndex {
+
+    /**
+     * The index of each object seen so far, by identity.
+     */
+    private Map<ObjectNode, Map<String, String>> indices;
+
+    /**
+     * The index of each array seen so far, by identity, then by folded field.
+     */
+    private Map<ArrayNode, Map<String, Map<String, Integer>>> elements;
+
+    /**
+     * Resolves a field name against the existing fields of an object.
+     *
+     * If an existing field matches the name once folded, the existing name
+     * is returned so that its original case is preserved. Otherwise the name
+     * is returned as provided, and is indexed on the assumption that it's
+     * about to be created.
+     *
+     * @param node
+     *      the object to resolve the name within.
+     * @param name
+     *      the field name to resolve.
+     * @return
+     *      the name of the existing field, or the provided name.
+     */
+    String resolve(ObjectNode node, String name) {
+        // nothing to match against in an empty object, and exact matches
+        // never need to go through (or build) the index
+        if (node.size() == 0 || node.has(name)) {
+            return name;
+        }
+
+        if (this.indices == null) {
+            this.indices = new IdentityHashMap<>();
+        }
+
+        Map<String, String> index = this.indices.get(node);
+        if (index == null) {
+            this.indices.put(node, index = new HashMap<>());
+            for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+                final String field = it.next();
+                final String folded = fold(field);
+
+                // exact matches always take priority over folded matches
+                if (!index.containsKey(folded) || field.equals(folded)) {
+                    index.put(folded, field);
+                }
+            }
+        }
+
+        final String folded = fold(name);
+        final String existing = index.get(folded);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        index.put(folded, name);
+        return name;
+    }
+
+    /**
+     * Finds the element of an array with a field matching a value.
+     *
+     * Field names and values are both matched loosely, as environment
+     * variables can't express case or dashes, and only scalar fields are
+     * matched. Where many elements share a value, the first is selected.
+     *
+     * @param array
+     *      the array to search the elements of.
+     * @param field
+     *      the name of the identifying field of each element.
+     * @param value
+     *      the value of the field in the element to find.
+     * @return
+     *      the index of the matching element, or -1 if none match.
+     */
+    int element(ArrayNode array, String field, String value) {
+        if (this.elements == null) {
+            this.elements = new IdentityHashMap<>();
+        }
+
+        Map<String, Map<String, Integer>> fields = this.elements.get(array);
+        if (fields == null) {
+            this.elements.put(array, fields = new HashMap<>());
+        }
+
+        final String folded = fold(field);
+
+        Map<String, Integer> positions = fields.get(folded);
+        if (positions == null) {
+            fields.put(folded, positions = new HashMap<>());
+            for (int i = 0, j = array.size(); i < j; i++) {
+                final JsonNode identifier = field(array.get(i), field, folded);
+                if (identifier == null || !identifier.isValueNode() || identifier.isNull()) {
+                    continue;
+                }
+
+                // the first element with a value wins
+                final String key = fold(identifier.asText());
+                if (!positions.containsKey(key)) {
+                    positions.put(key, i);
+                }
+            }
+        }
+
+        final Integer position = positions.get(fold(value));
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Retrieves a field of an element, matched loosely.
+     *
+     * @param element
+     *      the element to retrieve the field from.
+     * @param field
+     *      the name of the field to retrieve.
+     * @param folded
+     *      the folded name of the field.
+     * @return
+     *      the value of the field, or null if there is no such field.
+     */
+    private static JsonNode field(JsonNode element, String field, String folded) {
+        if (!element.isObject()) {
+            return null;
+        }
+
+        final JsonNode exact = element.get(field);
+        if (exact != null) {
+            return exact;
+        }
+
+        for (Iterator<Map.Entry<String, JsonNode>> it = element.fields(); it.hasNext(); ) {
+            final Map.Entry<String, JsonNode> entry = it.next();
+            if (fold(entry.getKey()).equals(folded)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Folds a field name for loose matching.
+     *
+     * Names containing a "." are only lower-cased, as their "-" and "_" are
+     * significant (as in logger names). Names which are already folded are
+     * returned as-is, without copying.
+     *
+     * @param name
+     *      the name to fold.
+     * @return
+     *      the name lower-cased, with all "-" and "_" removed unless dotted.
+     */
+    static String fold(String name) {
+        int i = 0;
+        final int length = name.length();
+        final boolean dotted = name.indexOf('.') >= 0;
+
+        // skip past any prefix which is already folded
+        while (i < length) {
+            final char c = name.charAt(i);
+            if ((!dotted && (c == '-' || c == '_')) || Character.toLowerCase(c) != c) {
+                break;
+            }
+            i++;
+        }
+
+        if (i == length) {
+            return name;
+        }
+
+        final StringBuilder builder = new StringBuilder(length).append(name, 0, i);
+        for (; i < length; i++) {
+            final char c = name.charAt(i);
+            if (dotted || (c != '-' && c != '_')) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,313 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.util.List;
+
+/**
+ * A single pass lexer for environment variable keys.
+ *
+ * Keys are split into segments on a single "_" character, with each segment
+ * lower-cased and emitted as a typed {@link PathToken}; segments consisting
+ * solely of digits become array indices, and all others become field names.
+ *
+ * Runs of underscores act as escapes, to allow addressing fields which cannot
+ * otherwise be represented in an environment variable name:
+ *
+ * - "_" separates two segments.
+ * - "__" is a literal "_" inside a segment.
+ * - "___" is a literal "-" inside a segment.
+ * - "____" is a literal "." inside a segment.
+ * - "_____" is a literal "=" inside a segment.
+ *
+ * Segments containing a "=" select an array element by the value of one of
+ * its fields, such as "NAME_____PRIMARY" for the element with a "name" of
+ * "primary"; these are emitted as key tokens.
+ *
+ * A wildcard segment may also be configured (such as "STAR"), in which case
+ * any segment matching it (in any case) is emitted as a wildcard token rather
+ * than a field name, as in "SERVERS_STAR_PORT".
+ *
+ * Field tokens are memoized by their decoded name, so lexing a segment which
+ * has been seen before allocates nothing. Instances are not thread safe, as
+ * they re-use an internal buffer between segments.
+ */
+final class KeyLexer {
+
+    /**
+     * The maximum number of field tokens to memoize.
+     */
+    private static final int MAX_MEMOIZED = 4096;
+
+    /**
+     * The lower-cased segment lexed as a wildcard, if enabled.
+     */
+    private final String wildcard;
+
+    /**
+     * The buffer used to decode the current segment.
+     */
+    private char[] buffer = new char[64];
+
+    /**
+     * The open addressing table of memoized field tokens.
+     */
+    private PathToken[] table = new PathToken[64];
+
+    /**
+     * The number of memoized field tokens.
+     */
+    private int memoized;
+
+    /**
+     * Create a new instance without wildcards.
+     */
+    KeyLexer() {
+        this(null);
+    }
+
+    /**
+     * Create a new instance with a wildcard segment.
+     *
+     * @param wildcard
+     *      the segment to lex as a wildcard, or null to disable wildcards.
+     */
+    KeyLexer(String wildcard) {
+        this.wildcard = wildcard == null ? null : wildcard.toLowerCase();
+    }
+
+    /**
+     * Lexes a region of a key into a list of tokens.
+     *
+     * Keys with empty segments (such as a leading or trailing separator), or
+     * with an unrecognised escape sequence, are rejected as invalid. Any tokens
+     * appended before the key was rejected are left in the list.
+     *
+     * @param key
+     *      the key to read from.
+     * @param start
+     *      the index to begin reading at, inclusive.
+     * @param end
+     *      the index to stop reading at, exclusive.
+     * @param tokens
+     *      the list to append all lexed tokens to.
+     * @return
+     *      true if the key was valid and lexed successfully.
+     */
+    boolean lex(CharSequence key, int start, int end, List<PathToken> tokens) {
+        int i = start;
+
+        while (true) {
+            int length = 0;
+            int hash = 0;
+            int split = -1;
+            boolean numeric = true;
+
+            // decode the next segment into the buffer
+            while (i < end) {
+                char c = key.charAt(i);
+
+                if (c == '_') {
+                    // measure the run of underscores
+                    int run = 1;
+                    while (i + run < end && key.charAt(i + run) == '_') {
+                        run++;
+                    }
+
+                    // a single underscore ends the segment
+                    if (run == 1) {
+                        break;
+                    }
+
+                    // anything else is an escaped literal
+                    switch (run) {
+                        case 2:
+                            c = '_';
+                            break;
+                        case 3:
+                            c = '-';
+                            break;
+                        case 4:
+                            c = '.';
+                            break;
+                        case 5:
+                            c = '=';
+                            if (split < 0) {
+                                split = length;
+                            }
+                            break;
+                        default:
+                            return false;
+                    }
+
+                    i += run;
+                    numeric = false;
+                } else {
+                    c = lower(c);
+                    i++;
+
+                    if (c < '0' || c > '9') {
+                        numeric = false;
+                    }
+                }
+
+                if (length == this.buffer.length) {
+                    final char[] resized = new char[length * 2];
+                    System.arraycopy(this.buffer, 0, resized, 0, length);
+                    this.buffer = resized;
+                }
+
+                this.buffer[length++] = c;
+                hash = 31 * hash + c;
+            }
+
+            // empty segments are never valid
+            if (length == 0) {
+                return false;
+            }
+
+            // emit the token for the segment
+            if (split >= 0) {
+                // keys need both a field name and a value
+                if (split == 0 || split == length - 1) {
+                    return false;
+                }
+                tokens.add(PathToken.key(
+                    new String(this.buffer, 0, split),
+                    new String(this.buffer, split + 1, length - split - 1)));
+            } else if (this.wildcard != null && this.matches(this.wildcard, length)) {
+                tokens.add(PathToken.wildcard());
+            } else {
+                tokens.add(numeric && length <= 10
+                    ? this.index(length, hash)
+                    : this.field(length, hash));
+            }
+
+            // the end of the key
+            if (i >= end) {
+                return true;
+            }
+
+            // skip the separator
+            i++;
+        }
+    }
+
+    /**
+     * Emits a token for a numeric segment in the buffer.
+     *
+     * Segments which overflow an integer are treated as field names.
+     *
+     * @param length
+     *      the length of the segment in the buffer.
+     * @param hash
+     *      the hash of the segment in the buffer.
+     * @return
+     *      a {@link PathToken} for the segment.
+     */
+    private PathToken index(int length, int hash) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value * 10 + (this.buffer[i] - '0');
+        }
+        return value > Integer.MAX_VALUE
+            ? this.field(length, hash)
+            : PathToken.index((int) value);
+    }
+
+    /**
+     * Emits a memoized token for a field segment in the buffer.
+     *
+     * The hash provided matches {@link String#hashCode()} of the segment, so
+     * it can be compared directly against the names of memoized tokens.
+     *
+     * @param length
+     *      the length of the segment in the buffer.
+     * @param hash
+     *      the hash of the segment in the buffer.
+     * @return
+     *      a {@link PathToken} for the segment.
+     */
+    private PathToken field(int length, int hash) {
+        final int mask = this.table.length - 1;
+
+        // probe the table for an existing token
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (PathToken token; (token = this.table[slot]) != null; slot = (slot + 1) & mask) {
+            final String name = token.getName();
+            if (name.hashCode() == hash && this.matches(name, length)) {
+                return token;
+            }
+        }
+
+        final PathToken token = PathToken.field(new String(this.buffer, 0, length));
+
+        // memoize the new token, unless we're already full
+        if (this.memoized < MAX_MEMOIZED) {
+            this.table[slot] = token;
+            if (++this.memoized * 2 > this.table.length) {
+                this.resize();
+            }
+        }
+
+        return token;
+    }
+
+    /**
+     * Determines whether a name matches the segment in the buffer.
+     *
+     * @param name
+     *      the name to compare against.
+     * @param length
+     *      the length of the segment in the buffer.
+     * @return
+     *      true if the name matches the segment.
+     */
+    private boolean matches(String name, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != this.buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the size of the memoization table.
+     */
+    private void resize() {
+        final PathToken[] previous = this.table;
+        final PathToken[] resized = new PathToken[previous.length * 2];
+        final int mask = resized.length - 1;
+
+        for (PathToken token : previous) {
+            if (token == null) {
+                continue;
+            }
+            final int hash = token.getName().hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (resized[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            resized[slot] = token;
+        }
+
+        this.table = resized;
+    }
+
+    /**
+     * Lower-cases a character, with a fast path for ASCII.
+     *
+     * @param c
+     *      the character to lower-case.
+     * @return
+     *      the lower-cased character.
+     */
+    private static char lower(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        return c < 128 ? c : Character.toLowerCase(c);
+    }
+}
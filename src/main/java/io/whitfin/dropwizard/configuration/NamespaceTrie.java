@@ -0,0 +1,225 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A character trie of namespaces, classifying keys in a single walk.
+ *
+ * Each key is walked once from its first character, rather than checked
+ * against every namespace in turn with a concatenated prefix, so the cost of
+ * classifying a key depends only on the length of its namespace. Namespaces
+ * are kept in their declared order, which is their increasing precedence.
+ *
+ * Namespaces may not overlap (such as "APP" and "APP_POD"), as a variable
+ * like "APP_POD_PORT" would then belong to both; every key belongs to at
+ * most one namespace.
+ */
+final class NamespaceTrie {
+
+    /**
+     * The namespaces within this trie, in increasing precedence.
+     */
+    private final List<String> namespaces;
+
+    /**
+     * The root node of the trie, matching the empty string.
+     */
+    private final Node root;
+
+    /**
+     * Create a new instance.
+     *
+     * @param namespaces
+     *      the namespaces to classify keys into, in increasing precedence.
+     */
+    NamespaceTrie(List<String> namespaces) {
+        this.namespaces = Collections.unmodifiableList(new ArrayList<>(namespaces));
+        this.root = new Node();
+
+        if (this.namespaces.isEmpty()) {
+            throw new IllegalArgumentException("namespaces must not be empty");
+        }
+
+        for (int i = 0, j = this.namespaces.size(); i < j; i++) {
+            final String namespace = Objects.requireNonNull(this.namespaces.get(i));
+            if (namespace.isEmpty()) {
+                throw new IllegalArgumentException("namespace must not be empty");
+            }
+
+            for (String other : this.namespaces.subList(0, i)) {
+                if (other.equals(namespace)
+                        || other.startsWith(namespace + "_")
+                        || namespace.startsWith(other + "_")) {
+                    throw new IllegalArgumentException("namespaces " + other + " and " + namespace + " overlap");
+                }
+            }
+
+            Node node = this.root;
+            for (int k = 0, l = namespace.length(); k < l; k++) {
+                node = node.add(namespace.charAt(k));
+            }
+            node.namespace = i;
+        }
+    }
+
+    /**
+     * Creates a trie of a single namespace.
+     *
+     * @param namespace
+     *      the namespace to classify keys into.
+     * @return
+     *      a new {@link NamespaceTrie} instance.
+     */
+    static NamespaceTrie of(String namespace) {
+        return new NamespaceTrie(Collections.singletonList(namespace));
+    }
+
+    /**
+     * Retrieves the number of namespaces in this trie.
+     *
+     * @return
+     *      the number of namespaces.
+     */
+    int size() {
+        return this.namespaces.size();
+    }
+
+    /**
+     * Retrieves a namespace by its precedence.
+     *
+     * @param index
+     *      the index of the namespace, in increasing precedence.
+     * @return
+     *      the namespace at the index.
+     */
+    String get(int index) {
+        return this.namespaces.get(index);
+    }
+
+    /**
+     * Classifies an environment variable into a namespace.
+     *
+     * @param key
+     *      the variable to classify.
+     * @return
+     *      the index of the namespace, or -1 if within none.
+     */
+    int match(String key) {
+        return this.match(key, 0, key.length(), '_', false);
+    }
+
+    /**
+     * Classifies a region of a key into a namespace.
+     *
+     * A key is within a namespace when it starts with the namespace followed
+     * by the separator; nothing is required to follow the separator, so the
+     * caller decides whether an empty remainder is valid.
+     *
+     * @param key
+     *      the content containing the key.
+     * @param start
+     *      the index the key starts at, inclusive.
+     * @param end
+     *      the index the key ends at, exclusive.
+     * @param separator
+     *      the character separating the namespace from the rest of the key.
+     * @param ignoreCase
+     *      whether the namespace may appear in any case.
+     * @return
+     *      the index of the namespace, or -1 if within none.
+     */
+    int match(CharSequence key, int start, int end, char separator, boolean ignoreCase) {
+        Node node = this.root;
+        for (int i = start; i < end; i++) {
+            final char c = key.charAt(i);
+
+            // namespaces never overlap, so the first match is the only match
+            if (c == separator && node.namespace >= 0) {
+                return node.namespace;
+            }
+
+            Node next = node.child(c);
+            if (next == null && ignoreCase) {
+                next = node.child(Character.toUpperCase(c));
+                if (next == null) {
+                    next = node.child(Character.toLowerCase(c));
+                }
+            }
+            if (next == null) {
+                return -1;
+            }
+            node = next;
+        }
+        return -1;
+    }
+
+    /**
+     * A single character position within the trie.
+     *
+     * Namespaces are short and use few distinct characters, so children are
+     * kept in small parallel arrays and scanned linearly.
+     */
+    private static final class Node {
+
+        /**
+         * The characters leading to each child.
+         */
+        private char[] labels = new char[0];
+
+        /**
+         * The children of this node, parallel to the labels.
+         */
+        private Node[] children = new Node[0];
+
+        /**
+         * The index of the namespace ending here, or -1 if none.
+         */
+        private int namespace = -1;
+
+        /**
+         * Retrieves the child reached by a character.
+         *
+         * @param c
+         *      the character to follow.
+         * @return
+         *      the child node, or null if there's none.
+         */
+        private Node child(char c) {
+            for (int i = 0; i < this.labels.length; i++) {
+                if (this.labels[i] == c) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Retrieves the child reached by a character, creating it if needed.
+         *
+         * @param c
+         *      the character to follow.
+         * @return
+         *      the child node.
+         */
+        private Node add(char c) {
+            final Node existing = this.child(c);
+            if (existing != null) {
+                return existing;
+            }
+
+            final int length = this.labels.length;
+            final Node child = new Node();
+
+            this.labels = Arrays.copyOf(this.labels, length + 1);
+            this.children = Arrays.copyOf(this.children, length + 1);
+            this.labels[length] = c;
+            this.children[length] = child;
+
+            return child;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.util.Objects;
+
+/**
+ * A single raw override read from an {@link OverrideSource}.
+ *
+ * Keys are always in the form of an environment variable, including the
+ * namespace (such as "MY_APP_SERVER_PORT"), regardless of the form used by
+ * the source itself, so that overrides from every source can be merged.
+ */
+public final class OverrideEntry {
+
+    /**
+     * The key of the override, as an environment variable.
+     */
+    private final String key;
+
+    /**
+     * The raw value of the override.
+     */
+    private final String value;
+
+    /**
+     * Create a new instance.
+     *
+     * @param key
+     *      the key of the override, as an environment variable.
+     * @param value
+     *      the raw value of the override.
+     */
+    public OverrideEntry(String key, String value) {
+        this.key = Objects.requireNonNull(key);
+        this.value = Objects.requireNonNull(value);
+    }
+
+    /**
+     * Retrieves the key of this override.
+     *
+     * @return
+     *      the key of the override, as an environment variable.
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Retrieves the raw value of this override.
+     *
+     * @return
+     *      the raw value of the override.
+     */
+    public String getValue() {
+        return this.value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return this.key + "=" + this.value;
+    }
+}
@@ -0,0 +1,827 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable plan of overrides to apply to a configuration.
+ *
+ * Plans are compiled once from a set of sources, with all keys tokenized
+ * ahead of time, so applying a plan to a configuration is only a matter of
+ * setting each value at each path. Values are coerced to the type of their
+ * target as they're set, via {@link OverrideValue}.
+ *
+ * Two reserved variables allow shipping overrides as a single document:
+ * "NAMESPACE__JSON_PATCH" holds an RFC 6902 JSON Patch, and
+ * "NAMESPACE__MERGE_PATCH" holds an RFC 7396 merge patch. A JSON Patch is
+ * applied first, as its operations (such as "test") are defined against the
+ * document as it was. The merge patch is folded into the trie alongside all
+ * other overrides, beneath them, so a single walk applies both and any other
+ * variable wins over the merge patch at the same path.
+ *
+ * Overrides may come from many namespaces, each forming a layer which takes
+ * precedence over the layers before it, as if each namespace were applied
+ * on top of the last. Layers are folded into the same trie, so a single walk
+ * applies all of them; each layer clears anything beneath its own values in
+ * the layers before it. As a JSON Patch must see the document as left by the
+ * layers before it, any later layer with a JSON Patch starts a new stage,
+ * which applies its patch and then a trie of its own (and any later layers)
+ * on top of the result of the previous stage.
+ *
+ * Keys may contain a wildcard segment (when enabled), which fans out over
+ * every element of an array or every value of an object. Wildcards can only
+ * be applied to a tree, as they touch values which aren't known until the
+ * configuration is read.
+ *
+ * The number of overrides and the depth of every path are checked against
+ * the {@link SubstitutionLimits} as the plan is compiled, so a violation is
+ * reported before the trie is ever built. Any other override which can't be
+ * compiled is recorded as a {@link SubstitutionReport.Failure} rather than
+ * thrown, and is replayed into the report of every substitution.
+ */
+final class OverridePlan {
+
+    /**
+     * The suffix of the variable holding a JSON Patch.
+     */
+    private static final String JSON_PATCH = "__JSON_PATCH";
+
+    /**
+     * The suffix of the variable holding a merge patch.
+     */
+    private static final String MERGE_PATCH = "__MERGE_PATCH";
+
+    /**
+     * The compiled overrides of each namespace, in increasing precedence.
+     */
+    private final List<Layer> layers;
+
+    /**
+     * The stages of the plan, each applied on top of the last.
+     */
+    private final List<Stage> stages;
+
+    /**
+     * Whether any override path depends on the content of the configuration,
+     * via a wildcard or keyed segment.
+     */
+    private final boolean dynamic;
+
+    /**
+     * The fingerprint of all overrides, lazily initialized.
+     */
+    private volatile byte[] fingerprint;
+
+    /**
+     * The overrides which failed to compile cleanly.
+     */
+    private final List<SubstitutionReport.Failure> failures;
+
+    /**
+     * The names of all variables which name no valid property.
+     */
+    private final List<String> unknown;
+
+    /**
+     * Create a new instance.
+     *
+     * @param layers
+     *      the compiled overrides of each namespace, in increasing precedence.
+     * @param failures
+     *      the overrides which failed to compile cleanly.
+     * @param unknown
+     *      the names of all variables which name no valid property.
+     * @param limits
+     *      the limits to enforce when applying the plan.
+     */
+    private OverridePlan(List<Layer> layers, List<SubstitutionReport.Failure> failures, List<String> unknown,
+                         SubstitutionLimits limits) {
+        this.layers = Collections.unmodifiableList(layers);
+        this.failures = Collections.unmodifiableList(failures);
+        this.unknown = Collections.unmodifiableList(unknown);
+
+        final List<Stage> stages = new ArrayList<>();
+
+        boolean dynamic = false;
+        OverrideTrie trie = null;
+
+        for (Layer layer : layers) {
+            // a JSON Patch must be applied on top of every layer before it
+            if (trie == null || layer.jsonPatch != null) {
+                trie = new OverrideTrie(limits);
+                stages.add(new Stage(layer, trie));
+            } else {
+                // later layers win over anything beneath their values in earlier layers
+                if (layer.mergePatch != null) {
+                    clear(trie, layer.mergePatch, new ArrayList<PathToken>());
+                }
+                for (Entry entry : layer.entries) {
+                    trie.clear(entry.path);
+                }
+            }
+
+            // the merge patch goes in first, so every override takes precedence
+            if (layer.mergePatch != null) {
+                trie.merge(layer.mergePatch, layer.namespace + MERGE_PATCH);
+            }
+
+            for (Entry entry : layer.entries) {
+                trie.insert(entry.path, entry.value);
+                dynamic |= selects(entry.path);
+            }
+        }
+
+        this.stages = Collections.unmodifiableList(stages);
+        this.dynamic = dynamic;
+    }
+
+    /**
+     * Compiles a plan from all overrides inside many namespaces.
+     *
+     * The entries of all sources are merged as they're compiled, so each key
+     * is only compiled once, from the source with the highest precedence.
+     * Every source is read for all namespaces at once, so the environment
+     * is only scanned once no matter how many namespaces there are.
+     *
+     * @param namespaces
+     *      the namespaces of allowed configuration overrides.
+     * @param wildcard
+     *      the key segment to treat as a wildcard, or null if disabled.
+     * @param sources
+     *      the sources to read overrides from, in increasing precedence.
+     * @param mapper
+     *      the {@link ObjectMapper} used to parse values.
+     * @param schema
+     *      the schema to resolve keys against, or null to allow any path.
+     * @param limits
+     *      the limits to enforce on the overrides.
+     * @return
+     *      a new {@link OverridePlan} instance.
+     * @throws SubstitutionException
+     *      if the overrides violate any limit.
+     * @throws IOException
+     *      if any source cannot be read.
+     */
+    static OverridePlan compile(NamespaceTrie namespaces, String wildcard, List<OverrideSource> sources, ObjectMapper mapper,
+                                PropertySchema schema, SubstitutionLimits limits) throws IOException {
+        final List<PathToken> tokens = new ArrayList<>();
+        final List<PathToken> resolved = new ArrayList<>();
+        final List<Layer> layers = new ArrayList<>(namespaces.size());
+        final List<String> unknown = new ArrayList<>();
+        final List<SubstitutionException.Violation> violations = new ArrayList<>();
+        final List<SubstitutionReport.Failure> failures = new ArrayList<>();
+        final List<Iterator<OverrideEntry>> merged = OverrideSources.merge(sources, namespaces);
+        final KeyLexer lexer = new KeyLexer(wildcard);
+        final ValueParser parser = new ValueParser(mapper);
+
+        int overrides = 0;
+
+        for (int n = 0, m = namespaces.size(); n < m; n++) {
+            final String namespace = namespaces.get(n);
+            final String prefix = namespace + "_";
+            final List<Entry> entries = new ArrayList<>();
+
+            ObjectNode mergePatch = null;
+            JsonPatch jsonPatch = null;
+            String jsonPatchSource = null;
+
+            // iterate all merged pairs of properties across sources, all within the namespace
+            for (Iterator<OverrideEntry> it = merged.get(n); it.hasNext(); ) {
+                // pull the next key/value pair
+                final OverrideEntry prop = it.next();
+                final String key = prop.getKey();
+                final String value = prop.getValue();
+
+                // reserved patch documents, which must parse cleanly
+                if (key.length() == namespace.length() + MERGE_PATCH.length() && key.endsWith(MERGE_PATCH)) {
+                    final ValueParser.Result parsed = parser.parse(value);
+                    if (parsed.isFailure() || !parsed.getNode().isObject()) {
+                        failures.add(new SubstitutionReport.Failure(SubstitutionReport.Reason.INVALID_PATCH, key, null));
+                        continue;
+                    }
+
+                    final int depth = depth(parsed.getNode());
+                    if (depth > limits.getMaxDepth()) {
+                        violations.add(new SubstitutionException.Violation(
+                            SubstitutionLimits.Limit.DEPTH, key, null, depth, limits.getMaxDepth()));
+                        continue;
+                    }
+
+                    overrides = count(key, overrides + values(parsed.getNode()), limits);
+                    mergePatch = (ObjectNode) parsed.getNode();
+                    continue;
+                }
+
+                if (key.length() == namespace.length() + JSON_PATCH.length() && key.endsWith(JSON_PATCH)) {
+                    final ValueParser.Result parsed = parser.parse(value);
+                    final JsonPatch compiled = parsed.isFailure() ? null : JsonPatch.compile(parsed.getNode());
+                    if (compiled == null) {
+                        failures.add(new SubstitutionReport.Failure(SubstitutionReport.Reason.INVALID_PATCH, key, null));
+                        continue;
+                    }
+
+                    overrides = count(key, overrides + compiled.size(), limits);
+                    jsonPatch = compiled;
+                    jsonPatchSource = value;
+                    continue;
+                }
+
+                // bail before compiling anything beyond the limit
+                overrides = count(key, overrides + 1, limits);
+
+                // lex the key into tokens, skipping any invalid keys
+                if (!lexer.lex(key, prefix.length(), key.length(), tokens)) {
+                    tokens.clear();
+                    failures.add(new SubstitutionReport.Failure(SubstitutionReport.Reason.INVALID_KEY, key, null));
+                    continue;
+                }
+
+                // paths beyond the maximum depth are never inserted
+                if (tokens.size() > limits.getMaxDepth()) {
+                    violations.add(new SubstitutionException.Violation(
+                        SubstitutionLimits.Limit.DEPTH, key, PathToken.join(tokens), tokens.size(), limits.getMaxDepth()));
+                    tokens.clear();
+                    continue;
+                }
+
+                ValueType declared = null;
+
+                // resolve the key against the schema, reporting unknown keys
+                if (schema != null) {
+                    declared = schema.resolve(tokens, resolved);
+
+                    if (declared == null) {
+                        failures.add(new SubstitutionReport.Failure(
+                            SubstitutionReport.Reason.UNKNOWN_PROPERTY, key, PathToken.join(tokens)));
+                        unknown.add(key);
+                        tokens.clear();
+                        resolved.clear();
+                        continue;
+                    }
+
+                    tokens.clear();
+                    tokens.addAll(resolved);
+                    resolved.clear();
+                }
+
+                final OverrideValue override = new OverrideValue(key, value, declared, parser);
+
+                // untyped values are parsed up front, falling back to the raw string on failure
+                if ((declared == null || declared == ValueType.ANY) && override.generic().isFailure()) {
+                    failures.add(new SubstitutionReport.Failure(
+                        SubstitutionReport.Reason.INVALID_VALUE, key, PathToken.join(tokens)));
+                }
+
+                // store the compiled override with a copy of the tokens
+                entries.add(new Entry(new ArrayList<>(tokens), override));
+                tokens.clear();
+            }
+
+            layers.add(new Layer(namespace, entries, mergePatch, jsonPatch, jsonPatchSource));
+        }
+
+        if (!violations.isEmpty()) {
+            throw new SubstitutionException(violations);
+        }
+
+        return new OverridePlan(layers, failures, unknown, limits);
+    }
+
+    /**
+     * Applies all overrides in this plan to a configuration.
+     *
+     * Each stage applies its JSON Patch (if any), and then all other overrides
+     * in a single depth first walk of its trie, so the result never depends on
+     * the order of the sources. A failed JSON Patch and any conflicting
+     * overrides are recorded into the collector.
+     *
+     * @param config
+     *      the configuration to apply overrides to.
+     * @param collector
+     *      the collector to record failed overrides into.
+     * @return
+     *      the number of overrides applied without conflict.
+     * @throws SubstitutionException
+     *      if applying would violate any limit.
+     */
+    int apply(ObjectNode config, SubstitutionReport.Collector collector) throws SubstitutionException {
+        return this.apply(config, collector, null);
+    }
+
+    /**
+     * Applies all overrides in this plan to a configuration, interpolating
+     * every placeholder in the same walk of the trie.
+     *
+     * @param config
+     *      the configuration to apply overrides to.
+     * @param collector
+     *      the collector to record failed overrides into.
+     * @param interpolator
+     *      the interpolator to resolve placeholders with, or null.
+     * @return
+     *      the number of overrides applied without conflict.
+     * @throws SubstitutionException
+     *      if applying would violate any limit.
+     */
+    int apply(ObjectNode config, SubstitutionReport.Collector collector, Interpolator interpolator) throws SubstitutionException {
+        int applied = 0;
+        for (int i = 0, j = this.stages.size(); i < j && !collector.halted(); i++) {
+            final Stage stage = this.stages.get(i);
+
+            applied += stage.patch(config, collector);
+            if (collector.halted()) {
+                break;
+            }
+
+            // placeholders are only resolved by the final walk, so nothing is interpolated twice
+            applied += stage.trie.apply(config, collector, i == j - 1 ? interpolator : null);
+        }
+        return applied;
+    }
+
+    /**
+     * Re-applies all overrides on top of a changed configuration, reusing a
+     * prior result where possible.
+     *
+     * Plans applied in a single stage are re-applied incrementally against
+     * the plan which produced the prior result, as per
+     * {@link OverrideTrie#reapply(OverrideTrie, JsonNode, JsonNode, JsonNode, OverrideTrie.Replay)},
+     * so a recompiled plan only re-applies the paths whose overrides changed.
+     * Plans of many stages (or following a plan of many stages) are applied
+     * to a copy of the configuration in full, as each stage depends on the
+     * result of the stage before it.
+     *
+     * @param previousPlan
+     *      the plan which produced the previous result, or null.
+     * @param previousBase
+     *      the previous configuration, before overrides, or null.
+     * @param base
+     *      the current configuration, before overrides, which is never modified.
+     * @param previous
+     *      the previous result, or null.
+     * @param replay
+     *      the failures of the previous re-apply, and of this one.
+     * @return
+     *      the configuration with all overrides applied.
+     * @throws SubstitutionException
+     *      if applying would violate any limit.
+     */
+    ObjectNode reapply(OverridePlan previousPlan, ObjectNode previousBase, ObjectNode base, ObjectNode previous,
+                       OverrideTrie.Replay replay) throws SubstitutionException {
+        if (this.stages.size() > 1 || (previousPlan != null && previousPlan.stages.size() > 1)) {
+            final ObjectNode config = base.deepCopy();
+            this.apply(config, replay.collector());
+            return config;
+        }
+
+        // the previous base is patched as it was when the previous result was applied
+        final Stage stage = this.stages.get(0);
+        final Stage previousStage = previousPlan == null ? null : previousPlan.stages.get(0);
+
+        return (ObjectNode) stage.trie.reapply(
+            previousStage == null ? null : previousStage.trie,
+            previousStage == null ? null : previousStage.patched(previousBase, null),
+            stage.patched(base, replay.collector()),
+            previous,
+            replay
+        );
+    }
+
+    /**
+     * Determines whether a path selects existing elements of a container,
+     * as with a wildcard or keyed segment.
+     *
+     * @param path
+     *      the path to check.
+     * @return
+     *      true if the path depends on the content of the configuration.
+     */
+    private static boolean selects(List<PathToken> path) {
+        for (PathToken token : path) {
+            if (token.getType() == PathToken.Type.WILDCARD || token.getType() == PathToken.Type.KEY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether this plan can only be applied to a tree.
+     *
+     * Patch documents can remove values and restructure the configuration,
+     * and wildcards (or keyed elements) must see every element of a container,
+     * so none are ever streamed or spliced.
+     *
+     * @return
+     *      true if this plan must be applied to a tree.
+     */
+    boolean requiresTree() {
+        if (this.dynamic) {
+            return true;
+        }
+        for (Layer layer : this.layers) {
+            if (layer.mergePatch != null || layer.jsonPatch != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the trie of the first stage of this plan.
+     *
+     * This holds every override of the plan, unless a JSON Patch beyond the
+     * first layer starts another stage; such plans always require a tree, so
+     * this is all that's needed to stream or splice a plan. The trie must not
+     * be modified, as it's shared between all uses.
+     *
+     * @return
+     *      the {@link OverrideTrie} of the first stage of this plan.
+     */
+    OverrideTrie trie() {
+        return this.stages.get(0).trie;
+    }
+
+    /**
+     * Computes a fingerprint of all overrides in this plan.
+     *
+     * Overrides are digested in the order they're applied, so two plans
+     * sharing a fingerprint will always produce the same configuration.
+     *
+     * @return
+     *      a digest identifying the overrides of this plan.
+     */
+    byte[] fingerprint() {
+        byte[] fingerprint = this.fingerprint;
+        if (fingerprint == null) {
+            final MessageDigest digest = SubstitutionCache.digester();
+            for (Layer layer : this.layers) {
+                for (Entry entry : layer.entries) {
+                    digest.update(entry.path.toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(entry.value.getRaw().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update((byte) (entry.value.getDeclared() == null ? -1 : entry.value.getDeclared().ordinal()));
+                }
+                digest.update((byte) 0);
+                if (layer.mergePatch != null) {
+                    digest.update(layer.mergePatch.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+                if (layer.jsonPatchSource != null) {
+                    digest.update(layer.jsonPatchSource.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+            fingerprint = this.fingerprint = digest.digest();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Retrieves the number of overrides in this plan.
+     *
+     * Every value set or removed by the trie (including each value of any
+     * merge patch) counts as an override, as does each JSON Patch operation.
+     *
+     * @return
+     *      the number of compiled overrides.
+     */
+    int size() {
+        int size = 0;
+        for (Stage stage : this.stages) {
+            size += stage.trie.size();
+            size += stage.layer.jsonPatch == null ? 0 : stage.layer.jsonPatch.size();
+        }
+        return size;
+    }
+
+    /**
+     * Counts the overrides of this plan which were kept from applying.
+     *
+     * Values conflicting with the configuration (or matching no keyed
+     * element) each count once, and a failed JSON Patch counts each of its
+     * operations, as it's applied atomically. The count never exceeds the
+     * size of the plan, even if a value failed against many elements.
+     *
+     * @param failures
+     *      the failures recorded while substituting this plan.
+     * @return
+     *      the number of overrides which weren't applied.
+     */
+    int skipped(List<SubstitutionReport.Failure> failures) {
+        int skipped = 0;
+        for (SubstitutionReport.Failure failure : failures) {
+            switch (failure.getReason()) {
+                case CONFLICT:
+                case UNMATCHED_ELEMENT:
+                    skipped++;
+                    break;
+
+                case PATCH_FAILED:
+                    for (Stage stage : this.stages) {
+                        final JsonPatch patch = stage.layer.jsonPatch;
+                        if (patch != null && failure.getVariable().equals(stage.layer.namespace + JSON_PATCH)) {
+                            skipped += patch.size();
+                        }
+                    }
+                    break;
+
+                default:
+                    // anything else is still applied, or never compiled
+            }
+        }
+        return Math.min(skipped, this.size());
+    }
+
+    /**
+     * Retrieves all overrides which failed to compile cleanly.
+     *
+     * Overrides with invalid or unknown keys are dropped from the plan,
+     * whereas those with invalid values are kept with the raw value as a
+     * string.
+     *
+     * @return
+     *      an immutable list of failures, in key order.
+     */
+    List<SubstitutionReport.Failure> failures() {
+        return this.failures;
+    }
+
+    /**
+     * Retrieves the names of all variables which name no valid property.
+     *
+     * This is only populated when keys are resolved against a schema.
+     *
+     * @return
+     *      an immutable list of variable names.
+     */
+    List<String> unknown() {
+        return this.unknown;
+    }
+
+    /**
+     * Determines whether this plan contains no overrides.
+     *
+     * @return
+     *      true if there is nothing to apply.
+     */
+    boolean isEmpty() {
+        for (Layer layer : this.layers) {
+            if (!layer.entries.isEmpty()) {
+                return false;
+            }
+        }
+        return !this.requiresTree();
+    }
+
+    /**
+     * Clears every leaf of a merge patch from a trie.
+     *
+     * Objects within the patch merge into whatever is beneath them, so only
+     * the values and removals of the patch clear anything.
+     *
+     * @param trie
+     *      the trie to clear the leaves from.
+     * @param patch
+     *      the merge patch to clear the leaves of.
+     * @param path
+     *      the path of the patch, modified while recursing.
+     */
+    private static void clear(OverrideTrie trie, JsonNode patch, List<PathToken> path) {
+        for (Iterator<String> it = patch.fieldNames(); it.hasNext(); ) {
+            final String name = it.next();
+            final JsonNode value = patch.get(name);
+
+            path.add(PathToken.field(name));
+            if (value.isObject()) {
+                clear(trie, value, path);
+            } else {
+                trie.clear(path);
+            }
+            path.remove(path.size() - 1);
+        }
+    }
+
+    /**
+     * Checks a running count of overrides against the limit.
+     *
+     * @param key
+     *      the variable which brought the count to its current value.
+     * @param overrides
+     *      the number of overrides seen so far.
+     * @param limits
+     *      the limits to check against.
+     * @return
+     *      the number of overrides seen so far.
+     * @throws SubstitutionException
+     *      if the count exceeds the limit.
+     */
+    private static int count(String key, int overrides, SubstitutionLimits limits) throws SubstitutionException {
+        if (overrides > limits.getMaxOverrides()) {
+            throw new SubstitutionException(new SubstitutionException.Violation(
+                SubstitutionLimits.Limit.OVERRIDES, key, null, overrides, limits.getMaxOverrides()));
+        }
+        return overrides;
+    }
+
+    /**
+     * Counts the values set or removed by a merge patch.
+     *
+     * @param patch
+     *      the merge patch to count.
+     * @return
+     *      the number of non-object values within the patch.
+     */
+    private static int values(JsonNode patch) {
+        int count = 0;
+        for (JsonNode value : patch) {
+            count += value.isObject() ? values(value) : 1;
+        }
+        return count;
+    }
+
+    /**
+     * Measures the depth of the paths within a merge patch.
+     *
+     * @param patch
+     *      the merge patch to measure.
+     * @return
+     *      the number of segments in the longest path of the patch.
+     */
+    private static int depth(JsonNode patch) {
+        int depth = 0;
+        for (JsonNode value : patch) {
+            depth = Math.max(depth, value.isObject() ? depth(value) : 0);
+        }
+        return depth + 1;
+    }
+
+    /**
+     * The compiled overrides of a single namespace within a plan.
+     */
+    private static final class Layer {
+
+        /**
+         * The namespace of the overrides, used to name the patch variables.
+         */
+        private final String namespace;
+
+        /**
+         * The list of compiled overrides, in key order.
+         */
+        private final List<Entry> entries;
+
+        /**
+         * The merge patch to apply beneath all overrides, if any.
+         */
+        private final ObjectNode mergePatch;
+
+        /**
+         * The JSON Patch to apply before all overrides, if any.
+         */
+        private final JsonPatch jsonPatch;
+
+        /**
+         * The raw JSON Patch document, used for fingerprinting.
+         */
+        private final String jsonPatchSource;
+
+        /**
+         * Create a new instance.
+         *
+         * @param namespace
+         *      the namespace of the overrides.
+         * @param entries
+         *      the list of compiled overrides.
+         * @param mergePatch
+         *      the merge patch to apply beneath all overrides, if any.
+         * @param jsonPatch
+         *      the JSON Patch to apply before all overrides, if any.
+         * @param jsonPatchSource
+         *      the raw JSON Patch document, if any.
+         */
+        private Layer(String namespace, List<Entry> entries, ObjectNode mergePatch,
+                      JsonPatch jsonPatch, String jsonPatchSource) {
+            this.namespace = namespace;
+            this.entries = Collections.unmodifiableList(entries);
+            this.mergePatch = mergePatch;
+            this.jsonPatch = jsonPatch;
+            this.jsonPatchSource = jsonPatchSource;
+        }
+    }
+
+    /**
+     * A stage of a plan, applying a JSON Patch and then a trie of overrides.
+     */
+    private static final class Stage {
+
+        /**
+         * The layer which starts this stage, and owns its JSON Patch.
+         */
+        private final Layer layer;
+
+        /**
+         * The trie of all overrides of this stage, including merge patches.
+         */
+        private final OverrideTrie trie;
+
+        /**
+         * Create a new instance.
+         *
+         * @param layer
+         *      the layer which starts this stage.
+         * @param trie
+         *      the trie of all overrides of this stage.
+         */
+        private Stage(Layer layer, OverrideTrie trie) {
+            this.layer = layer;
+            this.trie = trie;
+        }
+
+        /**
+         * Applies the JSON Patch of this stage to a configuration, if any.
+         *
+         * @param config
+         *      the configuration to patch in place.
+         * @param collector
+         *      the collector to record a failed JSON Patch into, or null.
+         * @return
+         *      the number of operations applied.
+         */
+        private int patch(ObjectNode config, SubstitutionReport.Collector collector) {
+            final JsonPatch patch = this.layer.jsonPatch;
+            if (patch == null) {
+                return 0;
+            }
+
+            final String failed = patch.apply(config);
+            if (failed == null) {
+                return patch.size();
+            }
+
+            if (collector != null) {
+                collector.record(new SubstitutionReport.Failure(
+                    SubstitutionReport.Reason.PATCH_FAILED, this.layer.namespace + JSON_PATCH, failed));
+            }
+            return 0;
+        }
+
+        /**
+         * Applies the JSON Patch of this stage to a copy of a configuration.
+         *
+         * @param config
+         *      the configuration to patch, which is never modified.
+         * @param collector
+         *      the collector to record a failed JSON Patch into, or null.
+         * @return
+         *      the patched copy, or the configuration itself if there's no patch.
+         */
+        private ObjectNode patched(ObjectNode config, SubstitutionReport.Collector collector) {
+            if (config == null || this.layer.jsonPatch == null) {
+                return config;
+            }
+            final ObjectNode patched = config.deepCopy();
+            this.patch(patched, collector);
+            return patched;
+        }
+    }
+
+    /**
+     * A single compiled override within a plan.
+     */
+    private static final class Entry {
+
+        /**
+         * The tokenized path to set the value at.
+         */
+        private final List<PathToken> path;
+
+        /**
+         * The value to set at the path.
+         */
+        private final OverrideValue value;
+
+        /**
+         * Create a new instance.
+         *
+         * @param path
+         *      the tokenized path to set the value at.
+         * @param value
+         *      the value to set at the path.
+         */
+        private Entry(List<PathToken> path, OverrideValue value) {
+            this.path = path;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A source of configuration overrides.
+ *
+ * Sources are read once, when overrides are first needed, and the entries of
+ * every source are merged into a single set of overrides; where two sources
+ * provide the same key, the source with the higher precedence wins. Built-in
+ * sources are available via {@link OverrideSources}.
+ */
+public interface OverrideSource {
+
+    /**
+     * Reads all overrides within a namespace from this source.
+     *
+     * Entries may be returned in any order, and any entries outside of the
+     * namespace are ignored. Where a source returns the same key more than
+     * once, the last entry wins.
+     *
+     * @param namespace
+     *      the namespace of allowed configuration overrides.
+     * @return
+     *      a list of {@link OverrideEntry} instances.
+     * @throws IOException
+     *      if the source cannot be read.
+     */
+    List<OverrideEntry> read(String namespace) throws IOException;
+}
@@ -0,0 +1,501 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+/**
+ * Built-in implementations of {@link OverrideSource}.
+ *
+ * When multiple sources are used together, the entries of all sources are
+ * merged in a single pass; each source is sorted by key, and the sorted
+ * sources are then merged with a heap so that every key is seen once, taking
+ * the value from the source with the highest precedence.
+ *
+ * When multiple namespaces are used together, every built-in source reads
+ * all namespaces in a single scan, classifying each key via a
+ * {@link NamespaceTrie}; custom sources are read once per namespace.
+ */
+public final class OverrideSources {
+
+    /**
+     * Orders entries by key.
+     */
+    private static final Comparator<OverrideEntry> BY_KEY = new Comparator<OverrideEntry>() {
+        @Override
+        public int compare(OverrideEntry left, OverrideEntry right) {
+            return left.getKey().compareTo(right.getKey());
+        }
+    };
+
+    /**
+     * Hidden constructor, as this class only has static members.
+     */
+    private OverrideSources() { }
+
+    /**
+     * Creates a source reading from the process environment.
+     *
+     * @return
+     *      a new {@link OverrideSource} instance.
+     */
+    public static OverrideSource environment() {
+        return environment(System.getenv());
+    }
+
+    /**
+     * Creates a source reading from an environment.
+     *
+     * @param environment
+     *      the environment to read overrides from.
+     * @return
+     *      a new {@link OverrideSource} instance.
+     */
+    public static OverrideSource environment(final Map<String, String> environment) {
+        Objects.requireNonNull(environment);
+        return new ScanningSource() {
+            @Override
+            List<OverrideEntry> read(NamespaceTrie namespaces) {
+                final List<OverrideEntry> entries = new ArrayList<>();
+
+                for (Map.Entry<String, String> prop : environment.entrySet()) {
+                    if (namespaces.match(prop.getKey()) >= 0) {
+                        entries.add(new OverrideEntry(prop.getKey(), prop.getValue()));
+                    }
+                }
+
+                return entries;
+            }
+        };
+    }
+
+    /**
+     * Creates a source reading from the system properties.
+     *
+     * @return
+     *      a new {@link OverrideSource} instance.
+     */
+    public static OverrideSource systemProperties() {
+        return properties(System.getProperties());
+    }
+
+    /**
+     * Creates a source reading from a set of dotted properties.
+     *
+     * Properties are keyed by the namespace (in any case) followed by each
+     * segment separated by a ".", such as "my_app.server.port". Within each
+     * segment, "_" and "-" are kept as literal characters; there's no way to
+     * address a field containing a "." in this form.
+     *
+     * @param properties
+     *      the properties to read overrides from.
+     * @return
+     *      a new {@link OverrideSource} instance.
+     */
+    public static OverrideSource properties(final Properties properties) {
+        Objects.requireNonNull(properties);
+        return new ScanningSource() {
+            @Override
+            List<OverrideEntry> read(NamespaceTrie namespaces) {
+                final List<OverrideEntry> entries = new ArrayList<>();
+
+                for (String name : properties.stringPropertyNames()) {
+                    final int match = namespaces.match(name, 0, name.length(), '.', true);
+                    if (match < 0) {
+                        continue;
+                    }
+
+                    final String namespace = namespaces.get(match);
+                    if (name.length() > namespace.length() + 1) {
+                        entries.add(new OverrideEntry(variable(namespace, name), properties.getProperty(name)));
+                    }
+                }
+
+                return entries;
+            }
+        };
+    }
+
+    /**
+     * Creates a source reading from a ".env" file.
+     *
+     * See {@link DotenvSource} for the supported syntax. A missing file is
+     * treated as empty.
+     *
+     * @param path
+     *      the path of the file to read.
+     * @return
+     *      a new {@link OverrideSource} instance.
+     */
+    public static OverrideSource dotenv(Path path) {
+        return new DotenvSource(path);
+    }
+
+    /**
+     * Creates a source reading from a directory with one file per key.
+     *
+     * This matches the layout of a Kubernetes ConfigMap or Secret mounted as
+     * a volume; each file is named after a key, and contains the value. Any
+     * single trailing newline is removed from the value, and hidden files
+     * (such as the "..data" link used by Kubernetes) are ignored. A missing
+     * directory is treated as empty.
+     *
+     * @param directory
+     *      the path of the directory to read.
+     * @return
+     *      a new {@link OverrideSource} instance.
+     */
+    public static OverrideSource directory(final Path directory) {
+        Objects.requireNonNull(directory);
+        return new ScanningSource() {
+            @Override
+            List<OverrideEntry> read(NamespaceTrie namespaces) throws IOException {
+                final List<OverrideEntry> entries = new ArrayList<>();
+
+                try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                    for (Path file : files) {
+                        final String name = file.getFileName().toString();
+                        if (namespaces.match(name) < 0 || !Files.isRegularFile(file)) {
+                            continue;
+                        }
+                        entries.add(new OverrideEntry(name, trim(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))));
+                    }
+                } catch (NoSuchFileException e) {
+                    return Collections.emptyList();
+                }
+
+                return entries;
+            }
+
+            @Override
+            Path path() {
+                return directory;
+            }
+        };
+    }
+
+    /**
+     * Reads and merges the entries of many sources in order of precedence.
+     *
+     * Each source is read once for all namespaces where possible, and its
+     * entries are split by namespace as they're classified; the entries of
+     * each namespace are then merged separately.
+     *
+     * @param sources
+     *      the sources to read, in increasing order of precedence.
+     * @param namespaces
+     *      the namespaces of allowed configuration overrides.
+     * @return
+     *      an iterator of the merged entries of each namespace, ordered by key.
+     * @throws IOException
+     *      if any source cannot be read.
+     */
+    static List<Iterator<OverrideEntry>> merge(List<OverrideSource> sources, NamespaceTrie namespaces) throws IOException {
+        final int count = namespaces.size();
+        final List<List<List<OverrideEntry>>> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new ArrayList<List<OverrideEntry>>(sources.size()));
+        }
+
+        for (OverrideSource source : sources) {
+            final List<List<OverrideEntry>> split = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                split.add(new ArrayList<OverrideEntry>());
+            }
+
+            // built-in sources scan once, custom sources are read per namespace
+            if (source instanceof ScanningSource) {
+                classify(((ScanningSource) source).read(namespaces), namespaces, -1, split);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    classify(source.read(namespaces.get(i)), namespaces, i, split);
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                // stable, so duplicate keys within a source stay in order
+                Collections.sort(split.get(i), BY_KEY);
+                entries.get(i).add(split.get(i));
+            }
+        }
+
+        final List<Iterator<OverrideEntry>> merged = new ArrayList<>(count);
+        for (List<List<OverrideEntry>> namespace : entries) {
+            merged.add(new Merge(namespace));
+        }
+        return merged;
+    }
+
+    /**
+     * Splits entries by the namespace of their keys.
+     *
+     * @param read
+     *      the entries to classify.
+     * @param namespaces
+     *      the namespaces to classify entries into.
+     * @param expected
+     *      the only namespace to keep entries of, or -1 to keep all.
+     * @param split
+     *      the entries of each namespace to append to.
+     */
+    private static void classify(List<OverrideEntry> read, NamespaceTrie namespaces, int expected, List<List<OverrideEntry>> split) {
+        for (OverrideEntry entry : read) {
+            final int match = namespaces.match(entry.getKey());
+            if (match >= 0 && (expected < 0 || match == expected)) {
+                split.get(match).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Converts a dotted property name into an environment variable.
+     *
+     * @param namespace
+     *      the namespace the property is within.
+     * @param name
+     *      the dotted property name.
+     * @return
+     *      the equivalent environment variable.
+     */
+    private static String variable(String namespace, String name) {
+        final StringBuilder builder = new StringBuilder(name.length() + 8).append(namespace);
+        for (int i = namespace.length(), j = name.length(); i < j; i++) {
+            final char c = name.charAt(i);
+            switch (c) {
+                case '.':
+                    builder.append('_');
+                    break;
+                case '_':
+                    builder.append("__");
+                    break;
+                case '-':
+                    builder.append("___");
+                    break;
+                case '=':
+                    builder.append("_____");
+                    break;
+                default:
+                    builder.append(Character.toUpperCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Removes a single trailing newline from a value.
+     *
+     * @param value
+     *      the value to trim.
+     * @return
+     *      the value without any trailing newline.
+     */
+    private static String trim(String value) {
+        if (value.endsWith("\r\n")) {
+            return value.substring(0, value.length() - 2);
+        }
+        if (value.endsWith("\n")) {
+            return value.substring(0, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * A built-in source which reads every namespace in a single scan.
+     *
+     * Reading a single namespace is only a scan with a single namespace, so
+     * these sources behave the same when used through {@link OverrideSource}.
+     */
+    abstract static class ScanningSource implements OverrideSource {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public final List<OverrideEntry> read(String namespace) throws IOException {
+            return this.read(NamespaceTrie.of(namespace));
+        }
+
+        /**
+         * Reads all overrides within any of many namespaces from this source.
+         *
+         * @param namespaces
+         *      the namespaces of allowed configuration overrides.
+         * @return
+         *      a list of {@link OverrideEntry} instances, in any order.
+         * @throws IOException
+         *      if the source cannot be read.
+         */
+        abstract List<OverrideEntry> read(NamespaceTrie namespaces) throws IOException;
+
+        /**
+         * Retrieves the file (or directory) this source reads from, if any.
+         *
+         * @return
+         *      the path read by this source, or null if it reads nothing
+         *      from the file system.
+         */
+        Path path() {
+            return null;
+        }
+    }
+
+    /**
+     * A k-way merge of sorted lists of entries.
+     *
+     * The head of each list is kept in a heap, ordered by key and then by
+     * descending precedence, so the first entry taken for any key is always
+     * the one which wins; the rest of that key is then skipped in every list.
+     */
+    private static final class Merge implements Iterator<OverrideEntry> {
+
+        /**
+         * The cursors of all non-exhausted lists.
+         */
+        private final PriorityQueue<Cursor> heap;
+
+        /**
+         * Create a new instance.
+         *
+         * @param entries
+         *      the sorted entries of each source, in increasing precedence.
+         */
+        private Merge(List<List<OverrideEntry>> entries) {
+            this.heap = new PriorityQueue<>(Math.max(1, entries.size()));
+            for (int i = 0, j = entries.size(); i < j; i++) {
+                final Cursor cursor = new Cursor(entries.get(i), i);
+                if (cursor.advance()) {
+                    this.heap.add(cursor);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext() {
+            return !this.heap.isEmpty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OverrideEntry next() {
+            final Cursor winner = this.heap.poll();
+            if (winner == null) {
+                throw new NoSuchElementException();
+            }
+
+            final OverrideEntry entry = winner.head;
+            this.requeue(winner);
+
+            // drop the same key from every lower precedence source
+            while (!this.heap.isEmpty() && this.heap.peek().head.getKey().equals(entry.getKey())) {
+                this.requeue(this.heap.poll());
+            }
+
+            return entry;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Moves a cursor along, returning it to the heap if not exhausted.
+         *
+         * @param cursor
+         *      the cursor to move along.
+         */
+        private void requeue(Cursor cursor) {
+            if (cursor.advance()) {
+                this.heap.add(cursor);
+            }
+        }
+    }
+
+    /**
+     * A position within a sorted list of entries.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        /**
+         * The sorted entries of the source.
+         */
+        private final List<OverrideEntry> entries;
+
+        /**
+         * The precedence of the source.
+         */
+        private final int precedence;
+
+        /**
+         * The index of the next entry.
+         */
+        private int position;
+
+        /**
+         * The current entry of the source.
+         */
+        private OverrideEntry head;
+
+        /**
+         * Create a new instance.
+         *
+         * @param entries
+         *      the sorted entries of the source.
+         * @param precedence
+         *      the precedence of the source.
+         */
+        private Cursor(List<OverrideEntry> entries, int precedence) {
+            this.entries = entries;
+            this.precedence = precedence;
+        }
+
+        /**
+         * Moves to the next key, taking the last entry for that key.
+         *
+         * @return
+         *      true if there was another key.
+         */
+        private boolean advance() {
+            final int size = this.entries.size();
+            if (this.position == size) {
+                return false;
+            }
+
+            this.head = this.entries.get(this.position++);
+            while (this.position < size && this.entries.get(this.position).getKey().equals(this.head.getKey())) {
+                this.head = this.entries.get(this.position++);
+            }
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(Cursor other) {
+            final int comparison = this.head.getKey().compareTo(other.head.getKey());
+            return comparison != 0 ? comparison : Integer.compare(other.precedence, this.precedence);
+        }
+    }
+}
@@ -0,0 +1,1284 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A prefix trie of override paths.
+ *
+ * Each node of the trie represents a path, optionally carrying a value to
+ * set at that path, and the children of the node represent longer paths
+ * beneath it. This allows a configuration to be matched against all of the
+ * overrides at once as it's walked, rather than one override at a time.
+ *
+ * Field children are matched loosely, as per {@link KeyIndex#fold(String)},
+ * so that a child "maxthreads" will match a field named "maxThreads". Paths
+ * which only differ once folded share a single child, which keeps the name
+ * it was first inserted with.
+ *
+ * Children are kept sorted (any wildcard, then fields by folded name, then
+ * indices in ascending order, then keyed elements), so the trie is always
+ * walked in the same order no matter the order overrides were inserted in.
+ * Keyed elements (such as "[name=primary]") are resolved to an index when
+ * walked, via the {@link KeyIndex} of the walk, and a key matching no
+ * element is recorded as a failure rather than creating an element. A
+ * wildcard child is applied to every existing element (or value) of a
+ * container in the same walk, and as it's applied before any other child,
+ * specific overrides (such as "SERVERS_0_PORT") always take precedence over
+ * a wildcard (such as "SERVERS_STAR_PORT"). Walking the trie depth first
+ * applies every parent before its children, so an override of a whole
+ * object (such as "MY_APP_DB={...}") is always applied before any override
+ * beneath it (such as "MY_APP_DB_USER"), and siblings share a single
+ * navigation of the tree rather than each walking down from the root.
+ *
+ * When walked with an {@link Interpolator}, every string written by the walk
+ * is interpolated as it's written, and every container the walk passes
+ * through has its untouched children interpolated once the overrides within
+ * it are applied, so placeholders are resolved across the whole tree in the
+ * same walk that applies the overrides.
+ *
+ * Every node shares the {@link SubstitutionLimits} of the root, and any index
+ * which would pad an array beyond the maximum gap is reported before the
+ * array is ever padded, failing the walk with a {@link SubstitutionException}.
+ * Children which conflict with the structure of the configuration never
+ * throw; each value beneath them is recorded as a failure into a
+ * {@link SubstitutionReport.Collector}, along with its path and variable.
+ */
+final class OverrideTrie {
+
+    /**
+     * The order of children; any wildcard, fields by folded name, indices,
+     * then keyed elements by folded name and value.
+     */
+    private static final Comparator<PathToken> ORDER = new Comparator<PathToken>() {
+        @Override
+        public int compare(PathToken left, PathToken right) {
+            if (left.getType() != right.getType()) {
+                return left.getType().compareTo(right.getType());
+            }
+            if (left.getType() != PathToken.Type.FIELD && left.getType() != PathToken.Type.KEY) {
+                return Integer.compare(left.getIndex(), right.getIndex());
+            }
+            final int name = KeyIndex.fold(left.getName()).compareTo(KeyIndex.fold(right.getName()));
+            return name != 0 || left.getType() != PathToken.Type.KEY
+                ? name
+                : KeyIndex.fold(left.getValue()).compareTo(KeyIndex.fold(right.getValue()));
+        }
+    };
+
+    /**
+     * The limits shared by every node of the trie.
+     */
+    private final SubstitutionLimits limits;
+
+    /**
+     * The parent of this path, or null at the root.
+     */
+    private final OverrideTrie parent;
+
+    /**
+     * The token of this path within its parent, or null at the root.
+     */
+    private final PathToken token;
+
+    /**
+     * The value to set at this path, if any.
+     */
+    private OverrideValue value;
+
+    /**
+     * Whether this path is removed, as by a null in a merge patch.
+     */
+    private boolean remove;
+
+    /**
+     * The variable which removes this path, if removed.
+     */
+    private String removal;
+
+    /**
+     * Whether this path must be an object, as by an object in a merge patch.
+     */
+    private boolean merge;
+
+    /**
+     * The number of values at or beneath this path, lazily counted.
+     */
+    private int size = -1;
+
+    /**
+     * The children of this path, in sorted order.
+     */
+    private Map<PathToken, OverrideTrie> children;
+
+    /**
+     * The field children of this path, by folded name.
+     */
+    private Map<String, OverrideTrie> fields;
+
+    /**
+     * Create a new root instance with the default limits.
+     */
+    OverrideTrie() {
+        this(SubstitutionLimits.defaults());
+    }
+
+    /**
+     * Create a new root instance.
+     *
+     * @param limits
+     *      the limits to enforce when applying the trie.
+     */
+    OverrideTrie(SubstitutionLimits limits) {
+        this(limits, null, null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param limits
+     *      the limits to enforce when applying the trie.
+     * @param parent
+     *      the parent of this path, or null at the root.
+     * @param token
+     *      the token of this path within its parent, or null at the root.
+     */
+    private OverrideTrie(SubstitutionLimits limits, OverrideTrie parent, PathToken token) {
+        this.limits = limits;
+        this.parent = parent;
+        this.token = token;
+    }
+
+    /**
+     * Inserts a value into the trie at a path.
+     *
+     * Inserting a value at a path which already has a value will replace
+     * the existing value.
+     *
+     * @param path
+     *      the path to insert the value at.
+     * @param value
+     *      the value to insert.
+     */
+    void insert(List<PathToken> path, OverrideValue value) {
+        OverrideTrie node = this;
+        for (PathToken token : path) {
+            // anything beneath a removed path starts from an empty container
+            if (node.remove) {
+                node.remove = false;
+                node.value = OverrideValue.of(node.removal, token.getType() != PathToken.Type.FIELD
+                    ? JsonNodeFactory.instance.arrayNode()
+                    : JsonNodeFactory.instance.objectNode());
+            }
+            node = node.create(token);
+        }
+        node.value = value;
+        node.remove = false;
+        this.size = -1;
+    }
+
+    /**
+     * Inserts an RFC 7396 merge patch into the trie at this path.
+     *
+     * Each null in the patch removes a field, each object merges into the
+     * existing object (replacing any non-object), and any other value is set
+     * as-is. Values inserted afterwards take precedence over the patch.
+     *
+     * @param patch
+     *      the merge patch to insert.
+     * @param variable
+     *      the variable the merge patch came from.
+     */
+    void merge(ObjectNode patch, String variable) {
+        for (Iterator<Map.Entry<String, JsonNode>> it = patch.fields(); it.hasNext(); ) {
+            final Map.Entry<String, JsonNode> field = it.next();
+            final OverrideTrie child = this.create(PathToken.field(field.getKey()));
+            final JsonNode value = field.getValue();
+
+            if (value.isNull()) {
+                child.remove = true;
+                child.removal = variable;
+            } else if (value.isObject()) {
+                child.merge = true;
+                child.merge((ObjectNode) value, variable);
+            } else {
+                child.value = OverrideValue.of(variable, value);
+            }
+        }
+        this.size = -1;
+    }
+
+    /**
+     * Clears a path, along with everything beneath it.
+     *
+     * Values beneath a path are always applied after the value at the path,
+     * so this allows a value inserted afterwards to take precedence over
+     * everything beneath it too, as when layering namespaces.
+     *
+     * @param path
+     *      the path to clear, which need not exist.
+     */
+    void clear(List<PathToken> path) {
+        OverrideTrie node = this;
+        for (PathToken token : path) {
+            node = node.child(token);
+            if (node == null) {
+                return;
+            }
+        }
+        node.value = null;
+        node.remove = false;
+        node.removal = null;
+        node.merge = false;
+        node.children = null;
+        node.fields = null;
+        this.size = -1;
+    }
+
+    /**
+     * Retrieves the child of this path at a token, creating it if missing.
+     *
+     * @param token
+     *      the token of the child to retrieve.
+     * @return
+     *      the existing or created child trie.
+     */
+    private OverrideTrie create(PathToken token) {
+        if (this.children == null) {
+            this.children = new TreeMap<>(ORDER);
+            this.fields = new HashMap<>();
+        }
+        OverrideTrie child = this.child(token);
+        if (child == null) {
+            this.children.put(token, child = new OverrideTrie(this.limits, this, token));
+            if (token.getType() == PathToken.Type.FIELD) {
+                this.fields.put(KeyIndex.fold(token.getName()), child);
+            }
+        }
+        return child;
+    }
+
+    /**
+     * Retrieves the child of this path at a token.
+     *
+     * @param token
+     *      the token of the child to retrieve.
+     * @return
+     *      the child trie, or null if there is no such child.
+     */
+    OverrideTrie child(PathToken token) {
+        if (this.children == null) {
+            return null;
+        }
+        return token.getType() == PathToken.Type.FIELD
+            ? this.fields.get(KeyIndex.fold(token.getName()))
+            : this.children.get(token);
+    }
+
+    /**
+     * Retrieves all children of this path.
+     *
+     * @return
+     *      a collection of child entries, in sorted order.
+     */
+    Collection<Map.Entry<PathToken, OverrideTrie>> children() {
+        return this.children == null
+            ? Collections.<Map.Entry<PathToken, OverrideTrie>>emptySet()
+            : this.children.entrySet();
+    }
+
+    /**
+     * Retrieves the limits enforced when applying this trie.
+     *
+     * @return
+     *      the {@link SubstitutionLimits} of the trie.
+     */
+    SubstitutionLimits limits() {
+        return this.limits;
+    }
+
+    /**
+     * Retrieves the full path of this node from the root.
+     *
+     * @return
+     *      the list of tokens leading to this path.
+     */
+    List<PathToken> path() {
+        final List<PathToken> path = new ArrayList<>();
+        for (OverrideTrie node = this; node.token != null; node = node.parent) {
+            path.add(node.token);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Retrieves the variable which set or removed this path.
+     *
+     * @return
+     *      the name of the variable, or null if this path has no value.
+     */
+    String variable() {
+        return this.value != null ? this.value.getVariable() : this.removal;
+    }
+
+    /**
+     * Records every value at or beneath this path as conflicting.
+     *
+     * This is used when this path conflicts with the structure of the
+     * configuration, such as an index into an object, so none of it applies.
+     *
+     * @param collector
+     *      the collector to record each conflicting value into.
+     * @return
+     *      the number of values recorded.
+     */
+    int conflict(SubstitutionReport.Collector collector) {
+        return this.fail(SubstitutionReport.Reason.CONFLICT, collector);
+    }
+
+    /**
+     * Records every value at or beneath this path as failed.
+     *
+     * @param reason
+     *      the reason none of this path applies.
+     * @param collector
+     *      the collector to record each failed value into.
+     * @return
+     *      the number of values recorded.
+     */
+    int fail(SubstitutionReport.Reason reason, SubstitutionReport.Collector collector) {
+        int count = 0;
+        if (this.value != null || this.remove) {
+            collector.record(new SubstitutionReport.Failure(
+                reason, this.variable(), PathToken.join(this.path())));
+            count++;
+        }
+        if (this.children != null) {
+            for (OverrideTrie child : this.children.values()) {
+                count += child.fail(reason, collector);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks the gap padded before this index within an array.
+     *
+     * @param size
+     *      the current size of the array this index is being written to.
+     * @return
+     *      a violation if the gap exceeds the limit, otherwise null.
+     */
+    SubstitutionException.Violation gap(int size) {
+        final long gap = (long) this.token.getIndex() - size;
+        if (gap <= this.limits.getMaxIndexGap()) {
+            return null;
+        }
+        return new SubstitutionException.Violation(
+            SubstitutionLimits.Limit.INDEX_GAP, null, PathToken.join(this.path()), gap, this.limits.getMaxIndexGap());
+    }
+
+    /**
+     * Retrieves the value to set at this path.
+     *
+     * @return
+     *      the value of this path, or null if it has none.
+     */
+    OverrideValue getValue() {
+        return this.value;
+    }
+
+    /**
+     * Determines whether this path has any children.
+     *
+     * @return
+     *      true if this path has children.
+     */
+    boolean hasChildren() {
+        return this.children != null;
+    }
+
+    /**
+     * Determines whether the children of this path are array indices.
+     *
+     * This is decided by the first child in order after any wildcard, so a
+     * path with any field children expects an object, and index (or keyed)
+     * children are then skipped.
+     *
+     * @return
+     *      true if this path expects an array rather than an object.
+     */
+    boolean expectsArray() {
+        if (this.children == null) {
+            return false;
+        }
+        for (PathToken token : this.children.keySet()) {
+            if (token.getType() != PathToken.Type.WILDCARD) {
+                return token.getType() != PathToken.Type.FIELD;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether this path only has children selecting existing
+     * elements, such as a wildcard or keyed elements.
+     *
+     * @return
+     *      true if no child of this path can create a value.
+     */
+    private boolean onlySelectors() {
+        if (this.children == null) {
+            return false;
+        }
+        for (PathToken token : this.children.keySet()) {
+            if (token.getType() != PathToken.Type.WILDCARD && token.getType() != PathToken.Type.KEY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether this path has any child depending on the content
+     * of the configuration, such as a wildcard or keyed elements.
+     *
+     * @return
+     *      true if any child of this path is a wildcard or key.
+     */
+    private boolean hasSelectors() {
+        if (this.children == null) {
+            return false;
+        }
+        for (PathToken token : this.children.keySet()) {
+            if (token.getType() == PathToken.Type.WILDCARD || token.getType() == PathToken.Type.KEY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies this path (and all beneath it) on top of an existing node.
+     *
+     * Any value at this path replaces the existing node entirely (coerced to
+     * the type of the existing node), before the children of this path are
+     * applied on top. Children which conflict with the structure of the node
+     * are skipped.
+     *
+     * @param existing
+     *      the existing node at this path, or null if missing.
+     * @return
+     *      the resulting node at this path.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    JsonNode applyTo(JsonNode existing) throws SubstitutionException {
+        return this.applyTo(existing, new SubstitutionReport.Collector(FailureMode.LENIENT));
+    }
+
+    /**
+     * Applies this path (and all beneath it) on top of an existing node.
+     *
+     * @param existing
+     *      the existing node at this path, or null if missing.
+     * @param collector
+     *      the collector to record any conflicting values into.
+     * @return
+     *      the resulting node at this path.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     * @see #applyTo(JsonNode)
+     */
+    JsonNode applyTo(JsonNode existing, SubstitutionReport.Collector collector) throws SubstitutionException {
+        final Pass pass = new Pass(collector, null);
+        final JsonNode result = this.applyTo(existing, pass);
+        pass.check();
+        return result;
+    }
+
+    /**
+     * Applies all children of this path on top of a root configuration.
+     *
+     * The root is modified in place, in a single depth first walk.
+     *
+     * @param root
+     *      the root configuration to apply the children to.
+     * @return
+     *      the number of values applied without conflict.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    int apply(ObjectNode root) throws SubstitutionException {
+        return this.apply(root, new SubstitutionReport.Collector(FailureMode.LENIENT));
+    }
+
+    /**
+     * Applies all children of this path on top of a root configuration.
+     *
+     * The walk stops early once the collector is halted.
+     *
+     * @param root
+     *      the root configuration to apply the children to.
+     * @param collector
+     *      the collector to record any conflicting values into.
+     * @return
+     *      the number of values applied without conflict.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    int apply(ObjectNode root, SubstitutionReport.Collector collector) throws SubstitutionException {
+        return this.apply(root, collector, null);
+    }
+
+    /**
+     * Applies all children of this path on top of a root configuration,
+     * interpolating every placeholder in the same walk.
+     *
+     * @param root
+     *      the root configuration to apply the children to.
+     * @param collector
+     *      the collector to record any conflicting values into.
+     * @param interpolator
+     *      the interpolator to resolve placeholders with, or null.
+     * @return
+     *      the number of values applied without conflict.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    int apply(ObjectNode root, SubstitutionReport.Collector collector, Interpolator interpolator) throws SubstitutionException {
+        if (this.children == null && interpolator == null) {
+            return 0;
+        }
+
+        final Pass pass = new Pass(collector, interpolator);
+        if (this.children == null) {
+            interpolator.sweep(root);
+        } else {
+            this.applyChildren(root, pass);
+        }
+        pass.check();
+        return this.size() - pass.skipped;
+    }
+
+    /**
+     * Retrieves the number of values at or beneath this path.
+     *
+     * The trie is fixed once built, so the count is only taken once.
+     *
+     * @return
+     *      the number of values in this trie.
+     */
+    int size() {
+        if (this.size < 0) {
+            this.size = this.count();
+        }
+        return this.size;
+    }
+
+    /**
+     * Counts all values at or beneath this path.
+     *
+     * @return
+     *      the number of values in this trie.
+     */
+    int count() {
+        int count = this.value != null || this.remove ? 1 : 0;
+        if (this.children != null) {
+            for (OverrideTrie child : this.children.values()) {
+                count += child.count();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Applies this path (and all beneath it) on top of an existing node.
+     *
+     * @param existing
+     *      the existing node at this path, or null if missing.
+     * @param pass
+     *      the state of the current walk.
+     * @return
+     *      the resulting node at this path.
+     */
+    private JsonNode applyTo(JsonNode existing, Pass pass) {
+        JsonNode result = this.value != null ? this.value.resolve(ValueType.of(existing)) : existing;
+
+        // merged objects replace anything which isn't already an object
+        if (this.merge && (result == null || !result.isObject())) {
+            result = JsonNodeFactory.instance.objectNode();
+        }
+
+        // nothing beneath a leaf has been interpolated yet
+        if (this.children == null) {
+            return pass.interpolator == null ? result : pass.interpolator.sweep(result);
+        }
+
+        return this.applyChildren(result, pass);
+    }
+
+    /**
+     * Applies the children of this path on top of a node.
+     *
+     * @param result
+     *      the node at this path, or null if missing.
+     * @param pass
+     *      the state of the current walk.
+     * @return
+     *      the resulting node at this path.
+     */
+    private JsonNode applyChildren(JsonNode result, Pass pass) {
+        // create any missing container to match the children
+        if (result == null || result.isNull()) {
+            // selectors alone have nothing to select from
+            if (this.onlySelectors()) {
+                for (Map.Entry<PathToken, OverrideTrie> entry : this.children.entrySet()) {
+                    if (entry.getKey().getType() == PathToken.Type.KEY) {
+                        pass.unmatched(entry.getValue());
+                    }
+                }
+                return result;
+            }
+            result = this.expectsArray()
+                ? JsonNodeFactory.instance.arrayNode()
+                : JsonNodeFactory.instance.objectNode();
+        }
+
+        final boolean array = result.isArray();
+        final boolean object = result.isObject();
+
+        // children written by the walk are interpolated as they're written
+        final Set<PathToken> written = pass.interpolator == null
+            ? null
+            : new HashSet<PathToken>();
+        boolean swept = false;
+
+        // apply each child on top of the container
+        for (Map.Entry<PathToken, OverrideTrie> entry : this.children.entrySet()) {
+            if (pass.collector.halted()) {
+                break;
+            }
+
+            final PathToken key = entry.getKey();
+            final OverrideTrie child = entry.getValue();
+
+            // wildcards fan out over every element (or value) of either container
+            if (key.getType() == PathToken.Type.WILDCARD) {
+                if (array) {
+                    final ArrayNode elements = (ArrayNode) result;
+                    for (int i = 0, j = elements.size(); i < j; i++) {
+                        final JsonNode existing = elements.get(i);
+                        pass.enter(PathToken.index(i));
+                        final JsonNode updated = child.applyTo(existing, pass);
+                        pass.leave();
+                        if (updated != null && updated != existing) {
+                            elements.set(i, updated);
+                        }
+                    }
+                    swept = true;
+                } else if (object) {
+                    for (Iterator<Map.Entry<String, JsonNode>> it = result.fields(); it.hasNext(); ) {
+                        final Map.Entry<String, JsonNode> field = it.next();
+                        pass.enter(PathToken.field(field.getKey()));
+                        final JsonNode updated = child.applyTo(field.getValue(), pass);
+                        pass.leave();
+                        if (updated != null && updated != field.getValue()) {
+                            field.setValue(updated);
+                        }
+                    }
+                    swept = true;
+                } else {
+                    pass.conflict(child);
+                }
+                continue;
+            }
+
+            final boolean index = key.getType() != PathToken.Type.FIELD;
+
+            // children conflicting with the structure are skipped entirely
+            if (index ? !array : !object) {
+                pass.conflict(child);
+                continue;
+            }
+
+            PathToken token = key;
+
+            // keyed elements resolve to the index of an existing element
+            if (key.getType() == PathToken.Type.KEY) {
+                token = PathWriter.resolve(result, key, pass.index);
+                if (token == key) {
+                    pass.unmatched(child);
+                    continue;
+                }
+            }
+
+            // check the gap before the array is ever padded
+            if (index && token.getIndex() > result.size()) {
+                final SubstitutionException.Violation violation = child.gap(result.size());
+                if (violation != null) {
+                    pass.violation(violation);
+                    pass.skipped += child.count();
+                    continue;
+                }
+            }
+
+            JsonNode existing = PathWriter.child(result, token);
+
+            // fields without an exact match may still match loosely
+            if (existing == null && !index) {
+                token = PathWriter.resolve(result, key, pass.index);
+                if (token != key) {
+                    existing = PathWriter.child(result, token);
+                }
+            }
+
+            // removing a missing field is not an error
+            if (child.remove) {
+                ((ObjectNode) result).remove(token.getName());
+                continue;
+            }
+
+            pass.enter(token);
+            final JsonNode updated = child.applyTo(existing, pass);
+            pass.leave();
+
+            // containers updated in place are already attached
+            if (updated != null && updated != existing) {
+                PathWriter.put(result, token, updated);
+            }
+
+            if (written != null) {
+                written.add(token);
+            }
+        }
+
+        // interpolate everything the overrides didn't touch
+        if (pass.interpolator != null && !swept) {
+            if (result.isContainerNode()) {
+                pass.interpolator.sweep(result, written);
+            } else {
+                result = pass.interpolator.sweep(result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces an existing scalar token with this path (and all beneath it).
+     *
+     * This is used when streaming, where only the token of the existing
+     * value is known rather than the node itself. This path must carry a
+     * value, which is coerced to the type of the token.
+     *
+     * @param token
+     *      the token of the existing value at this path.
+     * @param collector
+     *      the collector to record any conflicting values into.
+     * @return
+     *      the resulting node at this path.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    JsonNode replace(JsonToken token, SubstitutionReport.Collector collector) throws SubstitutionException {
+        final JsonNode result = this.value.resolve(ValueType.of(token));
+        if (this.children == null) {
+            return result;
+        }
+        final Pass pass = new Pass(collector, null);
+        final JsonNode applied = this.applyChildren(result, pass);
+        pass.check();
+        return applied;
+    }
+
+    /**
+     * Re-applies this path on top of a changed node, reusing a prior result.
+     *
+     * Containers at paths with overrides beneath them are rebuilt from their
+     * children, while any child without overrides is used directly. Every
+     * other path (such as a value, or a container whose structure changed)
+     * reuses the previous result as-is when neither the node nor the path of
+     * the previous trie changed beneath it, and is applied from scratch when
+     * either did. Each path is compared once, in the same walk that rebuilds
+     * the result, and each node is compared by at most one path. The nodes
+     * provided are never modified, but the result may share subtrees with them.
+     *
+     * Reused results replay the failures recorded when they were applied,
+     * so the failures of a re-apply always match applying from scratch.
+     *
+     * @param previousTrie
+     *      the path of the previous trie matching this path, or null.
+     * @param previousBase
+     *      the previous node at this path, before overrides, or null.
+     * @param base
+     *      the current node at this path, before overrides, or null.
+     * @param previous
+     *      the previous result at this path, or null.
+     * @param replay
+     *      the failures of the previous re-apply, and of this one.
+     * @return
+     *      the resulting node at this path.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    JsonNode reapply(OverrideTrie previousTrie, JsonNode previousBase, JsonNode base, JsonNode previous,
+                     Replay replay) throws SubstitutionException {
+        // paths without overrides always leave the node untouched
+        if (this.value == null && this.children == null && !this.merge) {
+            return base;
+        }
+
+        // containers matching the structure of the trie are rebuilt child by child
+        if (this.value == null && !this.hasSelectors() && base != null) {
+            if (base.isObject()) {
+                return this.reapplyObject(previousTrie, previousBase, base, previous, replay);
+            }
+            if (base.isArray() && !this.merge) {
+                return this.reapplyArray(previousTrie, previousBase, base, previous, replay);
+            }
+        }
+
+        // unchanged paths of unchanged nodes produce unchanged results
+        if (previousTrie != null && previous != null && this.same(previousTrie) && (this.value != null
+                ? ValueType.of(previousBase) == ValueType.of(base)
+                : base == null ? previousBase == null : base.equals(previousBase))) {
+            return replay.replay(previousTrie, this, previous);
+        }
+
+        final int start = replay.collector.size();
+        final JsonNode result = this.applyTo(base == null ? null : base.deepCopy(), replay.collector);
+        replay.keep(this, start);
+        return result;
+    }
+
+    /**
+     * Re-applies the children of this path on top of an object.
+     *
+     * @param previousTrie
+     *      the path of the previous trie matching this path, or null.
+     * @param previousBase
+     *      the previous node at this path, before overrides, or null.
+     * @param base
+     *      the current object at this path, before overrides.
+     * @param previous
+     *      the previous result at this path, or null.
+     * @param replay
+     *      the failures of the previous re-apply, and of this one.
+     * @return
+     *      the resulting object at this path.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    private JsonNode reapplyObject(OverrideTrie previousTrie, JsonNode previousBase, JsonNode base, JsonNode previous,
+                                   Replay replay) throws SubstitutionException {
+        final ObjectNode result = JsonNodeFactory.instance.objectNode();
+        final Set<OverrideTrie> matched = Collections.newSetFromMap(new IdentityHashMap<OverrideTrie, Boolean>());
+
+        // rebuild every field of the base, reusing where possible
+        for (Iterator<Map.Entry<String, JsonNode>> it = base.fields(); it.hasNext(); ) {
+            final Map.Entry<String, JsonNode> field = it.next();
+            final PathToken token = PathToken.field(field.getKey());
+            final OverrideTrie child = this.child(token);
+
+            if (child == null) {
+                result.set(field.getKey(), field.getValue());
+                continue;
+            }
+
+            matched.add(child);
+
+            if (child.remove) {
+                continue;
+            }
+
+            result.set(field.getKey(), child.reapply(
+                previousTrie == null ? null : previousTrie.child(token),
+                get(previousBase, token), field.getValue(), get(previous, token), replay));
+        }
+
+        // inject any fields which are missing from the base
+        for (Map.Entry<PathToken, OverrideTrie> entry : this.children()) {
+            final PathToken token = entry.getKey();
+            final OverrideTrie child = entry.getValue();
+
+            // indices can't be written into an object
+            if (token.getType() != PathToken.Type.FIELD) {
+                child.conflict(replay.collector);
+                continue;
+            }
+
+            if (!matched.contains(child) && !child.remove) {
+                PathWriter.put(result, token, child.reapply(
+                    previousTrie == null ? null : previousTrie.child(token),
+                    get(previousBase, token), null, get(previous, token), replay));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Re-applies the children of this path on top of an array.
+     *
+     * @param previousTrie
+     *      the path of the previous trie matching this path, or null.
+     * @param previousBase
+     *      the previous node at this path, before overrides, or null.
+     * @param base
+     *      the current array at this path, before overrides.
+     * @param previous
+     *      the previous result at this path, or null.
+     * @param replay
+     *      the failures of the previous re-apply, and of this one.
+     * @return
+     *      the resulting array at this path.
+     * @throws SubstitutionException
+     *      if applying would violate the limits of the trie.
+     */
+    private JsonNode reapplyArray(OverrideTrie previousTrie, JsonNode previousBase, JsonNode base, JsonNode previous,
+                                  Replay replay) throws SubstitutionException {
+        final ArrayNode result = JsonNodeFactory.instance.arrayNode();
+
+        // rebuild every element of the base, reusing where possible
+        for (int i = 0, j = base.size(); i < j; i++) {
+            final PathToken token = PathToken.index(i);
+            final OverrideTrie child = this.child(token);
+
+            result.add(child == null
+                ? base.get(i)
+                : child.reapply(
+                    previousTrie == null ? null : previousTrie.child(token),
+                    get(previousBase, token), base.get(i), get(previous, token), replay));
+        }
+
+        // inject any indices which are missing from the base
+        for (Map.Entry<PathToken, OverrideTrie> entry : this.children()) {
+            final PathToken token = entry.getKey();
+            final OverrideTrie child = entry.getValue();
+
+            // fields can't be written into an array
+            if (token.getType() != PathToken.Type.INDEX) {
+                child.conflict(replay.collector);
+                continue;
+            }
+
+            if (token.getIndex() >= base.size()) {
+                final SubstitutionException.Violation violation = child.gap(result.size());
+                if (violation != null) {
+                    throw new SubstitutionException(violation);
+                }
+                PathWriter.put(result, token, child.reapply(
+                    previousTrie == null ? null : previousTrie.child(token),
+                    get(previousBase, token), null, get(previous, token), replay));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines whether this path (and all beneath it) matches another.
+     *
+     * Paths match when they set (or remove) the same values by the same
+     * variables, so applying either to the same node gives the same result.
+     *
+     * @param other
+     *      the path to compare against.
+     * @return
+     *      true if both paths apply the same overrides.
+     */
+    private boolean same(OverrideTrie other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (this.remove != other.remove || this.merge != other.merge
+                || !Objects.equals(this.removal, other.removal) || !same(this.value, other.value)) {
+            return false;
+        }
+
+        final Collection<Map.Entry<PathToken, OverrideTrie>> children = this.children();
+        final Collection<Map.Entry<PathToken, OverrideTrie>> others = other.children();
+
+        if (children.size() != others.size()) {
+            return false;
+        }
+
+        // children are sorted the same way, so they can be compared in order
+        final Iterator<Map.Entry<PathToken, OverrideTrie>> it = others.iterator();
+        for (Map.Entry<PathToken, OverrideTrie> entry : children) {
+            final Map.Entry<PathToken, OverrideTrie> next = it.next();
+            if (!entry.getKey().equals(next.getKey()) || !entry.getValue().same(next.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether two values are the same override.
+     *
+     * @param left
+     *      the first value, or null.
+     * @param right
+     *      the second value, or null.
+     * @return
+     *      true if both are missing, or set the same raw value by the same variable.
+     */
+    private static boolean same(OverrideValue left, OverrideValue right) {
+        if (left == right) {
+            return true;
+        }
+        return left != null && right != null
+            && Objects.equals(left.getVariable(), right.getVariable())
+            && left.getRaw().equals(right.getRaw())
+            && left.getDeclared() == right.getDeclared();
+    }
+
+    /**
+     * Retrieves the child of a node at a token, if both exist.
+     *
+     * @param node
+     *      the node to retrieve the child of, or null.
+     * @param token
+     *      the field or index token of the child.
+     * @return
+     *      the child node, or null if missing.
+     */
+    private static JsonNode get(JsonNode node, PathToken token) {
+        return node == null ? null : PathWriter.child(node, token);
+    }
+
+    /**
+     * The failures recorded while re-applying a trie, by the path which
+     * recorded them.
+     *
+     * Only paths applied (or reused) as a whole keep their failures, as
+     * those are the only paths which can be reused by a later re-apply;
+     * containers rebuilt child by child are never reused themselves. The
+     * failures of one re-apply are kept with its result, and handed to the
+     * next re-apply to replay for every path it reuses.
+     */
+    static final class Replay {
+
+        /**
+         * The collector to record failures into.
+         */
+        private final SubstitutionReport.Collector collector;
+
+        /**
+         * The failures kept by the previous re-apply, by path.
+         */
+        private final Map<OverrideTrie, List<SubstitutionReport.Failure>> previous;
+
+        /**
+         * The failures kept by this re-apply, by path.
+         */
+        private final Map<OverrideTrie, List<SubstitutionReport.Failure>> kept;
+
+        /**
+         * Create a new instance.
+         *
+         * @param collector
+         *      the collector to record failures into.
+         * @param previous
+         *      the failures kept by the previous re-apply, or null.
+         */
+        Replay(SubstitutionReport.Collector collector, Map<OverrideTrie, List<SubstitutionReport.Failure>> previous) {
+            this.collector = collector;
+            this.previous = previous == null
+                ? Collections.<OverrideTrie, List<SubstitutionReport.Failure>>emptyMap()
+                : previous;
+            this.kept = new IdentityHashMap<>();
+        }
+
+        /**
+         * Retrieves the collector failures are recorded into.
+         *
+         * @return
+         *      the {@link SubstitutionReport.Collector} of this re-apply.
+         */
+        SubstitutionReport.Collector collector() {
+            return this.collector;
+        }
+
+        /**
+         * Retrieves the failures kept by this re-apply, to be replayed by the next.
+         *
+         * @return
+         *      the failures kept, by the path which recorded them.
+         */
+        Map<OverrideTrie, List<SubstitutionReport.Failure>> kept() {
+            return this.kept;
+        }
+
+        /**
+         * Replays the failures of a reused path, keeping them for this path.
+         *
+         * @param previousTrie
+         *      the path of the previous trie being reused.
+         * @param trie
+         *      the matching path of the current trie.
+         * @param result
+         *      the previous result being reused.
+         * @return
+         *      the previous result.
+         */
+        private JsonNode replay(OverrideTrie previousTrie, OverrideTrie trie, JsonNode result) {
+            final List<SubstitutionReport.Failure> failures = this.previous.get(previousTrie);
+            if (failures != null) {
+                this.collector.recordAll(failures);
+                this.kept.put(trie, failures);
+            }
+            return result;
+        }
+
+        /**
+         * Keeps the failures recorded for a path applied from scratch.
+         *
+         * @param trie
+         *      the path which was applied.
+         * @param start
+         *      the size of the collector before the path was applied.
+         */
+        private void keep(OverrideTrie trie, int start) {
+            final List<SubstitutionReport.Failure> failures = this.collector.since(start);
+            if (!failures.isEmpty()) {
+                this.kept.put(trie, failures);
+            }
+        }
+    }
+
+    /**
+     * The state of a single walk of the trie.
+     */
+    private static final class Pass {
+
+        /**
+         * The index used to resolve field names within the tree.
+         */
+        private final KeyIndex index = new KeyIndex();
+
+        /**
+         * The collector to record conflicting values into.
+         */
+        private final SubstitutionReport.Collector collector;
+
+        /**
+         * The interpolator to resolve placeholders with, if enabled.
+         */
+        private final Interpolator interpolator;
+
+        /**
+         * The number of values skipped due to conflicts.
+         */
+        private int skipped;
+
+        /**
+         * The limits violated during the walk, lazily initialized.
+         */
+        private List<SubstitutionException.Violation> violations;
+
+        /**
+         * Create a new instance.
+         *
+         * @param collector
+         *      the collector to record conflicting values into.
+         * @param interpolator
+         *      the interpolator to resolve placeholders with, or null.
+         */
+        private Pass(SubstitutionReport.Collector collector, Interpolator interpolator) {
+            this.collector = collector;
+            this.interpolator = interpolator;
+        }
+
+        /**
+         * Enters a child of the current node, if interpolating.
+         *
+         * @param token
+         *      the token of the child within the current node.
+         */
+        private void enter(PathToken token) {
+            if (this.interpolator != null) {
+                this.interpolator.enter(token);
+            }
+        }
+
+        /**
+         * Leaves the child most recently entered, if interpolating.
+         */
+        private void leave() {
+            if (this.interpolator != null) {
+                this.interpolator.leave();
+            }
+        }
+
+        /**
+         * Records every value at or beneath a conflicting path, skipping them.
+         *
+         * @param node
+         *      the path which conflicts with the configuration.
+         */
+        private void conflict(OverrideTrie node) {
+            this.skipped += node.conflict(this.collector);
+        }
+
+        /**
+         * Records every value at or beneath an unmatched keyed element,
+         * skipping them.
+         *
+         * @param node
+         *      the keyed element which matched no existing element.
+         */
+        private void unmatched(OverrideTrie node) {
+            this.skipped += node.fail(SubstitutionReport.Reason.UNMATCHED_ELEMENT, this.collector);
+        }
+
+        /**
+         * Records a violation, skipping the offending path.
+         *
+         * @param violation
+         *      the violation to record.
+         */
+        private void violation(SubstitutionException.Violation violation) {
+            if (this.violations == null) {
+                this.violations = new ArrayList<>();
+            }
+            this.violations.add(violation);
+        }
+
+        /**
+         * Fails the walk if any limits were violated.
+         *
+         * @throws SubstitutionException
+         *      if any violations were recorded.
+         */
+        private void check() throws SubstitutionException {
+            if (this.violations != null) {
+                throw new SubstitutionException(this.violations);
+            }
+            if (this.interpolator != null) {
+                this.interpolator.check();
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The value of a single override, coerced to its target on demand.
+ *
+ * Values are kept raw until the type of their target is known, at which
+ * point they're coerced directly into a node of that type; a string field
+ * set to "0123" or "true" stays a string. The declared type of a property
+ * (if known) takes priority over the type of the existing value. Only when
+ * the target type is unknown, or the value doesn't fit it, is the value
+ * parsed generically, and that result is memoized. Resolved scalar nodes
+ * are immutable, so they're memoized per target type and shared between
+ * every application of the value.
+ *
+ * Values taken from a patch document are already typed, and are used as-is
+ * via {@link #of(String, JsonNode)} rather than coerced.
+ */
+final class OverrideValue {
+
+    /**
+     * The variable the override came from.
+     */
+    private final String variable;
+
+    /**
+     * The raw value of the override.
+     */
+    private final String raw;
+
+    /**
+     * The declared type of the target property, if known.
+     */
+    private final ValueType declared;
+
+    /**
+     * The parser used to parse and coerce the raw value.
+     */
+    private final ValueParser parser;
+
+    /**
+     * The generic parse of the raw value, lazily initialized.
+     */
+    private volatile ValueParser.Result generic;
+
+    /**
+     * The resolved scalar nodes of this value, indexed by target type.
+     */
+    private final JsonNode[] resolved = new JsonNode[ValueType.values().length];
+
+    /**
+     * Create a new instance.
+     *
+     * @param variable
+     *      the variable the override came from.
+     * @param raw
+     *      the raw value of the override.
+     * @param declared
+     *      the declared type of the target property, or null if unknown.
+     * @param parser
+     *      the parser used to parse and coerce the raw value.
+     */
+    OverrideValue(String variable, String raw, ValueType declared, ValueParser parser) {
+        this.variable = variable;
+        this.raw = raw;
+        this.declared = declared;
+        this.parser = parser;
+    }
+
+    /**
+     * Creates a value which is already typed, such as from a patch.
+     *
+     * @param variable
+     *      the variable the value came from.
+     * @param node
+     *      the node to use as the value.
+     * @return
+     *      a new {@link OverrideValue} which always resolves to the node.
+     */
+    static OverrideValue of(String variable, JsonNode node) {
+        final OverrideValue value = new OverrideValue(variable, node.toString(), ValueType.ANY, null);
+        value.generic = ValueParser.Result.success(node);
+        return value;
+    }
+
+    /**
+     * Resolves this value against the type of its target.
+     *
+     * @param target
+     *      the type of the existing value at the target.
+     * @return
+     *      a new node which may be freely inserted into a tree.
+     */
+    JsonNode resolve(ValueType target) {
+        final ValueType type = this.declared == null || this.declared == ValueType.ANY
+            ? target
+            : this.declared;
+
+        // scalar nodes are immutable, so a racing write is harmless
+        final JsonNode cached = this.resolved[type.ordinal()];
+        if (cached != null) {
+            return cached;
+        }
+
+        JsonNode node = null;
+
+        // typed values have no parser, so are never coerced
+        if (type != ValueType.ANY && this.parser != null) {
+            node = this.parser.coerce(this.raw, type);
+        }
+
+        if (node == null) {
+            node = this.generic().getNode();
+            // containers are mutable, so each target needs its own copy
+            if (node.isContainerNode()) {
+                return node.deepCopy();
+            }
+        }
+
+        return this.resolved[type.ordinal()] = node;
+    }
+
+    /**
+     * Retrieves the generic parse of the raw value.
+     *
+     * @return
+     *      the memoized {@link ValueParser.Result} of the raw value.
+     */
+    ValueParser.Result generic() {
+        ValueParser.Result generic = this.generic;
+        if (generic == null) {
+            generic = this.generic = this.parser.parse(this.raw);
+        }
+        return generic;
+    }
+
+    /**
+     * Retrieves the variable the override came from.
+     *
+     * @return
+     *      the name of the variable.
+     */
+    String getVariable() {
+        return this.variable;
+    }
+
+    /**
+     * Retrieves the raw value of the override.
+     *
+     * @return
+     *      the raw value.
+     */
+    String getRaw() {
+        return this.raw;
+    }
+
+    /**
+     * Retrieves the declared type of the target property.
+     *
+     * @return
+     *      the declared {@link ValueType}, or null if unknown.
+     */
+    ValueType getDeclared() {
+        return this.declared;
+    }
+}
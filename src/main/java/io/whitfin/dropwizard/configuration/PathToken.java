@@ -0,0 +1,270 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.util.List;
+
+/**
+ * A single typed segment of an override path.
+ *
+ * Tokens are either a field name within an object, an index within an
+ * array, a key selecting the element of an array by the value of one of its
+ * fields (such as "name=primary"), or a wildcard matching every element of an
+ * array (or every value of an object). Tokens are immutable and are shared
+ * where possible; field tokens are memoized by the {@link KeyLexer}, small
+ * indices are cached statically, and there is only ever a single wildcard
+ * token.
+ */
+final class PathToken {
+
+    /**
+     * The number of index tokens to cache statically.
+     */
+    private static final int INDEX_CACHE_SIZE = 256;
+
+    /**
+     * The static cache of commonly used index tokens.
+     */
+    private static final PathToken[] INDEX_CACHE = new PathToken[INDEX_CACHE_SIZE];
+
+    static {
+        for (int i = 0; i < INDEX_CACHE_SIZE; i++) {
+            INDEX_CACHE[i] = new PathToken(Type.INDEX, null, i);
+        }
+    }
+
+    /**
+     * The only wildcard token.
+     */
+    private static final PathToken WILDCARD = new PathToken(Type.WILDCARD, null, -1);
+
+    /**
+     * The type of this token.
+     */
+    private final Type type;
+
+    /**
+     * The field name of this token, if a field.
+     */
+    private final String name;
+
+    /**
+     * The array index of this token, if an index.
+     */
+    private final int index;
+
+    /**
+     * The field value selecting an element, if a key.
+     */
+    private final String value;
+
+    /**
+     * Create a new instance.
+     *
+     * @param type
+     *      the type of this token.
+     * @param name
+     *      the field name of this token, if a field or key.
+     * @param index
+     *      the array index of this token, if an index.
+     */
+    private PathToken(Type type, String name, int index) {
+        this(type, name, index, null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param type
+     *      the type of this token.
+     * @param name
+     *      the field name of this token, if a field or key.
+     * @param index
+     *      the array index of this token, if an index.
+     * @param value
+     *      the field value selecting an element, if a key.
+     */
+    private PathToken(Type type, String name, int index, String value) {
+        this.type = type;
+        this.name = name;
+        this.index = index;
+        this.value = value;
+    }
+
+    /**
+     * Creates a token representing a field name.
+     *
+     * @param name
+     *      the name of the field.
+     * @return
+     *      a new field {@link PathToken}.
+     */
+    static PathToken field(String name) {
+        return new PathToken(Type.FIELD, name, -1);
+    }
+
+    /**
+     * Retrieves a token representing an array index.
+     *
+     * @param index
+     *      the non-negative index within the array.
+     * @return
+     *      an index {@link PathToken}, possibly cached.
+     */
+    static PathToken index(int index) {
+        return index < INDEX_CACHE_SIZE
+            ? INDEX_CACHE[index]
+            : new PathToken(Type.INDEX, null, index);
+    }
+
+    /**
+     * Creates a token selecting an array element by the value of a field.
+     *
+     * @param name
+     *      the name of the identifying field of each element.
+     * @param value
+     *      the value of the field in the element to select.
+     * @return
+     *      a new key {@link PathToken}.
+     */
+    static PathToken key(String name, String value) {
+        return new PathToken(Type.KEY, name, -1, value);
+    }
+
+    /**
+     * Retrieves the token matching every element or value of a container.
+     *
+     * @return
+     *      the wildcard {@link PathToken}.
+     */
+    static PathToken wildcard() {
+        return WILDCARD;
+    }
+
+    /**
+     * Renders a path of tokens for display, such as "servers[0].port".
+     *
+     * Wildcards are rendered as a "*" segment, such as "servers.*.port".
+     *
+     * @param path
+     *      the tokens of the path to render.
+     * @return
+     *      the rendered path.
+     */
+    static String join(List<PathToken> path) {
+        final StringBuilder builder = new StringBuilder();
+        for (PathToken token : path) {
+            if ((token.type == Type.FIELD || token.type == Type.WILDCARD) && builder.length() > 0) {
+                builder.append('.');
+            }
+            builder.append(token);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Retrieves the type of this token.
+     *
+     * @return
+     *      the token {@link Type}.
+     */
+    Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Retrieves the field name of this token.
+     *
+     * @return
+     *      the field name, or null if this is not a field or key.
+     */
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * Retrieves the field value selecting an element, if a key.
+     *
+     * @return
+     *      the field value, or null if this is not a key.
+     */
+    String getValue() {
+        return this.value;
+    }
+
+    /**
+     * Retrieves the array index of this token.
+     *
+     * @return
+     *      the array index, or -1 if this is not an index.
+     */
+    int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PathToken)) {
+            return false;
+        }
+        final PathToken token = (PathToken) o;
+        return this.type == token.type
+            && this.index == token.index
+            && (this.name == null ? token.name == null : this.name.equals(token.name))
+            && (this.value == null ? token.value == null : this.value.equals(token.value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        if (this.value != null) {
+            return 31 * this.name.hashCode() + this.value.hashCode();
+        }
+        return this.name == null ? this.index : this.name.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        if (this.type == Type.WILDCARD) {
+            return "*";
+        }
+        if (this.type == Type.KEY) {
+            return "[" + this.name + "=" + this.value + "]";
+        }
+        return this.name == null ? "[" + this.index + "]" : this.name;
+    }
+
+    /**
+     * The types of path token.
+     */
+    enum Type {
+        /**
+         * Every element of an array, or every value of an object.
+         */
+        WILDCARD,
+
+        /**
+         * A named field within an object.
+         */
+        FIELD,
+
+        /**
+         * A numeric index within an array.
+         */
+        INDEX,
+
+        /**
+         * An element within an array, selected by the value of a field.
+         */
+        KEY
+    }
+}
@@ -0,0 +1,118 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Helpers to read and write the children of a tree, one token at a time.
+ *
+ * Tokens are used directly against {@link ObjectNode} and {@link ArrayNode}
+ * children, so there is no need to join paths into (and parse them back out
+ * of) a notation string. As field names never pass through a notation, they
+ * may contain any character, including dots.
+ *
+ * Field names are resolved against existing fields via a {@link KeyIndex},
+ * so an override of "maxthreads" will update an existing "maxThreads", and
+ * keyed elements (such as "name=primary") are resolved to their index in the
+ * same way.
+ */
+final class PathWriter {
+
+    /**
+     * Private constructor as this is a utility class.
+     */
+    private PathWriter() { }
+
+    /**
+     * Resolves a field token against the existing fields of a container.
+     *
+     * Key tokens are resolved against the existing elements of an array, to
+     * the index of the matching element.
+     *
+     * @param container
+     *      the container the token will be used within.
+     * @param token
+     *      the token to resolve.
+     * @param index
+     *      the index used to resolve field names.
+     * @return
+     *      a token naming the matching existing field (or element), or the
+     *      token itself.
+     */
+    static PathToken resolve(JsonNode container, PathToken token, KeyIndex index) {
+        if (token.getType() == PathToken.Type.KEY && container.isArray()) {
+            final int position = index.element((ArrayNode) container, token.getName(), token.getValue());
+            return position < 0 ? token : PathToken.index(position);
+        }
+
+        if (token.getType() != PathToken.Type.FIELD || !container.isObject()) {
+            return token;
+        }
+
+        final String name = token.getName();
+        final String resolved = index.resolve((ObjectNode) container, name);
+
+        return resolved.equals(name) ? token : PathToken.field(resolved);
+    }
+
+    /**
+     * Retrieves the child of a container at a token.
+     *
+     * @param container
+     *      the container to retrieve the child from.
+     * @param token
+     *      the token of the child to retrieve.
+     * @return
+     *      the child node, or null if it doesn't exist.
+     */
+    static JsonNode child(JsonNode container, PathToken token) {
+        return token.getType() == PathToken.Type.INDEX
+            ? container.get(token.getIndex())
+            : container.get(token.getName());
+    }
+
+    /**
+     * Puts a value into a container at a token.
+     *
+     * @param container
+     *      the container to put the value into.
+     * @param token
+     *      the token to put the value at.
+     * @param value
+     *      the value to put into the container.
+     * @return
+     *      true if the value was put, false if the container is not of the
+     *      type required by the token.
+     */
+    static boolean put(JsonNode container, PathToken token, JsonNode value) {
+        if (token.getType() == PathToken.Type.FIELD) {
+            if (!container.isObject()) {
+                return false;
+            }
+            ((ObjectNode) container).set(token.getName(), value);
+            return true;
+        }
+
+        if (!container.isArray()) {
+            return false;
+        }
+
+        final ArrayNode array = (ArrayNode) container;
+        final int index = token.getIndex();
+
+        // replace existing elements in place
+        if (index < array.size()) {
+            array.set(index, value);
+            return true;
+        }
+
+        // pad the array up to the index
+        while (array.size() < index) {
+            array.addNull();
+        }
+
+        array.add(value);
+        return true;
+    }
+}
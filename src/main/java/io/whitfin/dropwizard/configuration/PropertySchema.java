@@ -0,0 +1,354 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A trie of every valid property path within a configuration class.
+ *
+ * Schemas are built once by introspecting a class via Jackson, in the same
+ * way it would be deserialized, including all registered subtypes of any
+ * polymorphic (via {@link JsonTypeInfo}) types. Recursive types are shared
+ * rather than expanded, so a schema is a graph with one node per type.
+ *
+ * Lexed override keys are resolved against a schema in a single greedy walk:
+ * at each bean, the longest run of segments naming a property is consumed,
+ * so "SERVER_APPLICATION_CONNECTORS" resolves to "server.applicationConnectors"
+ * rather than guessing at structure. Keys which name no valid property are
+ * rejected, rather than creating nodes which would never be bound, and keys
+ * which do are resolved alongside the declared {@link ValueType} of the
+ * property.
+ */
+final class PropertySchema {
+
+    /**
+     * The kind of value at this path.
+     */
+    private Kind kind;
+
+    /**
+     * The type of value expected at this path.
+     */
+    private final ValueType type;
+
+    /**
+     * The names of all properties of a bean, by folded name.
+     */
+    private final Map<String, String> names;
+
+    /**
+     * All folded prefixes of the property names of a bean.
+     */
+    private final Set<String> prefixes;
+
+    /**
+     * The schema of each property of a bean, by property name.
+     */
+    private final Map<String, PropertySchema> properties;
+
+    /**
+     * The schema of the elements of an array or map.
+     */
+    private PropertySchema element;
+
+    /**
+     * Whether a bean accepts any unknown properties.
+     */
+    private boolean open;
+
+    /**
+     * Create a new instance.
+     *
+     * @param kind
+     *      the kind of value at this path.
+     * @param type
+     *      the type of value expected at this path.
+     */
+    private PropertySchema(Kind kind, ValueType type) {
+        this.kind = kind;
+        this.type = type;
+        this.names = new HashMap<>();
+        this.prefixes = new HashSet<>();
+        this.properties = new LinkedHashMap<>();
+    }
+
+    /**
+     * Builds the schema of a class, as deserialized by a mapper.
+     *
+     * @param mapper
+     *      the {@link ObjectMapper} the class is deserialized with.
+     * @param type
+     *      the class to build a schema for.
+     * @return
+     *      a new {@link PropertySchema} for the class.
+     */
+    static PropertySchema of(ObjectMapper mapper, Class<?> type) {
+        final DeserializationConfig config = mapper.getDeserializationConfig();
+        return build(config, config.constructType(type), new HashMap<JavaType, PropertySchema>());
+    }
+
+    /**
+     * Resolves a lexed path against this schema.
+     *
+     * Field names in the resolved path use the exact property names of the
+     * schema, and index tokens beneath maps become field names. Wildcards are
+     * only valid in place of an array index or a map key, as the properties
+     * of a bean may have different types. Beneath any free-form value (such
+     * as a {@link JsonNode}) the path is kept as-is.
+     *
+     * @param path
+     *      the lexed path to resolve.
+     * @param resolved
+     *      the list to append the resolved path to.
+     * @return
+     *      the declared type of the property, or null if unknown.
+     */
+    ValueType resolve(List<PathToken> path, List<PathToken> resolved) {
+        final StringBuilder folded = new StringBuilder();
+        final int length = path.size();
+
+        PropertySchema node = this;
+
+        for (int i = 0; i < length; ) {
+            final PathToken token = path.get(i);
+
+            switch (node.kind) {
+                case ANY:
+                    resolved.addAll(path.subList(i, length));
+                    return ValueType.ANY;
+
+                case ARRAY:
+                    if (token.getType() == PathToken.Type.FIELD) {
+                        return null;
+                    }
+                    resolved.add(token);
+                    node = node.element;
+                    i++;
+                    continue;
+
+                case MAP:
+                    // maps have no elements to select by key
+                    if (token.getType() == PathToken.Type.KEY) {
+                        return null;
+                    }
+                    resolved.add(token.getType() != PathToken.Type.INDEX
+                        ? token
+                        : PathToken.field(String.valueOf(token.getIndex())));
+                    node = node.element;
+                    i++;
+                    continue;
+
+                case BEAN:
+                    String name = null;
+                    int end = i;
+
+                    // consume the longest run of segments naming a property
+                    folded.setLength(0);
+                    for (int j = i; j < length; j++) {
+                        final PathToken segment = path.get(j);
+                        if (segment.getType() == PathToken.Type.WILDCARD || segment.getType() == PathToken.Type.KEY) {
+                            break;
+                        }
+                        folded.append(segment.getType() == PathToken.Type.FIELD
+                            ? KeyIndex.fold(segment.getName())
+                            : String.valueOf(segment.getIndex()));
+
+                        final String key = folded.toString();
+                        final String match = node.names.get(key);
+
+                        if (match != null) {
+                            name = match;
+                            end = j + 1;
+                        }
+
+                        if (!node.prefixes.contains(key)) {
+                            break;
+                        }
+                    }
+
+                    if (name == null) {
+                        // beans accepting anything take the rest as-is
+                        if (node.open) {
+                            resolved.addAll(path.subList(i, length));
+                            return ValueType.ANY;
+                        }
+                        return null;
+                    }
+
+                    resolved.add(PathToken.field(name));
+                    node = node.properties.get(name);
+                    i = end;
+                    continue;
+
+                default:
+                    // nothing can live beneath a scalar
+                    return null;
+            }
+        }
+
+        return node.type;
+    }
+
+    /**
+     * Builds the schema of a type, re-using the schema of any type seen.
+     *
+     * @param config
+     *      the configuration used to introspect types.
+     * @param type
+     *      the type to build a schema for.
+     * @param seen
+     *      the schemas of all types seen so far.
+     * @return
+     *      the {@link PropertySchema} of the type.
+     */
+    private static PropertySchema build(DeserializationConfig config, JavaType type, Map<JavaType, PropertySchema> seen) {
+        final PropertySchema existing = seen.get(type);
+        if (existing != null) {
+            return existing;
+        }
+
+        // optional values are treated as the value they wrap
+        if (type.isReferenceType()) {
+            return build(config, type.getReferencedType(), seen);
+        }
+
+        final Class<?> raw = type.getRawClass();
+
+        if (type.isContainerType()) {
+            final PropertySchema schema = new PropertySchema(type.isMapLikeType() ? Kind.MAP : Kind.ARRAY, ValueType.ANY);
+            seen.put(type, schema);
+            schema.element = build(config, type.getContentType(), seen);
+            return schema;
+        }
+
+        if (raw == Object.class || JsonNode.class.isAssignableFrom(raw)) {
+            return new PropertySchema(Kind.ANY, ValueType.ANY);
+        }
+
+        if (type.isPrimitive() || type.isEnumType() || raw.getName().startsWith("java.")) {
+            return new PropertySchema(Kind.SCALAR, ValueType.of(type));
+        }
+
+        final PropertySchema schema = new PropertySchema(Kind.BEAN, ValueType.ANY);
+        seen.put(type, schema);
+
+        // polymorphic types accept the properties of every subtype
+        final List<JavaType> types = new ArrayList<>();
+        types.add(type);
+
+        final AnnotatedClass annotated = config.introspectClassAnnotations(type).getClassInfo();
+        final JsonTypeInfo info = annotated.getAnnotation(JsonTypeInfo.class);
+
+        if (info != null) {
+            final Collection<NamedType> subtypes = config.getSubtypeResolver()
+                .collectAndResolveSubtypesByClass(config, annotated);
+
+            for (NamedType subtype : subtypes) {
+                if (subtype.getType() != raw) {
+                    types.add(config.constructType(subtype.getType()));
+                }
+            }
+
+            if (info.include() == JsonTypeInfo.As.PROPERTY || info.include() == JsonTypeInfo.As.EXISTING_PROPERTY) {
+                final String property = info.property().isEmpty()
+                    ? info.use().getDefaultPropertyName()
+                    : info.property();
+
+                if (property != null) {
+                    schema.add(property, new PropertySchema(Kind.SCALAR, ValueType.TEXT));
+                }
+            }
+        }
+
+        for (JavaType candidate : types) {
+            final BeanDescription description = config.introspect(candidate);
+
+            if (description.findAnySetterAccessor() != null) {
+                schema.open = true;
+            }
+
+            for (BeanPropertyDefinition property : description.findProperties()) {
+                // only properties which can be deserialized are valid
+                if (!property.hasSetter() && !property.hasField() && !property.hasConstructorParameter()) {
+                    continue;
+                }
+                if (schema.properties.containsKey(property.getName())) {
+                    continue;
+                }
+                schema.add(property.getName(), build(config, property.getPrimaryType(), seen));
+            }
+        }
+
+        // beans without properties are created from scalars (e.g. durations)
+        if (schema.properties.isEmpty() && !schema.open) {
+            schema.kind = Kind.SCALAR;
+        }
+
+        return schema;
+    }
+
+    /**
+     * Adds a property to this bean schema.
+     *
+     * @param name
+     *      the name of the property.
+     * @param schema
+     *      the schema of the property.
+     */
+    private void add(String name, PropertySchema schema) {
+        final String folded = KeyIndex.fold(name);
+
+        this.properties.put(name, schema);
+        this.names.put(folded, name);
+
+        for (int i = 1; i < folded.length(); i++) {
+            this.prefixes.add(folded.substring(0, i));
+        }
+    }
+
+    /**
+     * The kinds of value found at a path.
+     */
+    private enum Kind {
+        /**
+         * A bean with a known set of properties.
+         */
+        BEAN,
+
+        /**
+         * A collection or array, indexed by position.
+         */
+        ARRAY,
+
+        /**
+         * A map, keyed by any name.
+         */
+        MAP,
+
+        /**
+         * A free-form value, which may contain anything.
+         */
+        ANY,
+
+        /**
+         * A scalar value, which cannot contain anything.
+         */
+        SCALAR
+    }
+}
@@ -0,0 +1,373 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A substitution which patches overridden scalars in place in the source.
+ *
+ * The base configuration is parsed once, recording the location of every
+ * scalar targeted by an override. The output is then the original document
+ * with only those scalars replaced, keeping all other formatting (comments,
+ * ordering, quoting) intact and avoiding any serialization of the tree.
+ *
+ * Splicing is only possible when every override replaces an existing scalar
+ * with another scalar; if any override would create new structure, or targets
+ * a scalar which cannot be safely replaced (such as a block scalar or one with
+ * an anchor or tag), splicing is abandoned so the caller can fall back to
+ * substituting via a tree. Splicing is also abandoned if any trie node is
+ * matched more than once (such as by a duplicate key), as a tree would only
+ * keep one of the duplicates. Failures are only passed on once splicing has
+ * succeeded, so abandoning a splice never reports the same failure twice.
+ */
+final class SplicingSubstitution {
+
+    /**
+     * A plain JSON mapper used to render replacement scalars.
+     */
+    private static final ObjectMapper RENDERER = new ObjectMapper();
+
+    /**
+     * The source document being spliced.
+     */
+    private final String source;
+
+    /**
+     * The parser over the source document.
+     */
+    private final JsonParser parser;
+
+    /**
+     * All splices recorded, in document order.
+     */
+    private final List<Splice> splices;
+
+    /**
+     * All trie nodes matched in the source, by identity.
+     */
+    private final Set<OverrideTrie> visited;
+
+    /**
+     * The number of distinct value nodes spliced.
+     */
+    private int values;
+
+    /**
+     * The failures recorded while splicing, only kept if splicing succeeds.
+     */
+    private final SubstitutionReport.Collector failures;
+
+    /**
+     * The offsets of the start of each line, only computed if needed.
+     */
+    private int[] lines;
+
+    /**
+     * Whether the source contains any supplementary characters.
+     */
+    private final boolean supplementary;
+
+    /**
+     * Create a new instance.
+     *
+     * @param source
+     *      the source document being spliced.
+     * @param parser
+     *      the parser over the source document.
+     */
+    private SplicingSubstitution(String source, JsonParser parser) {
+        this.source = source;
+        this.parser = parser;
+        this.splices = new ArrayList<>();
+        this.visited = Collections.newSetFromMap(new IdentityHashMap<OverrideTrie, Boolean>());
+        this.failures = new SubstitutionReport.Collector(FailureMode.LENIENT);
+        this.supplementary = source.length() != source.codePointCount(0, source.length());
+    }
+
+    /**
+     * Attempts to splice all overrides into a source document.
+     *
+     * @param bytes
+     *      the UTF-8 bytes of the source document.
+     * @param mapper
+     *      the {@link ObjectMapper} whose format the document is in.
+     * @param trie
+     *      the trie of overrides to apply.
+     * @param collector
+     *      the collector to record failed overrides into, if spliced.
+     * @return
+     *      the spliced document bytes, or null if splicing is not possible.
+     * @throws IOException
+     *      if the source document cannot be parsed.
+     */
+    static byte[] splice(byte[] bytes, ObjectMapper mapper, OverrideTrie trie,
+                         SubstitutionReport.Collector collector) throws IOException {
+        final String source = new String(bytes, StandardCharsets.UTF_8);
+
+        try (final JsonParser parser = mapper.getFactory().createParser(source)) {
+            final SplicingSubstitution splicing = new SplicingSubstitution(source, parser);
+
+            // walk the document, bailing if anything can't be spliced
+            if (parser.nextToken() == null || !splicing.visit(trie)) {
+                return null;
+            }
+
+            // every override must have been matched in the source exactly once
+            if (splicing.values != countValues(trie)) {
+                return null;
+            }
+
+            collector.recordAll(splicing.failures.report().getFailures());
+
+            return splicing.render().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Visits the value at the current token, matched against a trie node.
+     *
+     * @param node
+     *      the trie node matching the path of the value, if any.
+     * @return
+     *      true if the value could be handled by splicing.
+     * @throws IOException
+     *      if the source document cannot be parsed.
+     */
+    private boolean visit(OverrideTrie node) throws IOException {
+        // untouched values are skipped entirely
+        if (node == null) {
+            this.parser.skipChildren();
+            return true;
+        }
+
+        // duplicate keys match the same node twice, and only one would survive
+        if (!this.visited.add(node)) {
+            return false;
+        }
+
+        final JsonToken token = this.parser.getCurrentToken();
+
+        // overridden values must be scalars replaced by scalars
+        if (node.getValue() != null) {
+            if (!token.isScalarValue()) {
+                return false;
+            }
+            this.values++;
+            final JsonNode replacement = node.replace(token, this.failures);
+            return replacement.isValueNode() && this.record(replacement);
+        }
+
+        switch (token) {
+            case START_OBJECT:
+                while (this.parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final OverrideTrie child = node.child(PathToken.field(this.parser.getCurrentName()));
+                    this.parser.nextToken();
+                    if (!this.visit(child)) {
+                        return false;
+                    }
+                }
+                return true;
+
+            case START_ARRAY:
+                for (int i = 0; this.parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                    if (!this.visit(node.child(PathToken.index(i)))) {
+                        return false;
+                    }
+                }
+                return true;
+
+            default:
+                // a scalar where overrides expect a container
+                return false;
+        }
+    }
+
+    /**
+     * Records a splice of the current scalar token.
+     *
+     * @param replacement
+     *      the scalar to replace the current token with.
+     * @return
+     *      true if the splice was recorded, false if the token is unsafe.
+     * @throws IOException
+     *      if the replacement cannot be rendered.
+     */
+    private boolean record(JsonNode replacement) throws IOException {
+        final int start = this.offset(this.parser.getTokenLocation());
+        final int end = this.offset(this.parser.getCurrentLocation());
+
+        if (start < 0 || end < start || end > this.source.length()) {
+            return false;
+        }
+
+        // block scalars, anchors, tags and aliases are never spliced
+        if (start < end) {
+            switch (this.source.charAt(start)) {
+                case '|':
+                case '>':
+                case '&':
+                case '!':
+                case '*':
+                    return false;
+            }
+        }
+
+        final String rendered = RENDERER.writeValueAsString(replacement);
+
+        // implicit nulls are empty, and sit directly after their indicator
+        this.splices.add(new Splice(start, end, start == end ? " " + rendered : rendered));
+        return true;
+    }
+
+    /**
+     * Renders the source document with all splices applied.
+     *
+     * @return
+     *      the spliced document.
+     */
+    private String render() {
+        final StringBuilder builder = new StringBuilder(this.source.length() + 64);
+
+        int position = 0;
+        for (Splice splice : this.splices) {
+            builder.append(this.source, position, splice.start).append(splice.replacement);
+            position = splice.end;
+        }
+
+        return builder.append(this.source, position, this.source.length()).toString();
+    }
+
+    /**
+     * Converts a {@link JsonLocation} to a character offset in the source.
+     *
+     * Parsers which don't track character offsets (such as YAML) are handled
+     * via their line and column, with columns counted in code points.
+     *
+     * @param location
+     *      the location to convert.
+     * @return
+     *      the character offset in the source, or -1 if unknown.
+     */
+    private int offset(JsonLocation location) {
+        final long offset = location.getCharOffset();
+        if (offset >= 0) {
+            return (int) offset;
+        }
+
+        final int line = location.getLineNr() - 1;
+        final int column = location.getColumnNr() - 1;
+
+        if (line < 0 || column < 0) {
+            return -1;
+        }
+
+        if (this.lines == null) {
+            this.lines = lines(this.source);
+        }
+
+        if (line >= this.lines.length) {
+            return line == this.lines.length && column == 0 ? this.source.length() : -1;
+        }
+
+        final int start = this.lines[line];
+        return this.supplementary
+            ? this.source.offsetByCodePoints(start, column)
+            : start + column;
+    }
+
+    /**
+     * Computes the offsets of the start of each line in a document.
+     *
+     * @param source
+     *      the document to compute line offsets for.
+     * @return
+     *      an array of line start offsets.
+     */
+    private static int[] lines(String source) {
+        int count = 1;
+        for (int i = 0, j = source.length(); i < j; i++) {
+            if (source.charAt(i) == '\n') {
+                count++;
+            }
+        }
+
+        final int[] lines = new int[count];
+        for (int i = 0, j = source.length(), line = 1; i < j; i++) {
+            if (source.charAt(i) == '\n') {
+                lines[line++] = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Counts the values which must be matched to splice a trie.
+     *
+     * Values beneath another value are folded into that value, so they're
+     * not counted separately.
+     *
+     * @param node
+     *      the trie node to count values beneath.
+     * @return
+     *      the number of values to be matched.
+     */
+    private static int countValues(OverrideTrie node) {
+        if (node.getValue() != null) {
+            return 1;
+        }
+        int count = 0;
+        for (Map.Entry<PathToken, OverrideTrie> entry : node.children()) {
+            count += countValues(entry.getValue());
+        }
+        return count;
+    }
+
+    /**
+     * A single replacement of a region of the source document.
+     */
+    private static final class Splice {
+
+        /**
+         * The start of the region, inclusive.
+         */
+        private final int start;
+
+        /**
+         * The end of the region, exclusive.
+         */
+        private final int end;
+
+        /**
+         * The text to replace the region with.
+         */
+        private final String replacement;
+
+        /**
+         * Create a new instance.
+         *
+         * @param start
+         *      the start of the region, inclusive.
+         * @param end
+         *      the end of the region, exclusive.
+         * @param replacement
+         *      the text to replace the region with.
+         */
+        private Splice(int start, int end, String replacement) {
+            this.start = start;
+            this.end = end;
+            this.replacement = replacement;
+        }
+    }
+}
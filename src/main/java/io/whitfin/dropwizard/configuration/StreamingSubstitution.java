@@ -0,0 +1,483 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link InputStream} which substitutes overrides as tokens stream past.
+ *
+ * Tokens are pulled from a {@link JsonParser} over the base configuration
+ * and pushed into a {@link JsonGenerator} on demand, as the stream is read.
+ * An {@link OverrideTrie} is walked alongside the tokens, so that overridden
+ * values can be replaced as they're reached and overrides targeting missing
+ * paths can be injected as their enclosing container closes.
+ *
+ * The configuration is never materialized as a tree, and only the current
+ * path is tracked, so memory is proportional to nesting depth (plus the
+ * overrides themselves) rather than the size of the document. The limits of
+ * the trie are enforced as the stream is read; the output is counted as it's
+ * generated, and array gaps are checked before any padding is written.
+ * Overrides conflicting with the structure of the input are recorded into a
+ * {@link SubstitutionReport.Collector} as they're reached.
+ */
+final class StreamingSubstitution extends InputStream {
+
+    /**
+     * The parser over the base configuration.
+     */
+    private final JsonParser parser;
+
+    /**
+     * The generator writing the substituted configuration.
+     */
+    private final JsonGenerator generator;
+
+    /**
+     * The buffer of generated bytes waiting to be read.
+     */
+    private final Buffer buffer;
+
+    /**
+     * The stack of containers currently open.
+     */
+    private final Deque<Frame> stack;
+
+    /**
+     * The trie of overrides to apply.
+     */
+    private final OverrideTrie trie;
+
+    /**
+     * The collector to record failed overrides into.
+     */
+    private final SubstitutionReport.Collector collector;
+
+    /**
+     * The trie node of the value following the current field name.
+     */
+    private OverrideTrie pending;
+
+    /**
+     * The number of bytes generated so far.
+     */
+    private long generated;
+
+    /**
+     * The number of nodes generated so far.
+     */
+    private int nodes;
+
+    /**
+     * The read position within the buffer.
+     */
+    private int position;
+
+    /**
+     * Whether the whole document has been generated.
+     */
+    private boolean finished;
+
+    /**
+     * Create a new instance.
+     *
+     * @param in
+     *      the stream of the base configuration.
+     * @param mapper
+     *      the {@link ObjectMapper} used to read and write configuration.
+     * @param trie
+     *      the trie of overrides to apply.
+     * @param collector
+     *      the collector to record failed overrides into.
+     * @throws IOException
+     *      if the parser or generator cannot be created.
+     */
+    StreamingSubstitution(InputStream in, ObjectMapper mapper, OverrideTrie trie,
+                          SubstitutionReport.Collector collector) throws IOException {
+        final JsonFactory factory = mapper.getFactory();
+
+        this.trie = trie;
+        this.collector = collector;
+        this.stack = new ArrayDeque<>();
+        this.buffer = new Buffer();
+        this.parser = factory.createParser(in);
+        this.generator = factory.createGenerator(this.buffer);
+        this.generator.setCodec(mapper);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+        if (!this.fill()) {
+            return -1;
+        }
+        return this.buffer.bytes()[this.position++] & 0xff;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.fill()) {
+            return -1;
+        }
+        final int count = Math.min(len, this.buffer.size() - this.position);
+        System.arraycopy(this.buffer.bytes(), this.position, b, off, count);
+        this.position += count;
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int available() {
+        return this.buffer.size() - this.position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.parser.close();
+        } finally {
+            this.generator.close();
+        }
+    }
+
+    /**
+     * Retrieves the number of bytes generated so far.
+     *
+     * @return
+     *      the number of bytes generated.
+     */
+    long generated() {
+        return this.generated;
+    }
+
+    /**
+     * Retrieves the number of nodes generated so far.
+     *
+     * @return
+     *      the number of nodes generated, counting every element of any
+     *      value written by an override.
+     */
+    int nodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Ensures there are bytes available to read, generating more as needed.
+     *
+     * @return
+     *      true if there are bytes available, false at the end of the stream.
+     * @throws IOException
+     *      if the configuration cannot be parsed or generated.
+     */
+    private boolean fill() throws IOException {
+        while (this.position == this.buffer.size()) {
+            if (this.finished) {
+                return false;
+            }
+
+            // start over with an empty buffer
+            this.buffer.reset();
+            this.position = 0;
+
+            this.step();
+            this.generator.flush();
+
+            // stop at the first failure when failing fast
+            this.collector.check();
+
+            // fail as soon as the output grows beyond the limit
+            final long limit = this.trie.limits().getMaxOutputBytes();
+            if ((this.generated += this.buffer.size()) > limit) {
+                throw new SubstitutionException(new SubstitutionException.Violation(
+                    SubstitutionLimits.Limit.OUTPUT_BYTES, null, null, this.generated, limit));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the parser forward by a single token, generating the output.
+     *
+     * @throws IOException
+     *      if the configuration cannot be parsed or generated.
+     */
+    private void step() throws IOException {
+        final JsonToken token = this.parser.nextToken();
+
+        // end of the input (or empty input)
+        if (token == null) {
+            this.finish();
+            return;
+        }
+
+        switch (token) {
+            case FIELD_NAME:
+                final Frame frame = this.stack.peek();
+                final String name = this.parser.getCurrentName();
+
+                this.generator.writeFieldName(name);
+                this.pending = frame.node == null ? null : frame.node.child(PathToken.field(name));
+
+                if (frame.seen != null && this.pending != null) {
+                    frame.seen.add(this.pending);
+                }
+                return;
+
+            case END_OBJECT:
+            case END_ARRAY:
+                this.close(this.stack.pop());
+
+                // the root of the document is complete
+                if (this.stack.isEmpty()) {
+                    this.finish();
+                }
+                return;
+
+            default:
+                this.value(token, this.next());
+        }
+    }
+
+    /**
+     * Handles the start of a value in the input.
+     *
+     * @param token
+     *      the first token of the value.
+     * @param node
+     *      the trie node matching the path of the value, if any.
+     * @throws IOException
+     *      if the configuration cannot be parsed or generated.
+     */
+    private void value(JsonToken token, OverrideTrie node) throws IOException {
+        // overridden values are skipped and replaced
+        if (node != null && node.getValue() != null) {
+            this.parser.skipChildren();
+            this.write(node.replace(token, this.collector));
+            return;
+        }
+
+        switch (token) {
+            case START_OBJECT:
+                this.generator.writeStartObject();
+                this.stack.push(new Frame(node, false));
+                this.nodes++;
+                return;
+
+            case START_ARRAY:
+                this.generator.writeStartArray();
+                this.stack.push(new Frame(node, true));
+                this.nodes++;
+                return;
+
+            case VALUE_NULL:
+                // null values are replaced by any children
+                if (node != null && node.hasChildren()) {
+                    this.write(node.applyTo(null, this.collector));
+                    return;
+                }
+                this.generator.copyCurrentEvent(this.parser);
+                this.nodes++;
+                return;
+
+            default:
+                // a scalar where overrides expect a container
+                if (node != null && node.hasChildren()) {
+                    node.conflict(this.collector);
+                }
+                this.generator.copyCurrentEvent(this.parser);
+                this.nodes++;
+        }
+    }
+
+    /**
+     * Closes a container, injecting any overrides missing from the input.
+     *
+     * @param frame
+     *      the frame of the container being closed.
+     * @throws IOException
+     *      if the configuration cannot be generated.
+     */
+    private void close(Frame frame) throws IOException {
+        if (frame.node != null) {
+            // children are sorted, so indices are always written in order
+            for (Map.Entry<PathToken, OverrideTrie> entry : frame.node.children()) {
+                final PathToken token = entry.getKey();
+
+                if (frame.array) {
+                    // fields can't be written into an array
+                    if (token.getType() != PathToken.Type.INDEX) {
+                        entry.getValue().conflict(this.collector);
+                        continue;
+                    }
+                    // indices are written in order, padding any gaps
+                    if (token.getIndex() < frame.index) {
+                        continue;
+                    }
+                    final SubstitutionException.Violation violation = entry.getValue().gap(frame.index);
+                    if (violation != null) {
+                        throw new SubstitutionException(violation);
+                    }
+                    while (frame.index < token.getIndex()) {
+                        this.generator.writeNull();
+                        this.nodes++;
+                        frame.index++;
+                    }
+                    frame.index++;
+                } else {
+                    // indices can't be written into an object
+                    if (token.getType() != PathToken.Type.FIELD) {
+                        entry.getValue().conflict(this.collector);
+                        continue;
+                    }
+                    // fields are written when they were never seen
+                    if (frame.seen.contains(entry.getValue())) {
+                        continue;
+                    }
+                    this.generator.writeFieldName(token.getName());
+                }
+
+                this.write(entry.getValue().applyTo(null, this.collector));
+            }
+        }
+
+        if (frame.array) {
+            this.generator.writeEndArray();
+        } else {
+            this.generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes a value generated by an override, counting all of its nodes.
+     *
+     * @param value
+     *      the value to write, where null is written as a null node.
+     * @throws IOException
+     *      if the value cannot be generated.
+     */
+    private void write(JsonNode value) throws IOException {
+        this.generator.writeTree(value);
+        this.nodes += value == null ? 1 : EnvironmentSubstitutor.count(value);
+    }
+
+    /**
+     * Resolves the trie node matching the value about to be read.
+     *
+     * @return
+     *      the trie node of the next value, or null if there is none.
+     */
+    private OverrideTrie next() {
+        final Frame frame = this.stack.peek();
+
+        // the root of the document
+        if (frame == null) {
+            return this.trie;
+        }
+
+        // array elements are matched by position
+        if (frame.array) {
+            final int index = frame.index++;
+            return frame.node == null ? null : frame.node.child(PathToken.index(index));
+        }
+
+        // object values are matched by the preceding field name
+        final OverrideTrie node = this.pending;
+        this.pending = null;
+        return node;
+    }
+
+    /**
+     * Marks the document as complete, flushing all remaining output.
+     *
+     * @throws IOException
+     *      if the configuration cannot be generated.
+     */
+    private void finish() throws IOException {
+        this.finished = true;
+        this.generator.close();
+    }
+
+    /**
+     * A frame representing a container which is currently open.
+     */
+    private static final class Frame {
+
+        /**
+         * The trie node matching the path of this container, if any.
+         */
+        private final OverrideTrie node;
+
+        /**
+         * Whether this container is an array.
+         */
+        private final boolean array;
+
+        /**
+         * The trie children matched so far, only tracked when needed.
+         */
+        private final Set<OverrideTrie> seen;
+
+        /**
+         * The index of the next array element.
+         */
+        private int index;
+
+        /**
+         * Create a new instance.
+         *
+         * @param node
+         *      the trie node matching the path of this container, if any.
+         * @param array
+         *      whether this container is an array.
+         */
+        private Frame(OverrideTrie node, boolean array) {
+            this.node = node;
+            this.array = array;
+            this.seen = node != null && node.hasChildren() && !array
+                ? Collections.newSetFromMap(new IdentityHashMap<OverrideTrie, Boolean>())
+                : null;
+        }
+    }
+
+    /**
+     * A byte buffer which exposes its internal array, to avoid copying.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        /**
+         * Retrieves the internal array of this buffer.
+         *
+         * @return
+         *      the internal byte array, valid up to {@link #size()}.
+         */
+        byte[] bytes() {
+            return this.buf;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.configuration.ConfigurationException;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import io.dropwizard.configuration.YamlConfigurationFactory;
+
+import javax.validation.Validator;
+import java.io.IOException;
+
+/**
+ * A {@link YamlConfigurationFactory} which consumes substituted trees directly.
+ *
+ * When the configuration is sourced from an {@link EnvironmentSubstitutor},
+ * the substituted tree is handed straight to the factory rather than being
+ * written back out to YAML and then parsed again. Any other source provider
+ * is handled exactly as it would be by a {@link YamlConfigurationFactory}, as
+ * are base configurations which fail to parse (so errors are reported in the
+ * usual Dropwizard format).
+ *
+ * @param <T>
+ *      the type of the configuration objects to produce.
+ */
+public class SubstitutingConfigurationFactory<T> extends YamlConfigurationFactory<T> {
+
+    /**
+     * Create a new instance.
+     *
+     * @param klass
+     *      the type of the configuration objects to produce.
+     * @param validator
+     *      the validator to validate the configuration with.
+     * @param mapper
+     *      the {@link ObjectMapper} to use to bind the configuration.
+     * @param propertyPrefix
+     *      the system property name prefix used by overrides.
+     */
+    public SubstitutingConfigurationFactory(Class<T> klass, Validator validator, ObjectMapper mapper, String propertyPrefix) {
+        super(klass, validator, mapper, propertyPrefix);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T build(ConfigurationSourceProvider provider, String path) throws IOException, ConfigurationException {
+        // anything else goes through the usual stream
+        if (!(provider instanceof EnvironmentSubstitutor)) {
+            return super.build(provider, path);
+        }
+
+        final EnvironmentSubstitutor substitutor = (EnvironmentSubstitutor) provider;
+
+        final JsonNode node;
+        try {
+            node = substitutor.read(path);
+        } catch (JsonProcessingException e) {
+            // malformed base configuration, let Dropwizard report it
+            return super.build(substitutor.getDelegate(), path);
+        }
+
+        return this.build(node, path);
+    }
+}
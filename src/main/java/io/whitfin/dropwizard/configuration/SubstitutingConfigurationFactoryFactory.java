@@ -0,0 +1,31 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.configuration.ConfigurationFactory;
+import io.dropwizard.configuration.ConfigurationFactoryFactory;
+import io.dropwizard.configuration.DefaultConfigurationFactoryFactory;
+
+import javax.validation.Validator;
+
+/**
+ * A {@link ConfigurationFactoryFactory} creating {@link SubstitutingConfigurationFactory}
+ * instances, configured in the same way as the default Dropwizard factories.
+ *
+ * @param <T>
+ *      the type of the configuration objects to produce.
+ */
+public class SubstitutingConfigurationFactoryFactory<T> extends DefaultConfigurationFactoryFactory<T> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConfigurationFactory<T> create(Class<T> klass, Validator validator, ObjectMapper objectMapper, String propertyPrefix) {
+        return new SubstitutingConfigurationFactory<>(
+            klass,
+            validator,
+            this.configureObjectMapper(objectMapper.copy()),
+            propertyPrefix
+        );
+    }
+}
@@ -0,0 +1,355 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of substituted configurations.
+ *
+ * Entries are keyed by the configuration path, a hash of the bytes of the
+ * base configuration, and a fingerprint of the overrides being applied (and
+ * the limits enforced on them), so a hit is only possible when the result
+ * would be identical. Entries are evicted in least recently used order once
+ * either the maximum number of entries or the maximum number of cached bytes
+ * is exceeded.
+ *
+ * A cache is designed to be shared between many {@link EnvironmentSubstitutor}
+ * instances (such as those created across a test suite), and is safe to use
+ * from multiple threads.
+ */
+public final class SubstitutionCache {
+
+    /**
+     * The entries of this cache, in access order.
+     */
+    private final LinkedHashMap<Key, Result> entries;
+
+    /**
+     * The maximum number of entries to retain.
+     */
+    private final int maximumEntries;
+
+    /**
+     * The maximum number of bytes to retain across all entries.
+     */
+    private final long maximumBytes;
+
+    /**
+     * The number of bytes currently retained across all entries.
+     */
+    private long bytes;
+
+    /**
+     * The number of lookups which found an entry.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * The number of lookups which found no entry.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * The number of entries evicted to stay within bounds.
+     */
+    private final AtomicLong evictions;
+
+    /**
+     * Create a new instance bounded by number of entries.
+     *
+     * @param maximumEntries
+     *      the maximum number of entries to retain.
+     */
+    public SubstitutionCache(int maximumEntries) {
+        this(maximumEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a new instance bounded by number of entries and bytes.
+     *
+     * @param maximumEntries
+     *      the maximum number of entries to retain.
+     * @param maximumBytes
+     *      the maximum number of bytes to retain across all entries.
+     */
+    public SubstitutionCache(int maximumEntries, long maximumBytes) {
+        if (maximumEntries < 1) {
+            throw new IllegalArgumentException("maximumEntries must be positive");
+        }
+        if (maximumBytes < 1) {
+            throw new IllegalArgumentException("maximumBytes must be positive");
+        }
+        this.maximumEntries = maximumEntries;
+        this.maximumBytes = maximumBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    /**
+     * Retrieves the number of lookups which found an entry.
+     *
+     * @return
+     *      the number of cache hits.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Retrieves the number of lookups which found no entry.
+     *
+     * @return
+     *      the number of cache misses.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Retrieves the number of entries evicted to stay within bounds.
+     *
+     * @return
+     *      the number of cache evictions.
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Retrieves the number of entries currently retained.
+     *
+     * @return
+     *      the number of cache entries.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes all entries from this cache, leaving counters untouched.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    /**
+     * Retrieves the result of the substitution for a key, if present.
+     *
+     * @param key
+     *      the key of the substitution.
+     * @return
+     *      the substitution {@link Result}, or null if not cached.
+     */
+    synchronized Result get(Key key) {
+        final Result value = this.entries.get(key);
+        if (value == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Stores the result of the substitution for a key, evicting entries as needed.
+     *
+     * Results larger than the maximum number of bytes are never stored.
+     *
+     * @param key
+     *      the key of the substitution.
+     * @param value
+     *      the substitution {@link Result} to store.
+     */
+    synchronized void put(Key key, Result value) {
+        if (value.bytes.length > this.maximumBytes) {
+            return;
+        }
+
+        final Result previous = this.entries.put(key, value);
+        if (previous != null) {
+            this.bytes -= previous.bytes.length;
+        }
+        this.bytes += value.bytes.length;
+
+        // evict the least recently used entries until within bounds
+        final Iterator<Map.Entry<Key, Result>> iterator = this.entries.entrySet().iterator();
+        while (this.entries.size() > this.maximumEntries || this.bytes > this.maximumBytes) {
+            final Map.Entry<Key, Result> eldest = iterator.next();
+            this.bytes -= eldest.getValue().bytes.length;
+            iterator.remove();
+            this.evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Computes a SHA-256 digest of a sequence of bytes.
+     *
+     * @param bytes
+     *      the bytes to digest.
+     * @return
+     *      the digest of the bytes.
+     */
+    static byte[] digest(byte[] bytes) {
+        return digester().digest(bytes);
+    }
+
+    /**
+     * Creates a new SHA-256 {@link MessageDigest}.
+     *
+     * @return
+     *      a new {@link MessageDigest} instance.
+     */
+    static MessageDigest digester() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The result of a single substitution, as stored in the cache.
+     *
+     * Along with the substituted bytes, this carries every override which
+     * failed while substituting, so a hit reports (and fails on) the same
+     * failures as substituting again would, no matter the {@link FailureMode}
+     * of the substitutor it's served to.
+     */
+    static final class Result {
+
+        /**
+         * The substituted bytes, which are shared and never modified.
+         */
+        private final byte[] bytes;
+
+        /**
+         * The failures recorded while substituting.
+         */
+        private final List<SubstitutionReport.Failure> failures;
+
+        /**
+         * Create a new instance.
+         *
+         * @param bytes
+         *      the substituted bytes, which must never be modified.
+         * @param failures
+         *      the failures recorded while substituting.
+         */
+        Result(byte[] bytes, List<SubstitutionReport.Failure> failures) {
+            this.bytes = bytes;
+            this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+        }
+
+        /**
+         * Replays the failures of this result into a collector.
+         *
+         * Replaying stops as soon as the collector halts, just as substituting
+         * again would stop at the first failure.
+         *
+         * @param collector
+         *      the collector to record the failures into.
+         * @return
+         *      the substituted bytes, which must never be modified.
+         * @throws SubstitutionException
+         *      if the collector halts on any failure.
+         */
+        byte[] replay(SubstitutionReport.Collector collector) throws SubstitutionException {
+            for (int i = 0, j = this.failures.size(); i < j && !collector.halted(); i++) {
+                collector.record(this.failures.get(i));
+            }
+            collector.check();
+            return this.bytes;
+        }
+    }
+
+    /**
+     * A key identifying a single substituted configuration.
+     */
+    static final class Key {
+
+        /**
+         * The path of the configuration.
+         */
+        private final String path;
+
+        /**
+         * The format and mode used to write the configuration.
+         */
+        private final String format;
+
+        /**
+         * The digest of the base configuration bytes.
+         */
+        private final byte[] source;
+
+        /**
+         * The fingerprint of the overrides applied.
+         */
+        private final byte[] fingerprint;
+
+        /**
+         * The precomputed hash of this key.
+         */
+        private final int hash;
+
+        /**
+         * Create a new instance.
+         *
+         * @param path
+         *      the path of the configuration.
+         * @param format
+         *      the format and mode used to write the configuration.
+         * @param source
+         *      the digest of the base configuration bytes.
+         * @param fingerprint
+         *      the fingerprint of the overrides applied, and their limits.
+         */
+        Key(String path, String format, byte[] source, byte[] fingerprint) {
+            this.path = path;
+            this.format = format;
+            this.source = source;
+            this.fingerprint = fingerprint;
+            this.hash = 31 * (31 * (31 * path.hashCode() + format.hashCode())
+                + Arrays.hashCode(source)) + Arrays.hashCode(fingerprint);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return this.hash == key.hash
+                && this.path.equals(key.path)
+                && this.format.equals(key.format)
+                && Arrays.equals(this.source, key.source)
+                && Arrays.equals(this.fingerprint, key.fingerprint);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package io.whitfin.dropwizard.configuration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An exception raised when substitution of overrides fails outright.
+ *
+ * This is raised when overrides violate the {@link SubstitutionLimits}, in
+ * which case each violation is available in a structured form via
+ * {@link #getViolations()}, naming the limit, the variable or path
+ * responsible, and by how much the limit was exceeded. It's also raised on
+ * the first failed override when using {@link FailureMode#FAIL_FAST}, in
+ * which case the failure is available via {@link #getReport()}.
+ *
+ * This extends {@link IOException}, so it surfaces from
+ * {@link EnvironmentSubstitutor#open(String)} like any other failure to read
+ * the configuration.
+ */
+public class SubstitutionException extends IOException {
+
+    /**
+     * The serialization version of this exception.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The violations which caused this exception.
+     */
+    private final List<Violation> violations;
+
+    /**
+     * The report of failed overrides which caused this exception, if any.
+     */
+    private final SubstitutionReport report;
+
+    /**
+     * Create a new instance.
+     *
+     * @param violations
+     *      the violations which caused this exception.
+     */
+    public SubstitutionException(List<Violation> violations) {
+        super(message(violations));
+        this.violations = Collections.unmodifiableList(new ArrayList<>(violations));
+        this.report = null;
+    }
+
+    /**
+     * Create a new instance from a single violation.
+     *
+     * @param violation
+     *      the violation which caused this exception.
+     */
+    public SubstitutionException(Violation violation) {
+        this(Collections.singletonList(violation));
+    }
+
+    /**
+     * Create a new instance from a report of failed overrides.
+     *
+     * @param report
+     *      the report of failed overrides which caused this exception.
+     */
+    public SubstitutionException(SubstitutionReport report) {
+        super("Substitution failed: " + report);
+        this.violations = Collections.emptyList();
+        this.report = report;
+    }
+
+    /**
+     * Retrieves the violations which caused this exception.
+     *
+     * @return
+     *      an immutable list of {@link Violation} instances, which is empty
+     *      if caused by a failed override.
+     */
+    public List<Violation> getViolations() {
+        return this.violations;
+    }
+
+    /**
+     * Retrieves the report of failed overrides which caused this exception.
+     *
+     * @return
+     *      the {@link SubstitutionReport}, or null if caused by limits.
+     */
+    public SubstitutionReport getReport() {
+        return this.report;
+    }
+
+    /**
+     * Builds a message listing a set of violations.
+     *
+     * @param violations
+     *      the violations to list.
+     * @return
+     *      the exception message.
+     */
+    private static String message(List<Violation> violations) {
+        final StringBuilder builder = new StringBuilder("Substitution limits exceeded: ");
+        for (int i = 0, j = violations.size(); i < j; i++) {
+            if (i > 0) {
+                builder.append("; ");
+            }
+            builder.append(violations.get(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A single violation of a limit.
+     */
+    public static final class Violation {
+
+        /**
+         * The limit which was violated.
+         */
+        private final SubstitutionLimits.Limit limit;
+
+        /**
+         * The variable responsible for the violation, if known.
+         */
+        private final String variable;
+
+        /**
+         * The configuration path of the violation, if any.
+         */
+        private final String path;
+
+        /**
+         * The value which exceeded the limit.
+         */
+        private final long actual;
+
+        /**
+         * The maximum allowed by the limit.
+         */
+        private final long maximum;
+
+        /**
+         * Create a new instance.
+         *
+         * @param limit
+         *      the limit which was violated.
+         * @param variable
+         *      the variable responsible for the violation, or null.
+         * @param path
+         *      the configuration path of the violation, or null.
+         * @param actual
+         *      the value which exceeded the limit.
+         * @param maximum
+         *      the maximum allowed by the limit.
+         */
+        public Violation(SubstitutionLimits.Limit limit, String variable, String path, long actual, long maximum) {
+            this.limit = Objects.requireNonNull(limit);
+            this.variable = variable;
+            this.path = path;
+            this.actual = actual;
+            this.maximum = maximum;
+        }
+
+        /**
+         * Retrieves the limit which was violated.
+         *
+         * @return
+         *      the violated {@link SubstitutionLimits.Limit}.
+         */
+        public SubstitutionLimits.Limit getLimit() {
+            return this.limit;
+        }
+
+        /**
+         * Retrieves the variable responsible for the violation.
+         *
+         * @return
+         *      the name of the variable, or null if not tied to one.
+         */
+        public String getVariable() {
+            return this.variable;
+        }
+
+        /**
+         * Retrieves the configuration path of the violation.
+         *
+         * @return
+         *      the path, such as "servers[99999999]", or null if none.
+         */
+        public String getPath() {
+            return this.path;
+        }
+
+        /**
+         * Retrieves the value which exceeded the limit.
+         *
+         * @return
+         *      the offending value.
+         */
+        public long getActual() {
+            return this.actual;
+        }
+
+        /**
+         * Retrieves the maximum allowed by the limit.
+         *
+         * @return
+         *      the configured maximum.
+         */
+        public long getMaximum() {
+            return this.maximum;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder().append(this.limit);
+            if (this.variable != null) {
+                builder.append(" from ").append(this.variable);
+            }
+            if (this.path != null) {
+                builder.append(" at ").append(this.path);
+            }
+            return builder
+                .append(" (")
+                .append(this.actual)
+                .append(" > ")
+                .append(this.maximum)
+                .append(')')
+                .toString();
+        }
+    }
+}
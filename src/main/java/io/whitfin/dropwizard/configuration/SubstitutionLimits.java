@@ -0,0 +1,250 @@
+package io.whitfin.dropwizard.configuration;
+
+/**
+ * Limits guarding substitution against pathological overrides.
+ *
+ * A single mistyped variable (such as "MY_APP_SERVERS_99999999_PORT") would
+ * otherwise pad an array with millions of nulls, and there is nothing else
+ * to stop very deep paths or very many overrides. Every limit is checked
+ * before anything is allocated on its behalf, and any violation fails
+ * substitution with a {@link SubstitutionException} describing it.
+ *
+ * The default limits are generous enough for any reasonable configuration;
+ * use {@link #builder()} to tighten (or relax) them.
+ */
+public final class SubstitutionLimits {
+
+    /**
+     * The default limits, used when none are provided.
+     */
+    private static final SubstitutionLimits DEFAULTS = builder().build();
+
+    /**
+     * The maximum number of nulls padded before an array index.
+     */
+    private final int maxIndexGap;
+
+    /**
+     * The maximum number of segments in an override path.
+     */
+    private final int maxDepth;
+
+    /**
+     * The maximum number of overrides within all namespaces.
+     */
+    private final int maxOverrides;
+
+    /**
+     * The maximum number of bytes in a substituted configuration.
+     */
+    private final long maxOutputBytes;
+
+    /**
+     * Create a new instance from a {@link Builder}.
+     *
+     * @param builder
+     *      the builder containing all limits.
+     */
+    private SubstitutionLimits(Builder builder) {
+        this.maxIndexGap = builder.maxIndexGap;
+        this.maxDepth = builder.maxDepth;
+        this.maxOverrides = builder.maxOverrides;
+        this.maxOutputBytes = builder.maxOutputBytes;
+    }
+
+    /**
+     * Retrieves the default limits.
+     *
+     * @return
+     *      the default {@link SubstitutionLimits} instance.
+     */
+    public static SubstitutionLimits defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Creates a new {@link Builder}, starting from the default limits.
+     *
+     * @return
+     *      a new {@link Builder} instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Retrieves the maximum number of nulls padded before an array index.
+     *
+     * @return
+     *      the maximum gap between the end of an array and a new index.
+     */
+    public int getMaxIndexGap() {
+        return this.maxIndexGap;
+    }
+
+    /**
+     * Retrieves the maximum number of segments in an override path.
+     *
+     * @return
+     *      the maximum depth of an override.
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Retrieves the maximum number of overrides within all namespaces.
+     *
+     * @return
+     *      the maximum number of overrides.
+     */
+    public int getMaxOverrides() {
+        return this.maxOverrides;
+    }
+
+    /**
+     * Retrieves the maximum number of bytes in a substituted configuration.
+     *
+     * @return
+     *      the maximum size of the output.
+     */
+    public long getMaxOutputBytes() {
+        return this.maxOutputBytes;
+    }
+
+    /**
+     * The types of limit which can be violated.
+     */
+    public enum Limit {
+        /**
+         * Too many nulls would be padded before an array index.
+         */
+        INDEX_GAP,
+
+        /**
+         * An override path has too many segments.
+         */
+        DEPTH,
+
+        /**
+         * There are too many overrides within all namespaces.
+         */
+        OVERRIDES,
+
+        /**
+         * The substituted configuration is too large.
+         */
+        OUTPUT_BYTES
+    }
+
+    /**
+     * A builder to configure {@link SubstitutionLimits} instances.
+     */
+    public static final class Builder {
+
+        /**
+         * The maximum number of nulls padded before an array index.
+         */
+        private int maxIndexGap = 1024;
+
+        /**
+         * The maximum number of segments in an override path.
+         */
+        private int maxDepth = 64;
+
+        /**
+         * The maximum number of overrides within all namespaces.
+         */
+        private int maxOverrides = 65536;
+
+        /**
+         * The maximum number of bytes in a substituted configuration.
+         */
+        private long maxOutputBytes = Long.MAX_VALUE;
+
+        /**
+         * Create a new instance.
+         */
+        private Builder() { }
+
+        /**
+         * Sets the maximum number of nulls padded before an array index.
+         *
+         * Writing an index past the end of an array pads the array with
+         * nulls; a gap of zero only allows appending to an array.
+         *
+         * @param maxIndexGap
+         *      the maximum gap, defaulting to 1024.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder maxIndexGap(int maxIndexGap) {
+            if (maxIndexGap < 0) {
+                throw new IllegalArgumentException("maxIndexGap must not be negative");
+            }
+            this.maxIndexGap = maxIndexGap;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of segments in an override path.
+         *
+         * @param maxDepth
+         *      the maximum depth, defaulting to 64.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 1) {
+                throw new IllegalArgumentException("maxDepth must be positive");
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of overrides within all namespaces.
+         *
+         * Each variable counts as an override, as does each value of a merge
+         * patch and each operation of a JSON Patch.
+         *
+         * @param maxOverrides
+         *      the maximum number of overrides, defaulting to 65536.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder maxOverrides(int maxOverrides) {
+            if (maxOverrides < 0) {
+                throw new IllegalArgumentException("maxOverrides must not be negative");
+            }
+            this.maxOverrides = maxOverrides;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes in a substituted configuration.
+         *
+         * @param maxOutputBytes
+         *      the maximum size of the output, unlimited by default.
+         * @return
+         *      this {@link Builder} instance.
+         */
+        public Builder maxOutputBytes(long maxOutputBytes) {
+            if (maxOutputBytes < 1) {
+                throw new IllegalArgumentException("maxOutputBytes must be positive");
+            }
+            this.maxOutputBytes = maxOutputBytes;
+            return this;
+        }
+
+        /**
+         * Constructs a new {@link SubstitutionLimits} from this builder.
+         *
+         * @return
+         *      a new {@link SubstitutionLimits} instance.
+         */
+        public SubstitutionLimits build() {
+            return new SubstitutionLimits(this);
+        }
+    }
+}
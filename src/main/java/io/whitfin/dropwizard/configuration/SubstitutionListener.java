@@ -0,0 +1,18 @@
+package io.whitfin.dropwizard.configuration;
+
+/**
+ * A listener notified whenever a {@link SubstitutionWatcher} publishes.
+ */
+public interface SubstitutionListener {
+
+    /**
+     * Receives a newly published snapshot of a configuration.
+     *
+     * This is called from the background thread of the watcher, so any
+     * expensive work should be handed off elsewhere.
+     *
+     * @param snapshot
+     *      the newly published {@link SubstitutionSnapshot}.
+     */
+    void onSubstitution(SubstitutionSnapshot snapshot);
+}
@@ -0,0 +1,289 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A collector of metrics across all phases of substitution.
+ *
+ * Substitution usually happens during bootstrap, before the application has
+ * a {@link MetricRegistry} available. Until {@link #register(MetricRegistry)}
+ * is called, all measurements are buffered in memory; once registered, the
+ * buffer is replayed into the registry and later measurements go straight
+ * through to the registered metrics.
+ *
+ * All metrics are named beneath {@link EnvironmentSubstitutor}, for example
+ * {@code io.whitfin.dropwizard.configuration.EnvironmentSubstitutor.parse}.
+ */
+public final class SubstitutionMetrics {
+
+    /**
+     * The maximum number of measurements to buffer before registration.
+     */
+    private static final int MAX_BUFFERED = 1024;
+
+    /**
+     * The measurements recorded before registration.
+     */
+    private final List<Record> buffer;
+
+    /**
+     * The registered metrics, or null if not yet registered.
+     */
+    private Registered registered;
+
+    /**
+     * Create a new instance.
+     */
+    public SubstitutionMetrics() {
+        this.buffer = new ArrayList<>();
+    }
+
+    /**
+     * Registers all metrics with a {@link MetricRegistry}.
+     *
+     * Any measurements recorded before registration are replayed into the
+     * registry, so timings taken during bootstrap are not lost.
+     *
+     * @param registry
+     *      the {@link MetricRegistry} to register metrics with.
+     */
+    public synchronized void register(MetricRegistry registry) {
+        this.registered = new Registered(Objects.requireNonNull(registry));
+
+        for (Record record : this.buffer) {
+            this.registered.update(record.measurement, record.value);
+        }
+
+        this.buffer.clear();
+    }
+
+    /**
+     * Records a single measurement.
+     *
+     * @param measurement
+     *      the measurement being recorded.
+     * @param value
+     *      the value of the measurement (nanoseconds for timers).
+     */
+    synchronized void record(Measurement measurement, long value) {
+        if (this.registered != null) {
+            this.registered.update(measurement, value);
+        } else if (this.buffer.size() < MAX_BUFFERED) {
+            this.buffer.add(new Record(measurement, value));
+        }
+    }
+
+    /**
+     * Records the time elapsed since a starting point.
+     *
+     * @param measurement
+     *      the timer measurement being recorded.
+     * @param start
+     *      the starting point, from {@link System#nanoTime()}.
+     */
+    void time(Measurement measurement, long start) {
+        this.record(measurement, System.nanoTime() - start);
+    }
+
+    /**
+     * The measurements taken during substitution.
+     */
+    enum Measurement {
+        /**
+         * The time taken to open (and read) the delegate configuration.
+         */
+        DELEGATE_OPEN("delegate-open", Kind.TIMER),
+
+        /**
+         * The time taken to parse the base configuration.
+         */
+        PARSE("parse", Kind.TIMER),
+
+        /**
+         * The time taken to scan the environment for overrides.
+         */
+        ENV_SCAN("env-scan", Kind.TIMER),
+
+        /**
+         * The time taken to apply overrides to the configuration.
+         */
+        APPLY("apply", Kind.TIMER),
+
+        /**
+         * The time taken to serialize the substituted configuration.
+         */
+        SERIALIZE("serialize", Kind.TIMER),
+
+        /**
+         * The size of the base configuration, in bytes.
+         */
+        BYTES_IN("bytes-in", Kind.HISTOGRAM),
+
+        /**
+         * The size of the substituted configuration, in bytes.
+         */
+        BYTES_OUT("bytes-out", Kind.HISTOGRAM),
+
+        /**
+         * The number of nodes in the substituted configuration.
+         */
+        NODES("nodes", Kind.HISTOGRAM),
+
+        /**
+         * The number of overrides applied to a configuration.
+         */
+        APPLIED("applied", Kind.COUNTER),
+
+        /**
+         * The number of overrides skipped due to conflicting structure.
+         */
+        SKIPPED("skipped", Kind.COUNTER),
+
+        /**
+         * The number of overrides with invalid keys or values.
+         */
+        FAILED("failed", Kind.COUNTER);
+
+        /**
+         * The name of the metric, beneath the substitutor.
+         */
+        private final String name;
+
+        /**
+         * The kind of metric backing this measurement.
+         */
+        private final Kind kind;
+
+        /**
+         * Create a new instance.
+         *
+         * @param name
+         *      the name of the metric, beneath the substitutor.
+         * @param kind
+         *      the kind of metric backing this measurement.
+         */
+        Measurement(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * The kinds of metric backing a measurement.
+     */
+    private enum Kind {
+        TIMER, HISTOGRAM, COUNTER
+    }
+
+    /**
+     * The set of metrics created within a registry.
+     *
+     * This is kept separate so that the metrics classes are only needed
+     * once a registry is actually provided.
+     */
+    private static final class Registered {
+
+        /**
+         * The timers of all timer measurements.
+         */
+        private final Map<Measurement, Timer> timers;
+
+        /**
+         * The histograms of all histogram measurements.
+         */
+        private final Map<Measurement, Histogram> histograms;
+
+        /**
+         * The counters of all counter measurements.
+         */
+        private final Map<Measurement, Counter> counters;
+
+        /**
+         * Create a new instance.
+         *
+         * @param registry
+         *      the {@link MetricRegistry} to create metrics within.
+         */
+        private Registered(MetricRegistry registry) {
+            this.timers = new EnumMap<>(Measurement.class);
+            this.histograms = new EnumMap<>(Measurement.class);
+            this.counters = new EnumMap<>(Measurement.class);
+
+            for (Measurement measurement : Measurement.values()) {
+                final String name = MetricRegistry.name(EnvironmentSubstitutor.class, measurement.name);
+                switch (measurement.kind) {
+                    case TIMER:
+                        this.timers.put(measurement, registry.timer(name));
+                        break;
+                    case HISTOGRAM:
+                        this.histograms.put(measurement, registry.histogram(name));
+                        break;
+                    case COUNTER:
+                        this.counters.put(measurement, registry.counter(name));
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Updates the metric backing a measurement.
+         *
+         * @param measurement
+         *      the measurement being recorded.
+         * @param value
+         *      the value of the measurement.
+         */
+        private void update(Measurement measurement, long value) {
+            switch (measurement.kind) {
+                case TIMER:
+                    this.timers.get(measurement).update(value, TimeUnit.NANOSECONDS);
+                    break;
+                case HISTOGRAM:
+                    this.histograms.get(measurement).update(value);
+                    break;
+                case COUNTER:
+                    this.counters.get(measurement).inc(value);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * A single measurement buffered before registration.
+     */
+    private static final class Record {
+
+        /**
+         * The measurement being recorded.
+         */
+        private final Measurement measurement;
+
+        /**
+         * The value of the measurement.
+         */
+        private final long value;
+
+        /**
+         * Create a new instance.
+         *
+         * @param measurement
+         *      the measurement being recorded.
+         * @param value
+         *      the value of the measurement.
+         */
+        private Record(Measurement measurement, long value) {
+            this.measurement = measurement;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.whitfin.dropwizard.configuration;
+
+/**
+ * The strategies available to substitute overrides into a configuration stream.
+ *
+ * These only affect {@link EnvironmentSubstitutor#open(String)}; reading a tree
+ * via {@link EnvironmentSubstitutor#read(String)} always builds the full tree.
+ */
+public enum SubstitutionMode {
+    /**
+     * Reads the full configuration into a tree, applies all overrides, and
+     * then writes the tree back out. This is the default mode.
+     */
+    TREE,
+
+    /**
+     * Pipes the configuration from a parser to a generator as the stream is
+     * read, replacing and injecting overrides as tokens go by. The full tree
+     * is never materialized, so memory is proportional to nesting depth,
+     * which suits very large configurations.
+     */
+    STREAMING,
+
+    /**
+     * Reads the configuration once to locate every overridden scalar, and
+     * then copies the original bytes with only those scalars replaced. All
+     * formatting is preserved and nothing is serialized, but this is only
+     * possible when every override replaces an existing scalar; anything
+     * else falls back to {@link #TREE}.
+     */
+    SPLICE
+}
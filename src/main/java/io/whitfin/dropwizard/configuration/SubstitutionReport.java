@@ -0,0 +1,357 @@
+package io.whitfin.dropwizard.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A report of every override which failed during a substitution.
+ *
+ * Overrides which can't be applied (such as those with invalid keys, or
+ * those conflicting with the structure of the configuration) and placeholders
+ * which can't be interpolated never throw
+ * while they're being applied; each is recorded as a {@link Failure} with
+ * the variable and path responsible, and substitution carries on as per the
+ * {@link FailureMode}. The report of the latest substitution is available
+ * via {@link EnvironmentSubstitutor#getReport()}.
+ */
+public final class SubstitutionReport {
+
+    /**
+     * A report without any failures.
+     */
+    static final SubstitutionReport EMPTY = new SubstitutionReport(Collections.<Failure>emptyList());
+
+    /**
+     * The failures recorded, in the order they occurred.
+     */
+    private final List<Failure> failures;
+
+    /**
+     * Create a new instance.
+     *
+     * @param failures
+     *      the failures recorded, in the order they occurred.
+     */
+    private SubstitutionReport(List<Failure> failures) {
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Retrieves all failures recorded, in the order they occurred.
+     *
+     * @return
+     *      an immutable list of {@link Failure} instances.
+     */
+    public List<Failure> getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Determines whether any failures were recorded.
+     *
+     * @return
+     *      true if every override succeeded.
+     */
+    public boolean isEmpty() {
+        return this.failures.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return this.failures.toString();
+    }
+
+    /**
+     * The reasons an override can fail.
+     */
+    public enum Reason {
+        /**
+         * The variable name can't be parsed into a path.
+         */
+        INVALID_KEY,
+
+        /**
+         * The value can't be parsed, so is used as a string.
+         */
+        INVALID_VALUE,
+
+        /**
+         * The path names no property of the configuration class.
+         */
+        UNKNOWN_PROPERTY,
+
+        /**
+         * A patch document is malformed, so is ignored.
+         */
+        INVALID_PATCH,
+
+        /**
+         * An operation of a JSON Patch failed, so no part of it was applied.
+         */
+        PATCH_FAILED,
+
+        /**
+         * The path conflicts with the structure of the configuration, such
+         * as an index into an object.
+         */
+        CONFLICT,
+
+        /**
+         * The path selects an array element by the value of a field, but no
+         * element of the array has a matching value.
+         */
+        UNMATCHED_ELEMENT,
+
+        /**
+         * A placeholder names an undefined variable without a default, so
+         * is left in place.
+         */
+        UNDEFINED_VARIABLE,
+
+        /**
+         * A placeholder names a variable whose value refers back to itself,
+         * so is left in place.
+         */
+        CYCLIC_VARIABLE
+    }
+
+    /**
+     * A single failed override.
+     */
+    public static final class Failure {
+
+        /**
+         * The reason the override failed.
+         */
+        private final Reason reason;
+
+        /**
+         * The variable the override came from, if known.
+         */
+        private final String variable;
+
+        /**
+         * The configuration path of the override, if known.
+         */
+        private final String path;
+
+        /**
+         * Create a new instance.
+         *
+         * @param reason
+         *      the reason the override failed.
+         * @param variable
+         *      the variable the override came from, or null.
+         * @param path
+         *      the configuration path of the override, or null.
+         */
+        public Failure(Reason reason, String variable, String path) {
+            this.reason = Objects.requireNonNull(reason);
+            this.variable = variable;
+            this.path = path;
+        }
+
+        /**
+         * Retrieves the reason the override failed.
+         *
+         * @return
+         *      the {@link Reason} of the failure.
+         */
+        public Reason getReason() {
+            return this.reason;
+        }
+
+        /**
+         * Retrieves the variable the override came from.
+         *
+         * @return
+         *      the name of the variable, or null if unknown.
+         */
+        public String getVariable() {
+            return this.variable;
+        }
+
+        /**
+         * Retrieves the configuration path of the override.
+         *
+         * @return
+         *      the path, such as "servers[0].port", or null if unknown.
+         */
+        public String getPath() {
+            return this.path;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Failure)) {
+                return false;
+            }
+            final Failure failure = (Failure) o;
+            return this.reason == failure.reason
+                && Objects.equals(this.variable, failure.variable)
+                && Objects.equals(this.path, failure.path);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.reason, this.variable, this.path);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder().append(this.reason);
+            if (this.variable != null) {
+                builder.append(" from ").append(this.variable);
+            }
+            if (this.path != null) {
+                builder.append(" at ").append(this.path);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Collects failures as a substitution progresses.
+     *
+     * Failures are logged as they're recorded when in {@link FailureMode#WARN},
+     * and the first failure halts a {@link FailureMode#FAIL_FAST} collector.
+     * Reports can be taken at any time, such as while a stream is being read.
+     */
+    static final class Collector {
+
+        /**
+         * The logger used to warn of failures.
+         */
+        private static final Logger LOGGER = LoggerFactory.getLogger(SubstitutionReport.class);
+
+        /**
+         * The failures recorded so far.
+         */
+        private final List<Failure> failures;
+
+        /**
+         * The mode of handling failures.
+         */
+        private final FailureMode mode;
+
+        /**
+         * Whether substitution should stop, checked often so kept apart.
+         */
+        private volatile boolean halted;
+
+        /**
+         * Create a new instance.
+         *
+         * @param mode
+         *      the mode of handling failures.
+         */
+        Collector(FailureMode mode) {
+            this.mode = mode;
+            this.failures = new ArrayList<>();
+        }
+
+        /**
+         * Records a failure.
+         *
+         * @param failure
+         *      the failure to record.
+         */
+        synchronized void record(Failure failure) {
+            this.failures.add(failure);
+            if (this.mode == FailureMode.WARN) {
+                LOGGER.warn("Unable to apply override: {}", failure);
+            }
+            if (this.mode == FailureMode.FAIL_FAST) {
+                this.halted = true;
+            }
+        }
+
+        /**
+         * Records many failures, in order.
+         *
+         * @param failures
+         *      the failures to record.
+         */
+        void recordAll(List<Failure> failures) {
+            for (Failure failure : failures) {
+                this.record(failure);
+            }
+        }
+
+        /**
+         * Determines whether substitution should stop.
+         *
+         * @return
+         *      true if failing fast and any failure was recorded.
+         */
+        boolean halted() {
+            return this.halted;
+        }
+
+        /**
+         * Fails the substitution if it should stop.
+         *
+         * @throws SubstitutionException
+         *      if failing fast and any failure was recorded.
+         */
+        void check() throws SubstitutionException {
+            if (this.halted()) {
+                throw new SubstitutionException(this.report());
+            }
+        }
+
+        /**
+         * Retrieves the number of failures recorded so far.
+         *
+         * @return
+         *      the number of failures recorded.
+         */
+        synchronized int size() {
+            return this.failures.size();
+        }
+
+        /**
+         * Retrieves all failures recorded since a point.
+         *
+         * @param start
+         *      the number of failures recorded at that point.
+         * @return
+         *      a new list of the failures recorded since.
+         */
+        synchronized List<Failure> since(int start) {
+            return new ArrayList<>(this.failures.subList(start, this.failures.size()));
+        }
+
+        /**
+         * Takes a report of all failures recorded so far.
+         *
+         * @return
+         *      a new {@link SubstitutionReport} instance.
+         */
+        synchronized SubstitutionReport report() {
+            return this.failures.isEmpty()
+                ? EMPTY
+                : new SubstitutionReport(new ArrayList<>(this.failures));
+        }
+    }
+}
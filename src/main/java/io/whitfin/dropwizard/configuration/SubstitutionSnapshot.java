@@ -0,0 +1,127 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a substituted configuration.
+ *
+ * Snapshots are published by a {@link SubstitutionWatcher} each time the
+ * underlying configuration changes. The trees inside a snapshot are shared
+ * with later snapshots, so they're never handed out directly; callers always
+ * receive their own copy.
+ */
+public final class SubstitutionSnapshot {
+
+    /**
+     * The version of this snapshot, starting at 1.
+     */
+    private final long version;
+
+    /**
+     * The base configuration, before overrides.
+     */
+    private final ObjectNode base;
+
+    /**
+     * The configuration, with all overrides applied.
+     */
+    private final ObjectNode configuration;
+
+    /**
+     * The plan the configuration was substituted with.
+     */
+    private final OverridePlan plan;
+
+    /**
+     * The failures recorded while substituting, by the path which recorded them.
+     */
+    private final Map<OverrideTrie, List<SubstitutionReport.Failure>> failures;
+
+    /**
+     * Create a new instance.
+     *
+     * @param version
+     *      the version of this snapshot.
+     * @param base
+     *      the base configuration, before overrides.
+     * @param configuration
+     *      the configuration, with all overrides applied.
+     * @param plan
+     *      the plan the configuration was substituted with.
+     * @param failures
+     *      the failures recorded while substituting, by path.
+     */
+    SubstitutionSnapshot(long version, ObjectNode base, ObjectNode configuration, OverridePlan plan,
+                         Map<OverrideTrie, List<SubstitutionReport.Failure>> failures) {
+        this.version = version;
+        this.base = base;
+        this.configuration = configuration;
+        this.plan = plan;
+        this.failures = failures;
+    }
+
+    /**
+     * Retrieves the version of this snapshot.
+     *
+     * Versions start at 1 and increase by one for every published snapshot.
+     *
+     * @return
+     *      the version of this snapshot.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Retrieves a copy of the configuration, with all overrides applied.
+     *
+     * @return
+     *      a new copy of the configuration tree.
+     */
+    public ObjectNode getConfiguration() {
+        return this.configuration.deepCopy();
+    }
+
+    /**
+     * Retrieves the base configuration this snapshot was built from.
+     *
+     * @return
+     *      the shared base configuration, which must not be modified.
+     */
+    ObjectNode base() {
+        return this.base;
+    }
+
+    /**
+     * Retrieves the configuration of this snapshot without copying.
+     *
+     * @return
+     *      the shared configuration, which must not be modified.
+     */
+    ObjectNode configuration() {
+        return this.configuration;
+    }
+
+    /**
+     * Retrieves the plan the configuration of this snapshot was substituted with.
+     *
+     * @return
+     *      the {@link OverridePlan} of this snapshot.
+     */
+    OverridePlan plan() {
+        return this.plan;
+    }
+
+    /**
+     * Retrieves the failures recorded while substituting this snapshot.
+     *
+     * @return
+     *      the shared failures, by the path of the plan which recorded them.
+     */
+    Map<OverrideTrie, List<SubstitutionReport.Failure>> failures() {
+        return this.failures;
+    }
+}
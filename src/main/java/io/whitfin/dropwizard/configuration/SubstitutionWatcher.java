@@ -0,0 +1,342 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A watcher which re-substitutes a configuration file whenever it changes.
+ *
+ * The file is watched via a {@link WatchService} on a background thread,
+ * along with every file (or directory) read by an override source, such as
+ * a ".env" file or a mounted directory of secrets. Bursts of changes are
+ * debounced, so a configuration is only reloaded once everything has been
+ * quiet for the debounce period. A change to any source recompiles the
+ * override plan, and each reload re-applies overrides only to the subtrees
+ * of the configuration (or of the plan) which changed. The result is
+ * published as an immutable {@link SubstitutionSnapshot} via an atomic swap,
+ * before being handed to every registered listener.
+ *
+ * Failed overrides are handled as per the {@link FailureMode} of the
+ * substitutor. If a reload fails (for example due to a partially written
+ * file, or a failed override when failing fast), the previous snapshot
+ * remains current and the failure is made available via
+ * {@link #getLastFailure()}.
+ */
+public final class SubstitutionWatcher implements Closeable {
+
+    /**
+     * The substitutor used to load and substitute the configuration.
+     */
+    private final EnvironmentSubstitutor substitutor;
+
+    /**
+     * The path of the configuration, as provided to the substitutor.
+     */
+    private final String path;
+
+    /**
+     * The file name of the configuration, within the watched directory.
+     */
+    private final Path file;
+
+    /**
+     * The key of the directory containing the configuration.
+     */
+    private final WatchKey key;
+
+    /**
+     * The names of source files within each watched directory, where an
+     * empty set means every file in the directory is a source.
+     */
+    private final Map<WatchKey, Set<Path>> sources;
+
+    /**
+     * Whether any source changed since the plan was last recompiled.
+     */
+    private boolean stale;
+
+    /**
+     * The debounce period, in nanoseconds.
+     */
+    private final long debounce;
+
+    /**
+     * The service used to watch the configuration directory.
+     */
+    private final WatchService service;
+
+    /**
+     * The background thread processing changes.
+     */
+    private final Thread thread;
+
+    /**
+     * The listeners to notify of new snapshots.
+     */
+    private final List<SubstitutionListener> listeners;
+
+    /**
+     * The current snapshot of the configuration.
+     */
+    private final AtomicReference<SubstitutionSnapshot> snapshot;
+
+    /**
+     * The most recent failure to reload, if any.
+     */
+    private final AtomicReference<Exception> failure;
+
+    /**
+     * Create a new instance, loading the initial snapshot.
+     *
+     * @param substitutor
+     *      the substitutor used to load and substitute the configuration.
+     * @param path
+     *      the path of the configuration file.
+     * @param debounce
+     *      the period the file must be quiet before reloading.
+     * @param unit
+     *      the unit of the debounce period.
+     * @throws IOException
+     *      if the configuration cannot be loaded or watched.
+     */
+    SubstitutionWatcher(EnvironmentSubstitutor substitutor, String path, long debounce, TimeUnit unit) throws IOException {
+        final Path absolute = Paths.get(path).toAbsolutePath();
+        final Path directory = absolute.getParent();
+
+        this.substitutor = Objects.requireNonNull(substitutor);
+        this.path = path;
+        this.file = absolute.getFileName();
+        this.debounce = unit.toNanos(debounce);
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.failure = new AtomicReference<>();
+
+        // load the initial snapshot before watching anything
+        this.snapshot = new AtomicReference<>(substitutor.snapshot(null, substitutor.base(path)));
+
+        // source files are watched via their directory, as they may be replaced
+        final Map<Path, Set<Path>> directories = new HashMap<>();
+        for (Path source : substitutor.watched()) {
+            final Path target = source.toAbsolutePath();
+            if (Files.isDirectory(target)) {
+                directories.put(target, Collections.<Path>emptySet());
+                continue;
+            }
+
+            // sources in missing directories can't be watched
+            final Path parent = target.getParent();
+            if (parent == null || !Files.isDirectory(parent)) {
+                continue;
+            }
+
+            final Set<Path> names = directories.get(parent);
+            if (names == null) {
+                directories.put(parent, new HashSet<>(Collections.singleton(target.getFileName())));
+            } else if (!names.isEmpty()) {
+                names.add(target.getFileName());
+            }
+        }
+
+        this.service = directory.getFileSystem().newWatchService();
+        this.sources = new HashMap<>();
+        try {
+            this.key = register(directory, this.service);
+            for (Map.Entry<Path, Set<Path>> entry : directories.entrySet()) {
+                this.sources.put(register(entry.getKey(), this.service), entry.getValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            this.service.close();
+            throw e;
+        }
+
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SubstitutionWatcher.this.watch();
+            }
+        }, "environment-substitutor-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Retrieves the current snapshot of the configuration.
+     *
+     * @return
+     *      the most recently published {@link SubstitutionSnapshot}.
+     */
+    public SubstitutionSnapshot getSnapshot() {
+        return this.snapshot.get();
+    }
+
+    /**
+     * Retrieves the most recent failure to reload the configuration.
+     *
+     * @return
+     *      the most recent failure, or null if none has occurred.
+     */
+    public Exception getLastFailure() {
+        return this.failure.get();
+    }
+
+    /**
+     * Registers a listener to be notified of new snapshots.
+     *
+     * @param listener
+     *      the {@link SubstitutionListener} to register.
+     */
+    public void addListener(SubstitutionListener listener) {
+        this.listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener
+     *      the {@link SubstitutionListener} to remove.
+     */
+    public void removeListener(SubstitutionListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        this.service.close();
+        this.thread.interrupt();
+    }
+
+    /**
+     * Processes changes to the configuration until closed.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                // block until the configuration changes
+                if (!this.drain(this.service.take())) {
+                    continue;
+                }
+
+                // wait for the configuration to be quiet
+                WatchKey key;
+                while ((key = this.service.poll(this.debounce, TimeUnit.NANOSECONDS)) != null) {
+                    this.drain(key);
+                }
+
+                this.reload();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed, so we're done
+        }
+    }
+
+    /**
+     * Drains all events from a key, resetting it for further events.
+     *
+     * Any event relating to a source marks the plan as stale, so it's
+     * recompiled on the next reload.
+     *
+     * @param key
+     *      the key to drain events from.
+     * @return
+     *      true if any event relates to the configuration file or a source.
+     */
+    private boolean drain(WatchKey key) {
+        final Set<Path> names = this.sources.get(key);
+
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // overflows may have lost events for any file
+            final boolean overflow = event.kind() == StandardWatchEventKinds.OVERFLOW;
+
+            if (key.equals(this.key) && (overflow || this.file.equals(event.context()))) {
+                changed = true;
+            }
+            if (names != null && (overflow || names.isEmpty() || names.contains(event.context()))) {
+                this.stale = changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Registers a directory with a watch service, for any change to a file.
+     *
+     * @param directory
+     *      the directory to watch.
+     * @param service
+     *      the service to register the directory with.
+     * @return
+     *      the {@link WatchKey} of the directory.
+     * @throws IOException
+     *      if the directory cannot be watched.
+     */
+    private static WatchKey register(Path directory, WatchService service) throws IOException {
+        return directory.register(service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Reloads the configuration and publishes a new snapshot.
+     */
+    private void reload() {
+        final SubstitutionSnapshot previous = this.snapshot.get();
+        final SubstitutionSnapshot current;
+
+        try {
+            // changed sources may have changed the overrides
+            boolean recompiled = false;
+            if (this.stale) {
+                recompiled = this.substitutor.recompile();
+                this.stale = false;
+            }
+
+            final ObjectNode base = this.substitutor.base(this.path);
+
+            // nothing changed, so there's nothing to publish
+            if (!recompiled && base.equals(previous.base())) {
+                return;
+            }
+
+            // only re-apply overrides to the subtrees which changed
+            current = this.substitutor.snapshot(previous, base);
+        } catch (IOException | RuntimeException e) {
+            this.failure.set(e);
+            return;
+        }
+
+        this.snapshot.set(current);
+
+        for (SubstitutionListener listener : this.listeners) {
+            try {
+                listener.onSubstitution(current);
+            } catch (RuntimeException e) {
+                this.failure.set(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * A parser of override values, which avoids Jackson where possible.
+ *
+ * Values are sniffed to classify them as null, a boolean, an integer, a
+ * decimal, or a bare string, without throwing or allocating beyond the
+ * resulting node. Only values starting with "{", "[" or "\"" are handed
+ * to the underlying {@link ObjectMapper}, and any failure to parse them is
+ * reported through the {@link Result} rather than an exception.
+ *
+ * When the type of the target is known ahead of time, values can instead be
+ * coerced directly to that type via {@link #coerce(String, ValueType)}.
+ */
+final class ValueParser {
+
+    /**
+     * The mapper used to parse structured values.
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * Create a new instance.
+     *
+     * @param mapper
+     *      the {@link ObjectMapper} used to parse structured values.
+     */
+    ValueParser(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Parses an override value into a node.
+     *
+     * @param value
+     *      the raw value to parse.
+     * @return
+     *      a {@link Result} containing the parsed node.
+     */
+    Result parse(String value) {
+        final int length = value.length();
+
+        // empty values are just empty strings
+        if (length == 0) {
+            return Result.success(TextNode.valueOf(value));
+        }
+
+        switch (value.charAt(0)) {
+            // structured values go to Jackson
+            case '{':
+            case '[':
+            case '"':
+                return this.structured(value);
+
+            // possible null literals
+            case '~':
+            case 'n':
+            case 'N':
+                if (isNull(value)) {
+                    return Result.success(NullNode.getInstance());
+                }
+                break;
+
+            // possible boolean literals
+            case 't':
+            case 'T':
+            case 'f':
+            case 'F':
+                final JsonNode bool = bool(value);
+                if (bool != null) {
+                    return Result.success(bool);
+                }
+                break;
+
+            // possible numeric literals
+            case '-':
+            case '+':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                final JsonNode number = number(value);
+                if (number != null) {
+                    return Result.success(number);
+                }
+                break;
+        }
+
+        // anything else is a bare string
+        return Result.success(TextNode.valueOf(value));
+    }
+
+    /**
+     * Coerces an override value directly into a node of a known type.
+     *
+     * Strings are always used verbatim, whereas other types must match the
+     * same literal grammar used by {@link #parse(String)}.
+     *
+     * @param value
+     *      the raw value to coerce.
+     * @param type
+     *      the type to coerce the value to.
+     * @return
+     *      a node of the requested type, or null if the value doesn't fit.
+     */
+    JsonNode coerce(String value, ValueType type) {
+        switch (type) {
+            case TEXT:
+                return TextNode.valueOf(value);
+
+            case BOOLEAN:
+                return value.isEmpty() ? null : bool(value);
+
+            case INTEGER:
+                final JsonNode integer = value.isEmpty() ? null : number(value);
+                return integer == null || !integer.isIntegralNumber() ? null : integer;
+
+            case DECIMAL:
+                return value.isEmpty() ? null : number(value);
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses a structured value via Jackson.
+     *
+     * On failure, the value is kept as a bare string alongside the reason.
+     *
+     * @param value
+     *      the raw value to parse.
+     * @return
+     *      a {@link Result} containing the parsed node.
+     */
+    private Result structured(String value) {
+        try {
+            final JsonNode node = this.mapper.readTree(value);
+            return node == null
+                ? Result.failure(TextNode.valueOf(value), "no content to parse")
+                : Result.success(node);
+        } catch (IOException e) {
+            return Result.failure(TextNode.valueOf(value), e.getMessage());
+        }
+    }
+
+    /**
+     * Determines whether a value is a null literal.
+     *
+     * @param value
+     *      the raw value to check.
+     * @return
+     *      true if the value represents null.
+     */
+    private static boolean isNull(String value) {
+        return value.equals("~")
+            || value.equals("null")
+            || value.equals("Null")
+            || value.equals("NULL");
+    }
+
+    /**
+     * Parses a boolean literal.
+     *
+     * @param value
+     *      the raw value to parse.
+     * @return
+     *      a boolean node, or null if the value is not a boolean.
+     */
+    private static JsonNode bool(String value) {
+        if (value.equals("true") || value.equals("True") || value.equals("TRUE")) {
+            return BooleanNode.TRUE;
+        }
+        if (value.equals("false") || value.equals("False") || value.equals("FALSE")) {
+            return BooleanNode.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a numeric value, following the JSON number grammar.
+     *
+     * Integers with leading zeros (such as "0123") are not treated as
+     * numbers, as they're more commonly identifiers than octal values.
+     *
+     * @param value
+     *      the raw value to parse.
+     * @return
+     *      a numeric node, or null if the value is not a number.
+     */
+    private static JsonNode number(String value) {
+        final int length = value.length();
+
+        int i = 0;
+        char c = value.charAt(0);
+
+        // optional leading sign
+        if (c == '-' || c == '+') {
+            if (++i == length) {
+                return null;
+            }
+        }
+
+        // integer component, without leading zeros
+        final int integral = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        if (i == integral || (value.charAt(integral) == '0' && i - integral > 1)) {
+            return null;
+        }
+
+        boolean decimal = false;
+
+        // optional fraction component
+        if (i < length && value.charAt(i) == '.') {
+            final int fraction = ++i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == fraction) {
+                return null;
+            }
+            decimal = true;
+        }
+
+        // optional exponent component
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            if (++i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            final int exponent = i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == exponent) {
+                return null;
+            }
+            decimal = true;
+        }
+
+        // trailing garbage means it's just a string
+        if (i != length) {
+            return null;
+        }
+
+        if (decimal) {
+            return DoubleNode.valueOf(Double.parseDouble(value));
+        }
+
+        // size integers to the smallest fitting node
+        final int digits = length - integral;
+        if (digits < 10) {
+            return IntNode.valueOf(Integer.parseInt(value));
+        }
+        if (digits < 19) {
+            final long parsed = Long.parseLong(value);
+            return parsed == (int) parsed
+                ? IntNode.valueOf((int) parsed)
+                : LongNode.valueOf(parsed);
+        }
+        final BigInteger parsed = new BigInteger(value);
+        return parsed.bitLength() < 64
+            ? LongNode.valueOf(parsed.longValue())
+            : BigIntegerNode.valueOf(parsed);
+    }
+
+    /**
+     * Determines whether a character is an ASCII digit.
+     *
+     * @param c
+     *      the character to check.
+     * @return
+     *      true if the character is a digit.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * The result of parsing a value.
+     *
+     * Results always contain a node; when parsing fails, the node is the raw
+     * value as a string and the reason for the failure is also available.
+     */
+    static final class Result {
+
+        /**
+         * The node parsed from the value.
+         */
+        private final JsonNode node;
+
+        /**
+         * The reason parsing failed, if it failed.
+         */
+        private final String error;
+
+        /**
+         * Create a new instance.
+         *
+         * @param node
+         *      the node parsed from the value.
+         * @param error
+         *      the reason parsing failed, if it failed.
+         */
+        private Result(JsonNode node, String error) {
+            this.node = node;
+            this.error = error;
+        }
+
+        /**
+         * Creates a successful result.
+         *
+         * @param node
+         *      the node parsed from the value.
+         * @return
+         *      a new {@link Result} instance.
+         */
+        static Result success(JsonNode node) {
+            return new Result(node, null);
+        }
+
+        /**
+         * Creates a failed result.
+         *
+         * @param fallback
+         *      the node to use in place of the value.
+         * @param error
+         *      the reason parsing failed.
+         * @return
+         *      a new {@link Result} instance.
+         */
+        static Result failure(JsonNode fallback, String error) {
+            return new Result(fallback, error);
+        }
+
+        /**
+         * Retrieves the node parsed from the value.
+         *
+         * @return
+         *      the parsed node, or the fallback on failure.
+         */
+        JsonNode getNode() {
+            return this.node;
+        }
+
+        /**
+         * Retrieves the reason parsing failed.
+         *
+         * @return
+         *      the failure reason, or null on success.
+         */
+        String getError() {
+            return this.error;
+        }
+
+        /**
+         * Determines whether parsing failed.
+         *
+         * @return
+         *      true if the value could not be parsed.
+         */
+        boolean isFailure() {
+            return this.error != null;
+        }
+    }
+}
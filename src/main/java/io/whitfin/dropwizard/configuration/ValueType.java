@@ -0,0 +1,124 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * The type of value expected at the target of an override.
+ *
+ * Types are derived from the existing value being replaced, or from the
+ * declared type of a property when a configuration class is known, and are
+ * used to coerce raw values directly rather than guessing at their type.
+ */
+enum ValueType {
+    /**
+     * A string; raw values are always used verbatim.
+     */
+    TEXT,
+
+    /**
+     * An integral number.
+     */
+    INTEGER,
+
+    /**
+     * A floating point number.
+     */
+    DECIMAL,
+
+    /**
+     * A boolean.
+     */
+    BOOLEAN,
+
+    /**
+     * Anything at all, so the value type is inferred from the raw value.
+     */
+    ANY;
+
+    /**
+     * Derives the type of an existing node.
+     *
+     * @param node
+     *      the existing node, or null if missing.
+     * @return
+     *      the {@link ValueType} of the node.
+     */
+    static ValueType of(JsonNode node) {
+        if (node == null) {
+            return ANY;
+        }
+        // a single virtual call, as this runs for every override applied
+        switch (node.getNodeType()) {
+            case STRING:
+                return TEXT;
+            case NUMBER:
+                return node.isIntegralNumber() ? INTEGER : DECIMAL;
+            case BOOLEAN:
+                return BOOLEAN;
+            default:
+                return ANY;
+        }
+    }
+
+    /**
+     * Derives the type of an existing scalar token.
+     *
+     * @param token
+     *      the token of the existing value.
+     * @return
+     *      the {@link ValueType} of the token.
+     */
+    static ValueType of(JsonToken token) {
+        switch (token) {
+            case VALUE_STRING:
+                return TEXT;
+            case VALUE_NUMBER_INT:
+                return INTEGER;
+            case VALUE_NUMBER_FLOAT:
+                return DECIMAL;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return BOOLEAN;
+            default:
+                return ANY;
+        }
+    }
+
+    /**
+     * Derives the type of a declared Java type.
+     *
+     * Types which are bound from more than one kind of value (such as
+     * durations, which accept both numbers and strings) are treated as
+     * {@link #ANY}.
+     *
+     * @param type
+     *      the declared Java type.
+     * @return
+     *      the {@link ValueType} of the Java type.
+     */
+    static ValueType of(JavaType type) {
+        final Class<?> raw = type.getRawClass();
+
+        if (raw == String.class || raw == char.class || raw == Character.class || type.isEnumType()) {
+            return TEXT;
+        }
+        if (raw == int.class || raw == long.class || raw == short.class || raw == byte.class
+                || raw == Integer.class || raw == Long.class || raw == Short.class || raw == Byte.class
+                || raw == BigInteger.class) {
+            return INTEGER;
+        }
+        if (raw == double.class || raw == float.class
+                || raw == Double.class || raw == Float.class || raw == BigDecimal.class) {
+            return DECIMAL;
+        }
+        if (raw == boolean.class || raw == Boolean.class) {
+            return BOOLEAN;
+        }
+        return ANY;
+    }
+}
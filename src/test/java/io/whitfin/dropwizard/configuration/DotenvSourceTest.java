@@ -0,0 +1,184 @@
+package io.whitfin.dropwizard.configuration;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DotenvSourceTest {
+
+    private static final NamespaceTrie NAMESPACES = NamespaceTrie.of("APP");
+
+    @Test
+    public void testAssignments() throws IOException {
+        final Path file = file(
+            "APP_A=1\n" +
+            "APP_B = 2 \n" +
+            "APP_C=\n" +
+            "APP_D=a=b\n" +
+            "APP_E=x\r\n" +
+            "APP_F=last");
+
+        Assert.assertEquals(read(file), entries("APP_A=1", "APP_B=2", "APP_C=", "APP_D=a=b", "APP_E=x", "APP_F=last"));
+    }
+
+    @Test
+    public void testIgnoredLines() throws IOException {
+        final Path file = file(
+            "\n" +
+            "   \n" +
+            "# APP_A=1\n" +
+            "  # APP_B=2\n" +
+            "APP_C\n" +
+            "OTHER_D=4\n" +
+            "APP=5\n" +
+            "APP_=6\n" +
+            "APPLICATION_G=7\n" +
+            "APP_H=8\n");
+
+        Assert.assertEquals(read(file), entries("APP_H=8"));
+    }
+
+    @Test
+    public void testExports() throws IOException {
+        final Path file = file(
+            "export APP_A=1\n" +
+            "export\tAPP_B=2\n" +
+            "export   APP_C=3\n" +
+            "exportAPP_D=4\n" +
+            "APP_EXPORT=5\n");
+
+        Assert.assertEquals(read(file), entries("APP_A=1", "APP_B=2", "APP_C=3", "APP_EXPORT=5"));
+    }
+
+    @Test
+    public void testQuoting() throws IOException {
+        final Path file = file(
+            "APP_A='single # \\n \"literal\"'\n" +
+            "APP_B=\"double \\\"escaped\\\" \\\\ \\n\\t\\r \\x\"\n" +
+            "APP_C=\"unclosed\n" +
+            "APP_D='unclosed\n" +
+            "APP_E=\"trailing\" # comment\n" +
+            "APP_F=''\n");
+
+        Assert.assertEquals(read(file), entries(
+            "APP_A=single # \\n \"literal\"",
+            "APP_B=double \"escaped\" \\ \n\t\r \\x",
+            "APP_E=trailing",
+            "APP_F="));
+    }
+
+    @Test
+    public void testComments() throws IOException {
+        final Path file = file(
+            "APP_A=value # comment\n" +
+            "APP_B=value\t# comment\n" +
+            "APP_C=value#not-a-comment\n" +
+            "APP_D=#not-a-comment\n" +
+            "APP_E= # comment\n");
+
+        Assert.assertEquals(read(file), entries("APP_A=value", "APP_B=value", "APP_C=value#not-a-comment", "APP_D=#not-a-comment", "APP_E="));
+    }
+
+    @Test
+    public void testUnicode() throws IOException {
+        final Path file = file("APP_A=caf\u00e9\nAPP_B='\u2603 # snow'\nAPP_C=plain\n");
+
+        Assert.assertEquals(read(file), entries("APP_A=caf\u00e9", "APP_B=\u2603 # snow", "APP_C=plain"));
+    }
+
+    @Test
+    public void testByteOrderMarksAreIgnored() throws IOException {
+        final Path file = file("\ufeffAPP_A=1\nAPP_B=\ufeff\n");
+
+        Assert.assertEquals(read(file), entries("APP_A=1", "APP_B=\ufeff"));
+        Assert.assertEquals(read(new DotenvSource(file, 0), NAMESPACES), entries("APP_A=1", "APP_B=\ufeff"));
+        Assert.assertEquals(read(file("\ufeff")), entries());
+        Assert.assertEquals(read(new DotenvSource(file("\ufeff"), 0), NAMESPACES), entries());
+    }
+
+    @Test
+    public void testEmptyAndMissingFiles() throws IOException {
+        final Path empty = file("");
+
+        Assert.assertEquals(read(empty), entries());
+        Assert.assertEquals(read(new DotenvSource(empty, 0), NAMESPACES), entries());
+        Assert.assertEquals(read(empty.resolveSibling(empty.getFileName() + ".missing")), entries());
+    }
+
+    @Test
+    public void testMappedFilesMatchSerialParsing() throws IOException {
+        final StringBuilder content = new StringBuilder("\ufeff");
+        for (int i = 0; i < 40000; i++) {
+            switch (i % 8) {
+                case 0:
+                    content.append("# comment ").append(i).append('\n');
+                    break;
+                case 1:
+                    content.append("export APP_KEY_").append(i % 1000).append("='").append(i).append("'\n");
+                    break;
+                case 2:
+                    content.append("APP_UNICODE_").append(i % 1000).append("=caf\u00e9 ").append(i).append(" # comment\n");
+                    break;
+                case 3:
+                    content.append("OTHER_KEY_").append(i).append('=').append(i).append('\n');
+                    break;
+                case 4:
+                    content.append("APP_QUOTED_").append(i % 1000).append("=\"a\\tb ").append(i).append("\"\r\n");
+                    break;
+                default:
+                    content.append("APP_KEY_").append(i % 1000).append('=').append(i).append('\n');
+            }
+        }
+        content.append("APP_FINAL=no-newline");
+
+        final Path file = file(content.toString());
+        Assert.assertTrue(Files.size(file) > 4 * 128 * 1024);
+
+        final List<String> serial = read(new DotenvSource(file, Long.MAX_VALUE), NAMESPACES);
+        final List<String> mapped = read(new DotenvSource(file, 0), NAMESPACES);
+
+        Assert.assertEquals(serial.size(), 30001);
+        Assert.assertEquals(serial.get(0), "APP_KEY_1=1");
+        Assert.assertEquals(serial.get(serial.size() - 1), "APP_FINAL=no-newline");
+        Assert.assertEquals(mapped, serial);
+    }
+
+    @Test
+    public void testMultipleNamespacesInOneScan() throws IOException {
+        final Path file = file("APP_A=1\nOTHER_B=2\nAPP_DB_C=3\nNONE_D=4\n");
+
+        final NamespaceTrie namespaces = new NamespaceTrie(Arrays.asList("APP", "OTHER"));
+        Assert.assertEquals(read(new DotenvSource(file), namespaces), entries("APP_A=1", "OTHER_B=2", "APP_DB_C=3"));
+    }
+
+    private static List<String> read(Path file) throws IOException {
+        return read(new DotenvSource(file), NAMESPACES);
+    }
+
+    private static List<String> read(DotenvSource source, NamespaceTrie namespaces) throws IOException {
+        final List<String> entries = new ArrayList<>();
+        for (OverrideEntry entry : source.read(namespaces)) {
+            entries.add(entry.toString());
+        }
+        return entries;
+    }
+
+    private static List<String> entries(String... entries) {
+        return Arrays.asList(entries);
+    }
+
+    private static Path file(String content) throws IOException {
+        final File file = File.createTempFile("overrides", ".env");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.toPath();
+    }
+}
@@ -0,0 +1,276 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class InterpolatorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+    @Test
+    public void testVariables() {
+        final Map<String, String> variables = env("HOST", "localhost", "PORT", "8080");
+
+        Assert.assertEquals(interpolate(variables, "${HOST}"), "localhost");
+        Assert.assertEquals(interpolate(variables, "http://${HOST}:${PORT}/"), "http://localhost:8080/");
+        Assert.assertEquals(interpolate(variables, "$HOST and $ and {HOST}"), "$HOST and $ and {HOST}");
+        Assert.assertEquals(interpolate(variables, "${HOST"), "${HOST");
+        Assert.assertEquals(interpolate(variables, "trailing $"), "trailing $");
+    }
+
+    @Test
+    public void testUnchangedStringsAreReturnedAsIs() {
+        final Interpolator interpolator = interpolator(env("EMPTY", ""), collector(FailureMode.LENIENT), SubstitutionLimits.defaults());
+
+        final String plain = "no placeholders";
+        final String unterminated = "${EMPTY";
+
+        Assert.assertSame(interpolator.interpolate(plain), plain);
+        Assert.assertSame(interpolator.interpolate(unterminated), unterminated);
+        Assert.assertEquals(interpolator.interpolate("${EMPTY}"), "");
+    }
+
+    @Test
+    public void testDefaults() {
+        final Map<String, String> variables = env("HOST", "localhost", "EMPTY", "", "FALLBACK", "other");
+
+        Assert.assertEquals(interpolate(variables, "${PORT:-5432}"), "5432");
+        Assert.assertEquals(interpolate(variables, "${HOST:-remote}"), "localhost");
+        Assert.assertEquals(interpolate(variables, "${EMPTY:-unused}"), "");
+        Assert.assertEquals(interpolate(variables, "${PORT:-}"), "");
+        Assert.assertEquals(interpolate(variables, "${PORT:-${FALLBACK}}"), "other");
+        Assert.assertEquals(interpolate(variables, "${PORT:-a:-b}"), "a:-b");
+        Assert.assertEquals(interpolate(variables, "${PORT:-${MISSING:-deep}}"), "deep");
+    }
+
+    @Test
+    public void testEscapes() {
+        final Map<String, String> variables = env("HOST", "localhost", "LITERAL", "$${HOST}");
+
+        Assert.assertEquals(interpolate(variables, "$${HOST}"), "${HOST}");
+        Assert.assertEquals(interpolate(variables, "$${HOST} is ${HOST}"), "${HOST} is localhost");
+        Assert.assertEquals(interpolate(variables, "$$HOST"), "$$HOST");
+        Assert.assertEquals(interpolate(variables, "${LITERAL}"), "${HOST}");
+    }
+
+    @Test
+    public void testNestedPlaceholders() {
+        final Map<String, String> variables = env(
+            "TIER", "PROD",
+            "DB_PROD", "prod-db",
+            "URL", "jdbc://${DB_${TIER}}",
+            "INDIRECT", "${URL}");
+
+        Assert.assertEquals(interpolate(variables, "${DB_${TIER}}"), "prod-db");
+        Assert.assertEquals(interpolate(variables, "${INDIRECT}"), "jdbc://prod-db");
+        Assert.assertEquals(interpolate(variables, "${DB_${STAGE:-PROD}}"), "prod-db");
+        Assert.assertEquals(interpolate(variables, "${DB_${OTHER:-TEST}:-none}"), "none");
+    }
+
+    @Test
+    public void testVariablesAreMemoized() {
+        final Map<String, String> variables = new HashMap<String, String>() {
+            private int lookups;
+
+            @Override
+            public String get(Object key) {
+                Assert.assertEquals(++this.lookups, 1, "Expected a single lookup");
+                return "value";
+            }
+        };
+
+        Assert.assertEquals(interpolate(variables, "${A} ${A} ${A}"), "value value value");
+    }
+
+    @Test
+    public void testDirectCycles() {
+        final SubstitutionReport.Collector collector = collector(FailureMode.LENIENT);
+        final Interpolator interpolator = interpolator(env("SELF", "a${SELF}"), collector, SubstitutionLimits.defaults());
+
+        Assert.assertEquals(interpolator.interpolate("${SELF}"), "a${SELF}");
+        assertFailures(collector, SubstitutionReport.Reason.CYCLIC_VARIABLE, "SELF");
+    }
+
+    @Test
+    public void testIndirectCycles() {
+        final SubstitutionReport.Collector collector = collector(FailureMode.LENIENT);
+        final Interpolator interpolator = interpolator(env("A", "${B}", "B", "${C}", "C", "x${A}"), collector, SubstitutionLimits.defaults());
+
+        Assert.assertEquals(interpolator.interpolate("${A}"), "x${A}");
+        assertFailures(collector, SubstitutionReport.Reason.CYCLIC_VARIABLE, "A");
+    }
+
+    @DataProvider
+    public Object[][] modes() {
+        return new Object[][] {
+            { FailureMode.LENIENT },
+            { FailureMode.WARN },
+            { FailureMode.FAIL_FAST }
+        };
+    }
+
+    @Test(dataProvider = "modes")
+    public void testUndefinedVariablesAreRecorded(FailureMode mode) {
+        final SubstitutionReport.Collector collector = collector(mode);
+        final Interpolator interpolator = interpolator(env("HOST", "localhost"), collector, SubstitutionLimits.defaults());
+
+        Assert.assertEquals(interpolator.interpolate("${HOST}:${PORT}"), "localhost:${PORT}");
+        assertFailures(collector, SubstitutionReport.Reason.UNDEFINED_VARIABLE, "PORT");
+        Assert.assertEquals(collector.halted(), mode == FailureMode.FAIL_FAST);
+    }
+
+    @Test(dataProvider = "modes")
+    public void testUndefinedVariablesWhenSubstituting(FailureMode mode) throws IOException {
+        final EnvironmentSubstitutor substitutor = builder("name: ${NAME}\nport: ${PORT:-1}\n", mode).build();
+
+        if (mode == FailureMode.FAIL_FAST) {
+            try {
+                substitutor.read("config.yml");
+                Assert.fail("Expected substitution to fail fast");
+            } catch (SubstitutionException e) {
+                Assert.assertEquals(e.getReport().getFailures().get(0).getReason(), SubstitutionReport.Reason.UNDEFINED_VARIABLE);
+            }
+            return;
+        }
+
+        final ObjectNode config = substitutor.read("config.yml");
+
+        Assert.assertEquals(config.get("name").asText(), "${NAME}");
+        Assert.assertEquals(config.get("port").asText(), "1");
+
+        final List<SubstitutionReport.Failure> failures = substitutor.getReport().getFailures();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(failures.get(0).getReason(), SubstitutionReport.Reason.UNDEFINED_VARIABLE);
+        Assert.assertEquals(failures.get(0).getPath(), "name");
+    }
+
+    @Test
+    public void testOutputIsLimitedInBytes() throws SubstitutionException {
+        final SubstitutionLimits limits = SubstitutionLimits.builder().maxOutputBytes(8).build();
+
+        // 4 characters, but 8 bytes of UTF-8
+        final Interpolator fits = interpolator(env("V", "\u00e9\u00e9\u00e9\u00e9"), collector(FailureMode.LENIENT), limits);
+        Assert.assertEquals(fits.interpolate("${V}"), "\u00e9\u00e9\u00e9\u00e9");
+        fits.check();
+
+        // 5 characters, but 9 bytes of UTF-8
+        final Interpolator exceeds = interpolator(env("V", "\u00e9\u00e9\u00e9\u00e9"), collector(FailureMode.LENIENT), limits);
+        Assert.assertEquals(exceeds.interpolate("a${V}"), "a${V}");
+
+        try {
+            exceeds.check();
+            Assert.fail("Expected the output limit to be violated");
+        } catch (SubstitutionException e) {
+            final SubstitutionException.Violation violation = e.getViolations().get(0);
+            Assert.assertEquals(violation.getLimit(), SubstitutionLimits.Limit.OUTPUT_BYTES);
+            Assert.assertEquals(violation.getVariable(), "V");
+            Assert.assertEquals(violation.getActual(), 9);
+            Assert.assertEquals(violation.getMaximum(), 8);
+        }
+    }
+
+    @Test
+    public void testExponentialExpansionsAreStopped() {
+        final SubstitutionLimits limits = SubstitutionLimits.builder().maxOutputBytes(1024).build();
+        final Map<String, String> variables = env("A0", "xx");
+        for (int i = 1; i < 64; i++) {
+            variables.put("A" + i, "${A" + (i - 1) + "}${A" + (i - 1) + "}");
+        }
+
+        final Interpolator interpolator = interpolator(variables, collector(FailureMode.LENIENT), limits);
+        Assert.assertEquals(interpolator.interpolate("${A63}"), "${A63}");
+        Assert.assertEquals(interpolator.interpolate("${A0}"), "${A0}");
+
+        try {
+            interpolator.check();
+            Assert.fail("Expected the output limit to be violated");
+        } catch (SubstitutionException e) {
+            Assert.assertEquals(e.getViolations().size(), 1);
+            Assert.assertTrue(e.getViolations().get(0).getActual() > 1024);
+        }
+    }
+
+    @Test
+    public void testMeasuringUtf8() {
+        Assert.assertEquals(Interpolator.utf8Length(""), 0);
+        Assert.assertEquals(Interpolator.utf8Length("ascii"), 5);
+        Assert.assertEquals(Interpolator.utf8Length("caf\u00e9"), 5);
+        Assert.assertEquals(Interpolator.utf8Length("\u2603"), 3);
+        Assert.assertEquals(Interpolator.utf8Length("\ud83d\ude00"), 4);
+        Assert.assertEquals(Interpolator.utf8Length("caf\u00e9 \u2603 \ud83d\ude00"),
+            "caf\u00e9 \u2603 \ud83d\ude00".getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void testTreesAreInterpolated() throws IOException {
+        final ObjectNode config = builder("a: ${HOST}\nb: [x, '${HOST}', 1]\nc: { d: '$${HOST}' }\n", FailureMode.FAIL_FAST)
+            .environment(env("APP_E", "${HOST}:${PORT:-80}"))
+            .build()
+            .read("config.yml");
+
+        Assert.assertEquals(config.get("a").asText(), "localhost");
+        Assert.assertEquals(config.get("b").get(1).asText(), "localhost");
+        Assert.assertEquals(config.get("b").get(2).asInt(), 1);
+        Assert.assertEquals(config.get("c").get("d").asText(), "${HOST}");
+        Assert.assertEquals(config.get("e").asText(), "localhost:80");
+    }
+
+    private static String interpolate(Map<String, String> variables, String text) {
+        final SubstitutionReport.Collector collector = collector(FailureMode.LENIENT);
+        final String interpolated = interpolator(variables, collector, SubstitutionLimits.defaults()).interpolate(text);
+        Assert.assertTrue(collector.report().isEmpty(), text);
+        return interpolated;
+    }
+
+    private static void assertFailures(SubstitutionReport.Collector collector, SubstitutionReport.Reason reason, String variable) {
+        final List<SubstitutionReport.Failure> failures = collector.report().getFailures();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(failures.get(0).getReason(), reason);
+        Assert.assertEquals(failures.get(0).getVariable(), variable);
+    }
+
+    private static Interpolator interpolator(Map<String, String> variables, SubstitutionReport.Collector collector, SubstitutionLimits limits) {
+        return new Interpolator(variables, collector, limits);
+    }
+
+    private static SubstitutionReport.Collector collector(FailureMode mode) {
+        return new SubstitutionReport.Collector(mode);
+    }
+
+    private static EnvironmentSubstitutor.Builder builder(final String yaml, FailureMode mode) {
+        final ConfigurationSourceProvider source = new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        return EnvironmentSubstitutor
+            .builder("APP", source)
+            .mapper(MAPPER)
+            .environment(env())
+            .interpolation(env("HOST", "localhost"))
+            .failureMode(mode);
+    }
+
+    private static Map<String, String> env(String... pairs) {
+        final Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            environment.put(pairs[i], pairs[i + 1]);
+        }
+        return environment;
+    }
+}
@@ -0,0 +1,143 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class KeyIndexTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+    @Test
+    public void testFoldingPlainNames() {
+        Assert.assertEquals(KeyIndex.fold("maxThreads"), "maxthreads");
+        Assert.assertEquals(KeyIndex.fold("max-threads"), "maxthreads");
+        Assert.assertEquals(KeyIndex.fold("max_threads"), "maxthreads");
+        Assert.assertEquals(KeyIndex.fold("MAX_THREADS"), "maxthreads");
+        Assert.assertEquals(KeyIndex.fold("-_-"), "");
+    }
+
+    @Test
+    public void testFoldingDottedNames() {
+        Assert.assertEquals(KeyIndex.fold("io.Dropwizard"), "io.dropwizard");
+        Assert.assertEquals(KeyIndex.fold("io.my_app"), "io.my_app");
+        Assert.assertEquals(KeyIndex.fold("io.my-app"), "io.my-app");
+        Assert.assertEquals(KeyIndex.fold("IO.MY_APP"), "io.my_app");
+        Assert.assertNotEquals(KeyIndex.fold("io.myApp"), KeyIndex.fold("io.my_app"));
+    }
+
+    @Test
+    public void testFoldedNamesAreNotCopied() {
+        final String folded = "maxthreads";
+        Assert.assertSame(KeyIndex.fold(folded), folded);
+
+        final String dotted = "io.my_app";
+        Assert.assertSame(KeyIndex.fold(dotted), dotted);
+    }
+
+    @Test
+    public void testResolvingDashedAndCamelCaseFields() throws IOException {
+        final ObjectNode node = (ObjectNode) MAPPER.readTree("maxThreads: 1\nmin-threads: 2\nidle_timeout: 3\n");
+        final KeyIndex index = new KeyIndex();
+
+        Assert.assertEquals(index.resolve(node, "maxthreads"), "maxThreads");
+        Assert.assertEquals(index.resolve(node, "max-threads"), "maxThreads");
+        Assert.assertEquals(index.resolve(node, "minthreads"), "min-threads");
+        Assert.assertEquals(index.resolve(node, "min_threads"), "min-threads");
+        Assert.assertEquals(index.resolve(node, "idleTimeout"), "idle_timeout");
+        Assert.assertEquals(index.resolve(node, "other"), "other");
+    }
+
+    @Test
+    public void testExactMatchesWinOverFoldedMatches() throws IOException {
+        final ObjectNode node = (ObjectNode) MAPPER.readTree("max-threads: 1\nmaxthreads: 2\n");
+        final KeyIndex index = new KeyIndex();
+
+        Assert.assertEquals(index.resolve(node, "max_threads"), "maxthreads");
+        Assert.assertEquals(index.resolve(node, "max-threads"), "max-threads");
+    }
+
+    @Test
+    public void testResolvingLoggerNames() throws IOException {
+        final ObjectNode node = (ObjectNode) MAPPER.readTree("io.myApp: INFO\nio.my_app: DEBUG\nIO.Dropwizard: WARN\n");
+        final KeyIndex index = new KeyIndex();
+
+        Assert.assertEquals(index.resolve(node, "io.myapp"), "io.myApp");
+        Assert.assertEquals(index.resolve(node, "io.my_app"), "io.my_app");
+        Assert.assertEquals(index.resolve(node, "io.dropwizard"), "IO.Dropwizard");
+        Assert.assertEquals(index.resolve(node, "io.my-app"), "io.my-app");
+    }
+
+    @Test
+    public void testSelectingElementsLoosely() throws IOException {
+        final ArrayNode array = (ArrayNode) MAPPER.readTree("- { type-name: Primary }\n- { typeName: secondary }\n- { typeName: io.My_App }\n");
+        final KeyIndex index = new KeyIndex();
+
+        Assert.assertEquals(index.element(array, "typename", "primary"), 0);
+        Assert.assertEquals(index.element(array, "type_name", "SECONDARY"), 1);
+        Assert.assertEquals(index.element(array, "typeName", "io.my_app"), 2);
+        Assert.assertEquals(index.element(array, "typeName", "io.myapp"), -1);
+    }
+
+    @Test
+    public void testOverridingLoggers() throws IOException {
+        final String yaml = "logging:\n  loggers:\n    io.myApp: INFO\n    io.my_app: INFO\n";
+        final ObjectNode config = substitute(yaml, env(
+            "APP_LOGGING_LOGGERS_IO____MY__APP", "DEBUG",
+            "APP_LOGGING_LOGGERS_IO____OTHER___APP", "WARN"));
+
+        final ObjectNode loggers = (ObjectNode) config.get("logging").get("loggers");
+        Assert.assertEquals(loggers.get("io.myApp").asText(), "INFO");
+        Assert.assertEquals(loggers.get("io.my_app").asText(), "DEBUG");
+        Assert.assertEquals(loggers.get("io.other-app").asText(), "WARN");
+        Assert.assertEquals(loggers.size(), 3);
+    }
+
+    @Test
+    public void testOverridingDashedAndCamelCaseFields() throws IOException {
+        final String yaml = "server:\n  maxThreads: 1\n  min-threads: 2\n";
+        final ObjectNode config = substitute(yaml, env(
+            "APP_SERVER_MAXTHREADS", "3",
+            "APP_SERVER_MIN__THREADS", "4"));
+
+        final ObjectNode server = (ObjectNode) config.get("server");
+        Assert.assertEquals(server.get("maxThreads").asInt(), 3);
+        Assert.assertEquals(server.get("min-threads").asInt(), 4);
+        Assert.assertEquals(server.size(), 2);
+    }
+
+    private static ObjectNode substitute(final String yaml, Map<String, String> environment) throws IOException {
+        final ConfigurationSourceProvider source = new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        return EnvironmentSubstitutor
+            .builder("APP", source)
+            .mapper(MAPPER)
+            .environment(environment)
+            .build()
+            .read("config.yml");
+    }
+
+    private static Map<String, String> env(String... pairs) {
+        final Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            environment.put(pairs[i], pairs[i + 1]);
+        }
+        return environment;
+    }
+}
@@ -0,0 +1,121 @@
+package io.whitfin.dropwizard.configuration;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class KeyLexerTest {
+
+    @Test
+    public void testSegmentsAreLowerCasedFields() {
+        Assert.assertEquals(lex("SERVER_MAXTHREADS"), Arrays.asList(
+            PathToken.field("server"),
+            PathToken.field("maxthreads")
+        ));
+    }
+
+    @Test
+    public void testUnderscoreEscapes() {
+        Assert.assertEquals(lex("MAX__SIZE"), Arrays.asList(PathToken.field("max_size")));
+        Assert.assertEquals(lex("HTTP___CLIENT"), Arrays.asList(PathToken.field("http-client")));
+        Assert.assertEquals(lex("LOGGERS_IO____DROPWIZARD"), Arrays.asList(
+            PathToken.field("loggers"),
+            PathToken.field("io.dropwizard")
+        ));
+    }
+
+    @Test
+    public void testKeyEscape() {
+        Assert.assertEquals(lex("DATABASES_NAME_____PRIMARY_URL"), Arrays.asList(
+            PathToken.field("databases"),
+            PathToken.key("name", "primary"),
+            PathToken.field("url")
+        ));
+
+        // only the first "=" splits the field from the value
+        Assert.assertEquals(lex("A_____B_____C"), Arrays.asList(PathToken.key("a", "b=c")));
+    }
+
+    @Test
+    public void testKeysRequireFieldAndValue() {
+        Assert.assertNull(lex("_____PRIMARY"));
+        Assert.assertNull(lex("NAME_____"));
+        Assert.assertNull(lex("SERVERS_NAME______URL"));
+    }
+
+    @Test
+    public void testInvalidKeys() {
+        Assert.assertNull(lex(""));
+        Assert.assertNull(lex("_SERVER"));
+        Assert.assertNull(lex("SERVER_"));
+        Assert.assertNull(lex("SERVER______PORT"));
+    }
+
+    @Test
+    public void testDigitSegmentsAreIndices() {
+        Assert.assertEquals(lex("SERVERS_0_PORT"), Arrays.asList(
+            PathToken.field("servers"),
+            PathToken.index(0),
+            PathToken.field("port")
+        ));
+
+        // leading zeros are read as decimal
+        Assert.assertEquals(lex("SERVERS_007"), Arrays.asList(
+            PathToken.field("servers"),
+            PathToken.index(7)
+        ));
+    }
+
+    @Test
+    public void testNonIndexDigitSegmentsAreFields() {
+        Assert.assertEquals(lex("2147483648"), Arrays.asList(PathToken.field("2147483648")));
+        Assert.assertEquals(lex("12345678901"), Arrays.asList(PathToken.field("12345678901")));
+        Assert.assertEquals(lex("1A"), Arrays.asList(PathToken.field("1a")));
+        Assert.assertEquals(lex("1__2"), Arrays.asList(PathToken.field("1_2")));
+    }
+
+    @Test
+    public void testWildcardSegments() {
+        final List<PathToken> tokens = new ArrayList<>();
+        Assert.assertTrue(new KeyLexer("star").lex("SERVERS_STAR_PORT", 0, 17, tokens));
+        Assert.assertEquals(tokens, Arrays.asList(
+            PathToken.field("servers"),
+            PathToken.wildcard(),
+            PathToken.field("port")
+        ));
+
+        // only whole segments match, and never without being enabled
+        Assert.assertEquals(lex("STARS_STAR"), Arrays.asList(
+            PathToken.field("stars"),
+            PathToken.field("star")
+        ));
+    }
+
+    @Test
+    public void testLexingRegion() {
+        final List<PathToken> tokens = new ArrayList<>();
+        Assert.assertTrue(new KeyLexer().lex("MY_APP_SERVER_PORT", 7, 18, tokens));
+        Assert.assertEquals(tokens, Arrays.asList(
+            PathToken.field("server"),
+            PathToken.field("port")
+        ));
+    }
+
+    @Test
+    public void testFieldTokensAreMemoized() {
+        final KeyLexer lexer = new KeyLexer();
+        final List<PathToken> tokens = new ArrayList<>();
+
+        Assert.assertTrue(lexer.lex("SERVER_PORT", 0, 11, tokens));
+        Assert.assertTrue(lexer.lex("SERVER_HOST", 0, 11, tokens));
+        Assert.assertSame(tokens.get(0), tokens.get(2));
+    }
+
+    private static List<PathToken> lex(String key) {
+        final List<PathToken> tokens = new ArrayList<>();
+        return new KeyLexer().lex(key, 0, key.length(), tokens) ? tokens : null;
+    }
+}
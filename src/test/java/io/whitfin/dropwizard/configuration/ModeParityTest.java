@@ -0,0 +1,124 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ModeParityTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+    @DataProvider
+    public Object[][] documents() {
+        return new Object[][] {
+            // implicit nulls
+            { "foo:\nbar: 1\n", env("APP_FOO", "hello") },
+            { "list:\n-\n- 2\n", env("APP_LIST_0", "hello") },
+            { "foo: # note\nbar: 1\n", env("APP_FOO", "hello") },
+            { "foo:", env("APP_FOO", "hello") },
+            { "a: {b: , c: 1}\n", env("APP_A_B", "hello") },
+
+            // scalars of every kind
+            { "server:\n  port: 8080 # http\n  host: 'localhost'\n", env("APP_SERVER_PORT", "9090", "APP_SERVER_HOST", "example.com") },
+            { "flag: false\nratio: 1.5\nname: \"x\"\n", env("APP_FLAG", "true", "APP_RATIO", "2", "APP_NAME", "with: colon") },
+            { "servers:\n  - port: 1\n  - port: 2\n", env("APP_SERVERS_1_PORT", "3") },
+            { "nothing: ~\n", env("APP_NOTHING", "[1, 2]") },
+
+            // structure which can't be spliced
+            { "server: {}\n", env("APP_SERVER_PORT", "1") },
+            { "text: |\n  block\n", env("APP_TEXT", "inline") },
+            { "base: &b 1\nref: *b\n", env("APP_REF", "2") },
+
+            // duplicate keys, where only the last survives
+            { "a: 1\na: 2\n", env("APP_A", "3", "APP_B", "4") },
+            { "server: {port: 1}\nserver: {host: x}\n", env("APP_SERVER_PORT", "2") },
+            { "foo_bar: 1\nfooBar: 2\n", env("APP_FOO_BAR", "3", "APP_BAZ", "4") }
+        };
+    }
+
+    @Test(dataProvider = "documents")
+    public void testModesProduceTheSameConfiguration(String yaml, Map<String, String> environment) throws IOException {
+        final JsonNode tree = read(yaml, environment, SubstitutionMode.TREE);
+
+        Assert.assertEquals(read(yaml, environment, SubstitutionMode.STREAMING), tree);
+        Assert.assertEquals(read(yaml, environment, SubstitutionMode.SPLICE), tree);
+    }
+
+    @Test
+    public void testImplicitNullsAreSpliced() throws IOException {
+        Assert.assertEquals(splice("foo:\nbar: 1\n", PathToken.field("foo")), "foo: \"hello\"\nbar: 1\n");
+        Assert.assertEquals(splice("list:\n-\n- 2\n", PathToken.field("list"), PathToken.index(0)), "list:\n- \"hello\"\n- 2\n");
+        Assert.assertEquals(splice("foo: # note\n", PathToken.field("foo")), "foo: \"hello\" # note\n");
+    }
+
+    @Test
+    public void testDuplicateKeysAreNotSpliced() throws IOException {
+        final OverrideTrie trie = new OverrideTrie();
+        trie.insert(Arrays.asList(PathToken.field("a")), OverrideValue.of("APP_A", TextNode.valueOf("3")));
+        trie.insert(Arrays.asList(PathToken.field("b")), OverrideValue.of("APP_B", TextNode.valueOf("4")));
+
+        final SubstitutionReport.Collector collector = new SubstitutionReport.Collector(FailureMode.LENIENT);
+        final byte[] bytes = "a: 1\na: 2\n".getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertNull(SplicingSubstitution.splice(bytes, MAPPER, trie, collector));
+    }
+
+    private static JsonNode read(String yaml, Map<String, String> environment, SubstitutionMode mode) throws IOException {
+        final EnvironmentSubstitutor substitutor = EnvironmentSubstitutor
+            .builder("APP", source(yaml))
+            .environment(environment)
+            .mode(mode)
+            .build();
+
+        try (final InputStream in = substitutor.open("config.yml")) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return MAPPER.readTree(out.toByteArray());
+        }
+    }
+
+    private static String splice(String yaml, PathToken... path) throws IOException {
+        final OverrideTrie trie = new OverrideTrie();
+        trie.insert(Arrays.asList(path), OverrideValue.of("APP", TextNode.valueOf("hello")));
+
+        final SubstitutionReport.Collector collector = new SubstitutionReport.Collector(FailureMode.LENIENT);
+        final byte[] spliced = SplicingSubstitution.splice(yaml.getBytes(StandardCharsets.UTF_8), MAPPER, trie, collector);
+
+        Assert.assertNotNull(spliced);
+        return new String(spliced, StandardCharsets.UTF_8);
+    }
+
+    private static ConfigurationSourceProvider source(final String yaml) {
+        return new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private static Map<String, String> env(String... pairs) {
+        final Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            environment.put(pairs[i], pairs[i + 1]);
+        }
+        return environment;
+    }
+}
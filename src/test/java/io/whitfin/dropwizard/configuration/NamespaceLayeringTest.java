@@ -0,0 +1,146 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class NamespaceLayeringTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+    private static final String YAML = "server:\n  port: 8080\n  host: localhost\n";
+
+    @Test
+    public void testLaterNamespacesWin() throws IOException {
+        final JsonNode server = read(YAML, env(
+            "PLATFORM_SERVER_PORT", "1",
+            "APP_SERVER_PORT", "2",
+            "POD_SERVER_PORT", "3",
+            "APP_SERVER_HOST", "app"
+        )).get("server");
+
+        Assert.assertEquals(server.get("port").asInt(), 3);
+        Assert.assertEquals(server.get("host").asText(), "app");
+    }
+
+    @Test
+    public void testLaterValuesReplaceEverythingBeneath() throws IOException {
+        final JsonNode server = read(YAML, env(
+            "APP_SERVER_HOST", "app",
+            "POD_SERVER", "{\"port\":3}"
+        )).get("server");
+
+        Assert.assertEquals(server.get("port").asInt(), 3);
+        Assert.assertNull(server.get("host"));
+    }
+
+    @Test
+    public void testLaterMergePatchesWin() throws IOException {
+        final JsonNode server = read(YAML, env(
+            "APP_SERVER_PORT", "2",
+            "POD__MERGE_PATCH", "{\"server\":{\"port\":3}}"
+        )).get("server");
+
+        Assert.assertEquals(server.get("port").asInt(), 3);
+    }
+
+    @Test
+    public void testJsonPatchesApplyAtTheirPrecedence() throws IOException {
+        final String patch = "[{\"op\":\"replace\",\"path\":\"/server/port\",\"value\":3}]";
+
+        Assert.assertEquals(read(YAML, env(
+            "APP_SERVER_PORT", "2",
+            "POD__JSON_PATCH", patch
+        )).get("server").get("port").asInt(), 3);
+
+        Assert.assertEquals(read(YAML, env(
+            "POD_SERVER_PORT", "4",
+            "POD__JSON_PATCH", patch
+        )).get("server").get("port").asInt(), 4);
+
+        Assert.assertEquals(read(YAML, env(
+            "APP__JSON_PATCH", patch,
+            "POD_SERVER_PORT", "4"
+        )).get("server").get("port").asInt(), 4);
+    }
+
+    @Test
+    public void testJsonPatchesSeeEarlierNamespaces() throws IOException {
+        final JsonNode server = read(YAML, env(
+            "PLATFORM_SERVER_PORT", "1",
+            "APP__JSON_PATCH", "[{\"op\":\"test\",\"path\":\"/server/port\",\"value\":1},"
+                + "{\"op\":\"replace\",\"path\":\"/server/host\",\"value\":\"patched\"}]"
+        )).get("server");
+
+        Assert.assertEquals(server.get("port").asInt(), 1);
+        Assert.assertEquals(server.get("host").asText(), "patched");
+    }
+
+    @Test
+    public void testStagesInterpolateOnce() throws IOException {
+        final ObjectNode config = builder("escaped: $${HOST}\nhost: ${HOST}\n", env(
+            "APP_NAME", "${HOST}",
+            "POD__JSON_PATCH", "[{\"op\":\"add\",\"path\":\"/patched\",\"value\":\"${HOST}\"}]"
+        )).interpolation(Collections.singletonMap("HOST", "db")).build().read("config.yml");
+
+        Assert.assertEquals(config.get("escaped").asText(), "${HOST}");
+        Assert.assertEquals(config.get("host").asText(), "db");
+        Assert.assertEquals(config.get("name").asText(), "db");
+        Assert.assertEquals(config.get("patched").asText(), "db");
+    }
+
+    @Test
+    public void testStagesReapply() throws IOException {
+        final EnvironmentSubstitutor substitutor = builder(YAML, env(
+            "APP_SERVER_PORT", "2",
+            "POD__JSON_PATCH", "[{\"op\":\"replace\",\"path\":\"/server/host\",\"value\":\"patched\"}]"
+        )).build();
+
+        final ObjectNode previousBase = (ObjectNode) MAPPER.readTree(YAML);
+        final SubstitutionSnapshot previous = substitutor.snapshot(null, previousBase);
+        final ObjectNode base = (ObjectNode) MAPPER.readTree(YAML + "extra: 1\n");
+
+        Assert.assertEquals(previous.configuration(), substitutor.read("config.yml"));
+        Assert.assertEquals(substitutor.snapshot(previous, base).configuration().get("server"), previous.configuration().get("server"));
+        Assert.assertEquals(previousBase.get("server").get("host").asText(), "localhost");
+    }
+
+    private static ObjectNode read(String yaml, Map<String, String> environment) throws IOException {
+        return builder(yaml, environment).build().read("config.yml");
+    }
+
+    private static EnvironmentSubstitutor.Builder builder(final String yaml, Map<String, String> environment) {
+        final ConfigurationSourceProvider source = new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        return EnvironmentSubstitutor
+            .builder("PLATFORM", source)
+            .namespace("APP")
+            .namespace("POD")
+            .environment(environment);
+    }
+
+    private static Map<String, String> env(String... pairs) {
+        final Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            environment.put(pairs[i], pairs[i + 1]);
+        }
+        return environment;
+    }
+}
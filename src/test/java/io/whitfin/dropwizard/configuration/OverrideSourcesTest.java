@@ -0,0 +1,163 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class OverrideSourcesTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+    @Test
+    public void testLaterSourcesTakePrecedence() throws IOException {
+        final Map<String, String> merged = merge(
+            OverrideSources.environment(env("APP_A", "1", "APP_B", "1", "OTHER_A", "1")),
+            OverrideSources.properties(props("app.a", "2", "app.c", "2")),
+            OverrideSources.environment(env("APP_C", "3")));
+
+        Assert.assertEquals(merged, env("APP_A", "2", "APP_B", "1", "APP_C", "3"));
+        Assert.assertEquals(merged.keySet().toString(), "[APP_A, APP_B, APP_C]");
+    }
+
+    @Test
+    public void testDuplicateKeysWithinASourceTakeTheLast() throws IOException {
+        final OverrideSource custom = new OverrideSource() {
+            @Override
+            public List<OverrideEntry> read(String namespace) {
+                return Arrays.asList(
+                    new OverrideEntry("APP_B", "1"),
+                    new OverrideEntry("APP_A", "1"),
+                    new OverrideEntry("APP_A", "2"),
+                    new OverrideEntry("OTHER_A", "1"));
+            }
+        };
+
+        Assert.assertEquals(merge(custom), env("APP_A", "2", "APP_B", "1"));
+        Assert.assertEquals(merge(custom, OverrideSources.environment(env("APP_A", "3"))), env("APP_A", "3", "APP_B", "1"));
+    }
+
+    @Test
+    public void testDottedPropertiesBecomeVariables() throws IOException {
+        final Map<String, String> merged = merge(OverrideSources.properties(props(
+            "app.server.port", "1",
+            "APP.max_size", "2",
+            "app.http-client.timeout", "3",
+            "app.servers.name=primary.port", "4",
+            "app.", "5",
+            "app", "6",
+            "application.port", "7",
+            "other.port", "8")));
+
+        Assert.assertEquals(merged, env(
+            "APP_SERVER_PORT", "1",
+            "APP_MAX__SIZE", "2",
+            "APP_HTTP___CLIENT_TIMEOUT", "3",
+            "APP_SERVERS_NAME_____PRIMARY_PORT", "4"));
+    }
+
+    @Test
+    public void testDirectoriesHaveAFilePerKey() throws IOException {
+        final Path directory = Files.createTempDirectory("overrides");
+        write(directory.resolve("APP_SERVER_PORT"), "8080\n");
+        write(directory.resolve("APP_NAME"), "a\r\n");
+        write(directory.resolve("APP_MULTI"), "x\ny\n\n");
+        write(directory.resolve("APP_RAW"), " b ");
+        write(directory.resolve("..APP_HIDDEN"), "c");
+        write(directory.resolve("OTHER_PORT"), "1");
+        Files.createDirectory(directory.resolve("APP_NESTED"));
+
+        Assert.assertEquals(merge(OverrideSources.directory(directory)), env(
+            "APP_SERVER_PORT", "8080",
+            "APP_NAME", "a",
+            "APP_MULTI", "x\ny\n",
+            "APP_RAW", " b "));
+    }
+
+    @Test
+    public void testMissingFilesAreEmpty() throws IOException {
+        final Path missing = Files.createTempDirectory("overrides").resolve("missing");
+
+        Assert.assertEquals(merge(OverrideSources.directory(missing)), env());
+        Assert.assertEquals(merge(OverrideSources.dotenv(missing.resolve(".env"))), env());
+    }
+
+    @Test
+    public void testSourcesReplaceTheEnvironment() throws IOException {
+        final Path directory = Files.createTempDirectory("overrides");
+        write(directory.resolve("APP_SERVER_PORT"), "2\n");
+        write(directory.resolve("APP_SERVER_HOST"), "secret\n");
+
+        final EnvironmentSubstitutor substitutor = EnvironmentSubstitutor
+            .builder("APP", source("server:\n  host: localhost\n  port: 1\n"))
+            .mapper(MAPPER)
+            .environment(env("APP_SERVER_HOST", "ignored", "APP_NAME", "ignored"))
+            .source(OverrideSources.directory(directory))
+            .source(OverrideSources.properties(props("app.server.port", "3")))
+            .build();
+
+        final ObjectNode config = substitutor.read("config.yml");
+
+        Assert.assertEquals(config.get("server").get("host").asText(), "secret");
+        Assert.assertEquals(config.get("server").get("port").asInt(), 3);
+        Assert.assertNull(config.get("name"));
+    }
+
+    private static Map<String, String> merge(OverrideSource... sources) throws IOException {
+        final List<Iterator<OverrideEntry>> merged = OverrideSources.merge(Arrays.asList(sources), NamespaceTrie.of("APP"));
+        Assert.assertEquals(merged.size(), 1);
+
+        final Map<String, String> entries = new LinkedHashMap<>();
+        for (Iterator<OverrideEntry> it = merged.get(0); it.hasNext(); ) {
+            final OverrideEntry entry = it.next();
+            Assert.assertNull(entries.put(entry.getKey(), entry.getValue()), entry.getKey());
+        }
+        return entries;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        file.toFile().deleteOnExit();
+    }
+
+    private static ConfigurationSourceProvider source(final String yaml) {
+        return new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private static Properties props(String... pairs) {
+        final Properties properties = new Properties();
+        for (int i = 0; i < pairs.length; i += 2) {
+            properties.setProperty(pairs[i], pairs[i + 1]);
+        }
+        return properties;
+    }
+
+    private static Map<String, String> env(String... pairs) {
+        final Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            environment.put(pairs[i], pairs[i + 1]);
+        }
+        return environment;
+    }
+}
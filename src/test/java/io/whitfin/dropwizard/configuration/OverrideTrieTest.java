@@ -0,0 +1,107 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class OverrideTrieTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testChildOrdering() {
+        final OverrideTrie trie = new OverrideTrie();
+
+        insert(trie, "v", PathToken.field("servers"), PathToken.key("name", "primary"));
+        insert(trie, "v", PathToken.field("servers"), PathToken.index(10));
+        insert(trie, "v", PathToken.field("servers"), PathToken.field("b"));
+        insert(trie, "v", PathToken.field("servers"), PathToken.key("name", "a"));
+        insert(trie, "v", PathToken.field("servers"), PathToken.index(2));
+        insert(trie, "v", PathToken.field("servers"), PathToken.wildcard());
+        insert(trie, "v", PathToken.field("servers"), PathToken.field("a"));
+
+        final List<PathToken> order = new ArrayList<>();
+        for (Map.Entry<PathToken, OverrideTrie> entry : trie.child(PathToken.field("servers")).children()) {
+            order.add(entry.getKey());
+        }
+
+        Assert.assertEquals(order, Arrays.asList(
+            PathToken.wildcard(),
+            PathToken.field("a"),
+            PathToken.field("b"),
+            PathToken.index(2),
+            PathToken.index(10),
+            PathToken.key("name", "a"),
+            PathToken.key("name", "primary")
+        ));
+    }
+
+    @Test
+    public void testWildcardChildrenAreShared() {
+        final OverrideTrie trie = new OverrideTrie();
+
+        insert(trie, "1", PathToken.field("servers"), PathToken.wildcard(), PathToken.field("port"));
+        insert(trie, "h", PathToken.field("servers"), PathToken.wildcard(), PathToken.field("host"));
+
+        final OverrideTrie servers = trie.child(PathToken.field("servers"));
+        Assert.assertEquals(servers.children().size(), 1);
+        Assert.assertEquals(servers.child(PathToken.wildcard()).children().size(), 2);
+    }
+
+    @Test
+    public void testKeyedChildrenAreMatchedLoosely() {
+        final OverrideTrie trie = new OverrideTrie();
+
+        insert(trie, "1", PathToken.field("servers"), PathToken.key("Name", "Replica-A"), PathToken.field("port"));
+        insert(trie, "h", PathToken.field("servers"), PathToken.key("name", "replica_a"), PathToken.field("host"));
+
+        Assert.assertEquals(trie.child(PathToken.field("servers")).children().size(), 1);
+    }
+
+    @Test
+    public void testSpecificChildrenWinOverWildcards() throws Exception {
+        final ObjectNode config = (ObjectNode) MAPPER.readTree(
+            "{\"servers\":[{\"name\":\"a\",\"port\":1},{\"name\":\"primary\",\"port\":2},{\"port\":3}]}");
+
+        final OverrideTrie trie = new OverrideTrie();
+        insert(trie, "wildcard", PathToken.field("servers"), PathToken.wildcard(), PathToken.field("port"));
+        insert(trie, "keyed", PathToken.field("servers"), PathToken.key("name", "primary"), PathToken.field("port"));
+        insert(trie, "indexed", PathToken.field("servers"), PathToken.index(2), PathToken.field("port"));
+
+        Assert.assertEquals(trie.apply(config), 3);
+
+        final JsonNode servers = config.get("servers");
+        Assert.assertEquals(servers.get(0).get("port").asText(), "wildcard");
+        Assert.assertEquals(servers.get(1).get("port").asText(), "keyed");
+        Assert.assertEquals(servers.get(2).get("port").asText(), "indexed");
+    }
+
+    @Test
+    public void testUnmatchedKeysAreReported() throws Exception {
+        final ObjectNode config = (ObjectNode) MAPPER.readTree("{\"servers\":[{\"name\":\"a\"}]}");
+
+        final OverrideTrie trie = new OverrideTrie();
+        insert(trie, "V", PathToken.field("servers"), PathToken.key("name", "b"), PathToken.field("port"));
+
+        final SubstitutionReport.Collector collector = new SubstitutionReport.Collector(FailureMode.LENIENT);
+        Assert.assertEquals(trie.apply(config, collector), 0);
+
+        final List<SubstitutionReport.Failure> failures = collector.report().getFailures();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(failures.get(0).getReason(), SubstitutionReport.Reason.UNMATCHED_ELEMENT);
+        Assert.assertEquals(failures.get(0).getPath(), "servers[name=b].port");
+        Assert.assertEquals(config.toString(), "{\"servers\":[{\"name\":\"a\"}]}");
+    }
+
+    private static void insert(OverrideTrie trie, String value, PathToken... path) {
+        trie.insert(Arrays.asList(path), OverrideValue.of("V", TextNode.valueOf(value)));
+    }
+}
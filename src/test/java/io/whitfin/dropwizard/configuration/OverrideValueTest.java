@@ -0,0 +1,118 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class OverrideValueTest {
+
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper(new YAMLFactory());
+
+    private static final ValueParser PARSER = new ValueParser(MAPPER);
+
+    @Test
+    public void testStringTargetsKeepRawValues() {
+        Assert.assertEquals(value("0123").resolve(ValueType.TEXT), TextNode.valueOf("0123"));
+        Assert.assertEquals(value("true").resolve(ValueType.TEXT), TextNode.valueOf("true"));
+        Assert.assertEquals(value("null").resolve(ValueType.TEXT), TextNode.valueOf("null"));
+        Assert.assertEquals(value("1.5").resolve(ValueType.TEXT), TextNode.valueOf("1.5"));
+    }
+
+    @Test
+    public void testScalarTargetsAreCoerced() {
+        Assert.assertEquals(value("8080").resolve(ValueType.INTEGER), IntNode.valueOf(8080));
+        Assert.assertEquals(value("8080").resolve(ValueType.DECIMAL), IntNode.valueOf(8080));
+        Assert.assertEquals(value("0.5").resolve(ValueType.DECIMAL), DoubleNode.valueOf(0.5));
+        Assert.assertEquals(value("TRUE").resolve(ValueType.BOOLEAN), BooleanNode.TRUE);
+    }
+
+    @Test
+    public void testMismatchedValuesFallBackToParsing() {
+        Assert.assertEquals(value("abc").resolve(ValueType.INTEGER), TextNode.valueOf("abc"));
+        Assert.assertEquals(value("1.5").resolve(ValueType.INTEGER), DoubleNode.valueOf(1.5));
+        Assert.assertEquals(value("1").resolve(ValueType.BOOLEAN), IntNode.valueOf(1));
+        Assert.assertTrue(value("").resolve(ValueType.INTEGER).isTextual());
+    }
+
+    @Test
+    public void testUnknownTargetsAreParsed() {
+        Assert.assertEquals(value("8080").resolve(ValueType.ANY), IntNode.valueOf(8080));
+        Assert.assertEquals(value("true").resolve(ValueType.ANY), BooleanNode.TRUE);
+        Assert.assertTrue(value("null").resolve(ValueType.ANY).isNull());
+        Assert.assertTrue(value("{\"a\":1}").resolve(ValueType.ANY).isObject());
+    }
+
+    @Test
+    public void testDeclaredTypesWinOverTargets() {
+        final OverrideValue declared = new OverrideValue("V", "0123", ValueType.TEXT, PARSER);
+        Assert.assertEquals(declared.resolve(ValueType.INTEGER), TextNode.valueOf("0123"));
+
+        final OverrideValue any = new OverrideValue("V", "10", ValueType.ANY, PARSER);
+        Assert.assertEquals(any.resolve(ValueType.TEXT), TextNode.valueOf("10"));
+    }
+
+    @Test
+    public void testTypedValuesAreNeverCoerced() {
+        final OverrideValue typed = OverrideValue.of("V", TextNode.valueOf("1"));
+
+        Assert.assertEquals(typed.resolve(ValueType.INTEGER), TextNode.valueOf("1"));
+        Assert.assertEquals(typed.resolve(ValueType.BOOLEAN), TextNode.valueOf("1"));
+    }
+
+    @Test
+    public void testScalarsAreSharedAndContainersCopied() {
+        final OverrideValue scalar = value("8080");
+        Assert.assertSame(scalar.resolve(ValueType.INTEGER), scalar.resolve(ValueType.INTEGER));
+
+        final OverrideValue container = value("{\"a\":1}");
+        final JsonNode first = container.resolve(ValueType.ANY);
+        final JsonNode second = container.resolve(ValueType.ANY);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(first, second);
+    }
+
+    @Test
+    public void testTypesOfNodes() {
+        Assert.assertEquals(ValueType.of((JsonNode) null), ValueType.ANY);
+        Assert.assertEquals(ValueType.of(TextNode.valueOf("x")), ValueType.TEXT);
+        Assert.assertEquals(ValueType.of(IntNode.valueOf(1)), ValueType.INTEGER);
+        Assert.assertEquals(ValueType.of(DoubleNode.valueOf(1)), ValueType.DECIMAL);
+        Assert.assertEquals(ValueType.of(BooleanNode.TRUE), ValueType.BOOLEAN);
+        Assert.assertEquals(ValueType.of(MAPPER.createObjectNode()), ValueType.ANY);
+    }
+
+    @Test
+    public void testTypesOfTokens() {
+        Assert.assertEquals(ValueType.of(JsonToken.VALUE_STRING), ValueType.TEXT);
+        Assert.assertEquals(ValueType.of(JsonToken.VALUE_NUMBER_INT), ValueType.INTEGER);
+        Assert.assertEquals(ValueType.of(JsonToken.VALUE_NUMBER_FLOAT), ValueType.DECIMAL);
+        Assert.assertEquals(ValueType.of(JsonToken.VALUE_FALSE), ValueType.BOOLEAN);
+        Assert.assertEquals(ValueType.of(JsonToken.VALUE_NULL), ValueType.ANY);
+    }
+
+    @Test
+    public void testTypesOfJavaTypes() {
+        Assert.assertEquals(ValueType.of(MAPPER.constructType(String.class)), ValueType.TEXT);
+        Assert.assertEquals(ValueType.of(MAPPER.constructType(TimeUnit.class)), ValueType.TEXT);
+        Assert.assertEquals(ValueType.of(MAPPER.constructType(int.class)), ValueType.INTEGER);
+        Assert.assertEquals(ValueType.of(MAPPER.constructType(Long.class)), ValueType.INTEGER);
+        Assert.assertEquals(ValueType.of(MAPPER.constructType(double.class)), ValueType.DECIMAL);
+        Assert.assertEquals(ValueType.of(MAPPER.constructType(Boolean.class)), ValueType.BOOLEAN);
+        Assert.assertEquals(ValueType.of(MAPPER.constructType(Duration.class)), ValueType.ANY);
+    }
+
+    private static OverrideValue value(String raw) {
+        return new OverrideValue("V", raw, null, PARSER);
+    }
+}
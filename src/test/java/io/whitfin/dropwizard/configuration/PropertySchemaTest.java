@@ -0,0 +1,191 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.Configuration;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PropertySchemaTest {
+
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper(new YAMLFactory());
+
+    private static final PropertySchema SCHEMA = PropertySchema.of(MAPPER, TestConfiguration.class);
+
+    public static class TestConfiguration extends Configuration {
+
+        @JsonProperty
+        public Shape shape;
+
+        @JsonProperty
+        public List<Shape> shapes;
+
+        @JsonProperty
+        public Map<String, Integer> limits;
+
+        @JsonProperty
+        public Settings settings;
+
+        @JsonProperty
+        public Duration timeout;
+
+        @JsonProperty
+        public TestConfiguration parent;
+    }
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+    @JsonSubTypes({
+        @JsonSubTypes.Type(value = Circle.class, name = "circle"),
+        @JsonSubTypes.Type(value = Square.class, name = "square")
+    })
+    public abstract static class Shape {
+
+        @JsonProperty
+        public String colour;
+    }
+
+    public static class Circle extends Shape {
+
+        @JsonProperty
+        public double radius;
+    }
+
+    public static class Square extends Shape {
+
+        @JsonProperty
+        public int side;
+    }
+
+    public static class Settings {
+
+        @JsonProperty
+        public String name;
+
+        public final Map<String, Object> others = new HashMap<>();
+
+        @JsonAnySetter
+        public void set(String key, Object value) {
+            this.others.put(key, value);
+        }
+    }
+
+    @Test
+    public void testLongestRunsOfSegmentsWin() {
+        assertResolves("SERVER_APPLICATION_CONNECTORS", "server.applicationConnectors", ValueType.ANY);
+        assertResolves("SERVER_APPLICATION_CONNECTORS_0_PORT", "server.applicationConnectors[0].port", ValueType.INTEGER);
+        assertResolves("SERVER_MAX_THREADS", "server.maxThreads", ValueType.INTEGER);
+        assertResolves("SERVER_MAXTHREADS", "server.maxThreads", ValueType.INTEGER);
+        assertResolves("LOGGING_LEVEL", "logging.level", ValueType.TEXT);
+    }
+
+    @Test
+    public void testPolymorphicTypesAcceptEverySubtype() {
+        assertResolves("SHAPE_COLOUR", "shape.colour", ValueType.TEXT);
+        assertResolves("SHAPE_RADIUS", "shape.radius", ValueType.DECIMAL);
+        assertResolves("SHAPE_SIDE", "shape.side", ValueType.INTEGER);
+        assertResolves("SHAPE_TYPE", "shape.type", ValueType.TEXT);
+        assertResolves("SERVER_TYPE", "server.type", ValueType.TEXT);
+        assertUnknown("SHAPE_AREA");
+    }
+
+    @Test
+    public void testContainers() {
+        assertResolves("SHAPES_0_RADIUS", "shapes[0].radius", ValueType.DECIMAL);
+        assertResolves("SHAPES_STAR_SIDE", "shapes.*.side", ValueType.INTEGER);
+        assertResolves("LIMITS_REQUESTS", "limits.requests", ValueType.INTEGER);
+        assertResolves("LIMITS_0", "limits.0", ValueType.INTEGER);
+        assertUnknown("SHAPES_RADIUS");
+        assertUnknown("LIMITS_NAME_____X");
+    }
+
+    @Test
+    public void testAnySetterBeansAcceptAnything() {
+        assertResolves("SETTINGS_NAME", "settings.name", ValueType.TEXT);
+        assertResolves("SETTINGS_OTHER_VALUE", "settings.other.value", ValueType.ANY);
+    }
+
+    @Test
+    public void testScalarsAndRecursiveTypes() {
+        assertResolves("TIMEOUT", "timeout", ValueType.ANY);
+        assertResolves("PARENT_PARENT_SHAPE_SIDE", "parent.parent.shape.side", ValueType.INTEGER);
+        assertUnknown("TIMEOUT_SECONDS");
+        assertUnknown("SHAPE_COLOUR_RED");
+    }
+
+    @Test
+    public void testUnknownPropertiesAreRejected() {
+        assertUnknown("NOPE");
+        assertUnknown("SERVER_NOPE");
+        assertUnknown("SERVER_STAR");
+    }
+
+    @Test
+    public void testSubstitutorsRejectUnknownProperties() throws IOException {
+        final Map<String, String> environment = new HashMap<>();
+        environment.put("APP_SHAPE_RADIUS", "2.5");
+        environment.put("APP_SHAPE_AREA", "1");
+        environment.put("APP_SERVER_APPLICATION_CONNECTORS_0_PORT", "9000");
+
+        final EnvironmentSubstitutor substitutor = EnvironmentSubstitutor
+            .builder("APP", source("shape:\n  type: circle\n  radius: 1\n"))
+            .mapper(MAPPER)
+            .environment(environment)
+            .configuration(TestConfiguration.class)
+            .build();
+
+        final ObjectNode config = substitutor.read("config.yml");
+
+        Assert.assertEquals(config.get("shape").get("radius").doubleValue(), 2.5);
+        Assert.assertEquals(config.get("server").get("applicationConnectors").get(0).get("port").intValue(), 9000);
+        Assert.assertNull(config.get("shape").get("area"));
+        Assert.assertEquals(substitutor.getUnknownOverrides(), Collections.singletonList("APP_SHAPE_AREA"));
+
+        final List<SubstitutionReport.Failure> failures = substitutor.getReport().getFailures();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(failures.get(0).getReason(), SubstitutionReport.Reason.UNKNOWN_PROPERTY);
+        Assert.assertEquals(failures.get(0).getPath(), "shape.area");
+    }
+
+    private static void assertResolves(String key, String path, ValueType type) {
+        final List<PathToken> resolved = new ArrayList<>();
+        Assert.assertEquals(SCHEMA.resolve(lex(key), resolved), type, key);
+        Assert.assertEquals(PathToken.join(resolved), path, key);
+    }
+
+    private static void assertUnknown(String key) {
+        Assert.assertNull(SCHEMA.resolve(lex(key), new ArrayList<PathToken>()), key);
+    }
+
+    private static List<PathToken> lex(String key) {
+        final List<PathToken> tokens = new ArrayList<>();
+        Assert.assertTrue(new KeyLexer("star").lex(key, 0, key.length(), tokens), key);
+        return tokens;
+    }
+
+    private static ConfigurationSourceProvider source(final String yaml) {
+        return new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+}
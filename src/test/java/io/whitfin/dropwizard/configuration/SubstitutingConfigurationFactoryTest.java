@@ -0,0 +1,125 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.Application;
+import io.dropwizard.Configuration;
+import io.dropwizard.configuration.ConfigurationFactory;
+import io.dropwizard.configuration.ConfigurationParsingException;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SubstitutingConfigurationFactoryTest {
+
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper(new YAMLFactory());
+
+    public static class TestConfiguration extends Configuration {
+
+        @JsonProperty
+        public String name;
+
+        @JsonProperty
+        public int port;
+    }
+
+    @Test
+    public void testSubstitutorsBindFromTheTree() throws Exception {
+        final AtomicInteger opens = new AtomicInteger();
+        final EnvironmentSubstitutor substitutor = new EnvironmentSubstitutor(
+            "APP", source("name: base\nport: 1\n", opens), MAPPER,
+            Collections.singletonMap("APP_PORT", "2")) {
+
+            @Override
+            public InputStream open(String path) {
+                throw new AssertionError("Expected the tree to be read directly");
+            }
+        };
+
+        final TestConfiguration configuration = factory().build(substitutor, "config.yml");
+
+        Assert.assertEquals(configuration.name, "base");
+        Assert.assertEquals(configuration.port, 2);
+        Assert.assertEquals(opens.get(), 1);
+    }
+
+    @Test
+    public void testMalformedConfigurationsFallBackToTheDelegate() throws Exception {
+        final AtomicInteger opens = new AtomicInteger();
+        final EnvironmentSubstitutor substitutor = new EnvironmentSubstitutor(
+            "APP", source("name: [unclosed\n", opens), MAPPER, env());
+
+        try {
+            factory().build(substitutor, "config.yml");
+            Assert.fail("Expected the configuration to fail to parse");
+        } catch (ConfigurationParsingException e) {
+            Assert.assertTrue(e.getMessage().contains("config.yml"));
+        }
+
+        // once by the substitutor, and once more by the delegate
+        Assert.assertEquals(opens.get(), 2);
+    }
+
+    @Test
+    public void testOtherProvidersAreStreamed() throws Exception {
+        final AtomicInteger opens = new AtomicInteger();
+        final TestConfiguration configuration = factory().build(source("name: plain\nport: 3\n", opens), "config.yml");
+
+        Assert.assertEquals(configuration.name, "plain");
+        Assert.assertEquals(configuration.port, 3);
+        Assert.assertEquals(opens.get(), 1);
+    }
+
+    @Test
+    public void testBundleInstallsTheSubstitutor() throws Exception {
+        final Bootstrap<TestConfiguration> bootstrap = new Bootstrap<>(new Application<TestConfiguration>() {
+            @Override
+            public void run(TestConfiguration configuration, Environment environment) { }
+        });
+        bootstrap.setConfigurationSourceProvider(source("name: bundled\nport: 4\n", new AtomicInteger()));
+
+        new EnvironmentSubstitutorBundle<TestConfiguration>("ENVIRONMENT_SUBSTITUTOR_BUNDLE_TEST").initialize(bootstrap);
+
+        Assert.assertTrue(bootstrap.getConfigurationSourceProvider() instanceof EnvironmentSubstitutor);
+        Assert.assertTrue(bootstrap.getConfigurationFactoryFactory() instanceof SubstitutingConfigurationFactoryFactory);
+
+        final ConfigurationFactory<TestConfiguration> factory = bootstrap.getConfigurationFactoryFactory().create(
+            TestConfiguration.class, bootstrap.getValidatorFactory().getValidator(), bootstrap.getObjectMapper(), "dw");
+        final TestConfiguration configuration = factory.build(bootstrap.getConfigurationSourceProvider(), "config.yml");
+
+        Assert.assertTrue(factory instanceof SubstitutingConfigurationFactory);
+        Assert.assertEquals(configuration.name, "bundled");
+        Assert.assertEquals(configuration.port, 4);
+    }
+
+    private static SubstitutingConfigurationFactory<TestConfiguration> factory() {
+        return new SubstitutingConfigurationFactory<>(
+            TestConfiguration.class, Validators.newValidator(), Jackson.newObjectMapper(), "dw");
+    }
+
+    private static ConfigurationSourceProvider source(final String yaml, final AtomicInteger opens) {
+        return new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                opens.incrementAndGet();
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private static Map<String, String> env() {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,110 @@
+package io.whitfin.dropwizard.configuration;
+
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+public class SubstitutionCacheTest {
+
+    @Test
+    public void testRepeatedSubstitutionsHitTheCache() throws IOException {
+        final SubstitutionCache cache = new SubstitutionCache(16);
+
+        open(builder(cache, "list: []\n", "APP_LIST_8"));
+        open(builder(cache, "list: []\n", "APP_LIST_8"));
+
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void testLimitsAreKeyed() throws IOException {
+        final SubstitutionCache cache = new SubstitutionCache(16);
+
+        open(builder(cache, "list: []\n", "APP_LIST_8"));
+
+        try {
+            open(builder(cache, "list: []\n", "APP_LIST_8").limits(SubstitutionLimits.builder().maxIndexGap(4).build()));
+            Assert.fail("Expected the index gap to be violated");
+        } catch (SubstitutionException e) {
+            Assert.assertEquals(e.getViolations().get(0).getLimit(), SubstitutionLimits.Limit.INDEX_GAP);
+        }
+
+        Assert.assertEquals(cache.getHits(), 0);
+    }
+
+    @Test
+    public void testHitsReportFailures() throws IOException {
+        final SubstitutionCache cache = new SubstitutionCache(16);
+
+        open(builder(cache, "server: 1\n", "APP_SERVER_PORT"));
+
+        final EnvironmentSubstitutor substitutor = builder(cache, "server: 1\n", "APP_SERVER_PORT").build();
+        substitutor.open("config.yml").close();
+
+        final List<SubstitutionReport.Failure> failures = substitutor.getReport().getFailures();
+        Assert.assertEquals(cache.getHits(), 1);
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(failures.get(0).getReason(), SubstitutionReport.Reason.CONFLICT);
+    }
+
+    @Test
+    public void testHitsFailFast() throws IOException {
+        final SubstitutionCache cache = new SubstitutionCache(16);
+
+        open(builder(cache, "server: 1\n", "APP_SERVER_PORT"));
+
+        try {
+            open(builder(cache, "server: 1\n", "APP_SERVER_PORT").failureMode(FailureMode.FAIL_FAST));
+            Assert.fail("Expected the conflict to fail fast");
+        } catch (SubstitutionException e) {
+            Assert.assertEquals(e.getReport().getFailures().get(0).getReason(), SubstitutionReport.Reason.CONFLICT);
+        }
+
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void testFailedSubstitutionsAreNotCached() throws IOException {
+        final SubstitutionCache cache = new SubstitutionCache(16);
+
+        try {
+            open(builder(cache, "server: 1\n", "APP_SERVER_PORT").failureMode(FailureMode.FAIL_FAST));
+            Assert.fail("Expected the conflict to fail fast");
+        } catch (SubstitutionException e) {
+            Assert.assertEquals(cache.size(), 0);
+        }
+
+        open(builder(cache, "server: 1\n", "APP_SERVER_PORT"));
+
+        Assert.assertEquals(cache.getHits(), 0);
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    private static EnvironmentSubstitutor.Builder builder(SubstitutionCache cache, String yaml, String variable) {
+        return EnvironmentSubstitutor
+            .builder("APP", source(yaml))
+            .environment(Collections.singletonMap(variable, "1"))
+            .cache(cache);
+    }
+
+    private static void open(EnvironmentSubstitutor.Builder builder) throws IOException {
+        builder.build().open("config.yml").close();
+    }
+
+    private static ConfigurationSourceProvider source(final String yaml) {
+        return new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SubstitutionMetricsTest {
+
+    private static final String YAML = "name: base\nport: 1\n";
+
+    @DataProvider
+    public Object[][] modes() {
+        return new Object[][] {
+            { SubstitutionMode.TREE },
+            { SubstitutionMode.STREAMING },
+            { SubstitutionMode.SPLICE }
+        };
+    }
+
+    @Test(dataProvider = "modes")
+    public void testModesCountTheSameOverrides(SubstitutionMode mode) throws IOException {
+        final MetricRegistry registry = new MetricRegistry();
+        final EnvironmentSubstitutor substitutor = builder(registry, YAML, env("APP_PORT", "2", "APP_NAME_0", "x"))
+            .mode(mode)
+            .build();
+
+        drain(substitutor.open("config.yml"));
+
+        Assert.assertEquals(counter(registry, "applied"), 1);
+        Assert.assertEquals(counter(registry, "skipped"), 1);
+        Assert.assertEquals(counter(registry, "failed"), 1);
+        Assert.assertEquals(registry.timer(name("apply")).getCount(), 1);
+        Assert.assertEquals(registry.histogram(name("bytes-out")).getCount(), 1);
+        Assert.assertEquals(substitutor.getReport().getFailures().size(), 1);
+    }
+
+    @Test
+    public void testSplicesCountEveryOverride() throws IOException {
+        final MetricRegistry registry = new MetricRegistry();
+        final EnvironmentSubstitutor substitutor = builder(registry, YAML, env("APP_PORT", "2", "APP_NAME", "x"))
+            .mode(SubstitutionMode.SPLICE)
+            .build();
+
+        drain(substitutor.open("config.yml"));
+
+        Assert.assertEquals(counter(registry, "applied"), 2);
+        Assert.assertEquals(counter(registry, "skipped"), 0);
+        Assert.assertEquals(counter(registry, "failed"), 0);
+    }
+
+    @Test
+    public void testStreamsAreMeasuredOnClose() throws IOException {
+        final MetricRegistry registry = new MetricRegistry();
+        final EnvironmentSubstitutor substitutor = builder(registry, YAML, env("APP_PORT", "2", "APP_EXTRA", "[1, 2]"))
+            .mode(SubstitutionMode.STREAMING)
+            .build();
+
+        final InputStream in = substitutor.open("config.yml");
+
+        int length = 0;
+        final byte[] buffer = new byte[256];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            length += read;
+        }
+
+        Assert.assertEquals(registry.timer(name("apply")).getCount(), 0);
+
+        in.close();
+        in.close();
+
+        Assert.assertEquals(registry.timer(name("apply")).getCount(), 1);
+        Assert.assertEquals(registry.histogram(name("bytes-out")).getSnapshot().getMax(), length);
+        Assert.assertEquals(registry.histogram(name("nodes")).getSnapshot().getMax(), 6);
+        Assert.assertEquals(counter(registry, "applied"), 2);
+    }
+
+    @Test
+    public void testCacheHitsAreCounted() throws IOException {
+        final MetricRegistry registry = new MetricRegistry();
+        final EnvironmentSubstitutor substitutor = builder(registry, YAML, env("APP_PORT", "2", "APP_NAME_0", "x"))
+            .cache(new SubstitutionCache(4))
+            .build();
+
+        drain(substitutor.open("config.yml"));
+        drain(substitutor.open("config.yml"));
+
+        Assert.assertEquals(counter(registry, "applied"), 2);
+        Assert.assertEquals(counter(registry, "skipped"), 2);
+        Assert.assertEquals(counter(registry, "failed"), 2);
+        Assert.assertEquals(registry.histogram(name("bytes-out")).getCount(), 2);
+    }
+
+    @Test
+    public void testCompileFailuresAreCountedPerSubstitution() throws IOException {
+        final MetricRegistry registry = new MetricRegistry();
+        final EnvironmentSubstitutor substitutor = builder(registry, YAML, env("APP_PORT", "2", "APP_0_", "x"))
+            .build();
+
+        substitutor.read("config.yml");
+        substitutor.read("config.yml");
+
+        Assert.assertEquals(counter(registry, "applied"), 2);
+        Assert.assertEquals(counter(registry, "skipped"), 0);
+        Assert.assertEquals(counter(registry, "failed"), 2);
+    }
+
+    private static EnvironmentSubstitutor.Builder builder(MetricRegistry registry, final String yaml, Map<String, String> environment) {
+        final ConfigurationSourceProvider source = new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        final SubstitutionMetrics metrics = new SubstitutionMetrics();
+        metrics.register(registry);
+
+        return EnvironmentSubstitutor
+            .builder("APP", source)
+            .environment(environment)
+            .metrics(metrics);
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        try (final InputStream stream = in) {
+            final byte[] buffer = new byte[256];
+            while (stream.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+
+    private static long counter(MetricRegistry registry, String name) {
+        return registry.counter(name(name)).getCount();
+    }
+
+    private static String name(String name) {
+        return MetricRegistry.name(EnvironmentSubstitutor.class, name);
+    }
+
+    private static Map<String, String> env(String... pairs) {
+        final Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            environment.put(pairs[i], pairs[i + 1]);
+        }
+        return environment;
+    }
+}
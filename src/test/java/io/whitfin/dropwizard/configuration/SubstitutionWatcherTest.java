@@ -0,0 +1,174 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.configuration.FileConfigurationSourceProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class SubstitutionWatcherTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+    @Test
+    public void testReapplyReportsFailures() throws IOException {
+        final EnvironmentSubstitutor substitutor = builder().build();
+        final ObjectNode base = (ObjectNode) MAPPER.readTree("server: 1\n");
+
+        Assert.assertEquals(substitutor.snapshot(null, base).configuration(), base);
+
+        final List<SubstitutionReport.Failure> failures = substitutor.getReport().getFailures();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(failures.get(0).getReason(), SubstitutionReport.Reason.CONFLICT);
+    }
+
+    @Test
+    public void testReapplyFailsFast() throws IOException {
+        final EnvironmentSubstitutor substitutor = builder().failureMode(FailureMode.FAIL_FAST).build();
+        final ObjectNode previousBase = (ObjectNode) MAPPER.readTree("server: {}\n");
+        final SubstitutionSnapshot previous = substitutor.snapshot(null, previousBase);
+
+        Assert.assertEquals(previous.configuration().get("server").get("port").asInt(), 2);
+
+        try {
+            substitutor.snapshot(previous, (ObjectNode) MAPPER.readTree("server: 1\n"));
+            Assert.fail("Expected the conflict to fail fast");
+        } catch (SubstitutionException e) {
+            Assert.assertEquals(e.getReport().getFailures().get(0).getReason(), SubstitutionReport.Reason.CONFLICT);
+        }
+    }
+
+    @Test
+    public void testReusedSubtreesReplayTheirFailures() throws IOException {
+        final EnvironmentSubstitutor substitutor = builder(env("APP_NAME_0", "x", "APP_SERVER_TLS", "{\"a\":1}")).build();
+        final SubstitutionSnapshot previous = substitutor.snapshot(null, (ObjectNode) MAPPER.readTree("name: a\nserver: {}\n"));
+        final SubstitutionSnapshot current = substitutor.snapshot(previous, (ObjectNode) MAPPER.readTree("name: a\nserver: {}\nextra: 1\n"));
+
+        Assert.assertEquals(current.getVersion(), 2);
+        Assert.assertEquals(current.configuration().get("extra").asInt(), 1);
+        Assert.assertSame(current.configuration().get("server").get("tls"), previous.configuration().get("server").get("tls"));
+
+        final List<SubstitutionReport.Failure> failures = substitutor.getReport().getFailures();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(failures.get(0).getReason(), SubstitutionReport.Reason.CONFLICT);
+        Assert.assertEquals(failures.get(0).getPath(), "name[0]");
+    }
+
+    @Test
+    public void testChangedSubtreesAreReapplied() throws IOException {
+        final EnvironmentSubstitutor substitutor = builder(env("APP_NAME_0", "x", "APP_SERVER_TLS", "{\"a\":1}")).build();
+        final SubstitutionSnapshot previous = substitutor.snapshot(null, (ObjectNode) MAPPER.readTree("name: a\nserver: {}\n"));
+        final SubstitutionSnapshot current = substitutor.snapshot(previous, (ObjectNode) MAPPER.readTree("name: [a]\nserver: {}\n"));
+
+        Assert.assertEquals(current.configuration().get("name").get(0).asText(), "x");
+        Assert.assertTrue(substitutor.getReport().isEmpty());
+    }
+
+    @Test
+    public void testRecompiledPlansOnlyReapplyChangedOverrides() throws IOException {
+        final File file = File.createTempFile("overrides", ".env");
+        file.deleteOnExit();
+        write(file, "APP_SERVER_TLS={\"a\":1}\nAPP_SERVER_PORT=2\n");
+
+        final EnvironmentSubstitutor substitutor = builder(env())
+            .source(OverrideSources.dotenv(file.toPath()))
+            .build();
+
+        final ObjectNode base = (ObjectNode) MAPPER.readTree("server: {}\n");
+        final SubstitutionSnapshot previous = substitutor.snapshot(null, base);
+
+        Assert.assertFalse(substitutor.recompile());
+
+        write(file, "APP_SERVER_TLS={\"a\":1}\nAPP_SERVER_PORT=3\n");
+
+        Assert.assertTrue(substitutor.recompile());
+
+        final SubstitutionSnapshot current = substitutor.snapshot(previous, base);
+        Assert.assertEquals(current.configuration().get("server").get("port").asInt(), 3);
+        Assert.assertSame(current.configuration().get("server").get("tls"), previous.configuration().get("server").get("tls"));
+    }
+
+    @Test
+    public void testSourceChangesAreReloaded() throws Exception {
+        final File file = File.createTempFile("config", ".yml");
+        file.deleteOnExit();
+        write(file, "server: {}\n");
+
+        final File dotenv = new File(file.getParentFile(), file.getName() + ".env");
+        dotenv.deleteOnExit();
+        write(dotenv, "APP_SERVER_HOST=a\n");
+
+        final EnvironmentSubstitutor substitutor = builder(env())
+            .source(OverrideSources.dotenv(dotenv.toPath()))
+            .build();
+
+        try (final SubstitutionWatcher watcher = substitutor.watch(file.getPath(), 10, TimeUnit.MILLISECONDS)) {
+            Assert.assertEquals(watcher.getSnapshot().getConfiguration().get("server").get("host").asText(), "a");
+
+            write(dotenv, "APP_SERVER_HOST=b\n");
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (watcher.getSnapshot().getVersion() == 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertNull(watcher.getLastFailure());
+            Assert.assertEquals(watcher.getSnapshot().getVersion(), 2);
+            Assert.assertEquals(watcher.getSnapshot().getConfiguration().get("server").get("host").asText(), "b");
+        }
+    }
+
+    @Test
+    public void testFailedReloadsKeepThePreviousSnapshot() throws Exception {
+        final File file = File.createTempFile("config", ".yml");
+        file.deleteOnExit();
+        write(file, "server: {}\n");
+
+        final EnvironmentSubstitutor substitutor = builder().failureMode(FailureMode.FAIL_FAST).build();
+
+        try (final SubstitutionWatcher watcher = substitutor.watch(file.getPath(), 10, TimeUnit.MILLISECONDS)) {
+            write(file, "server: 1\n");
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (watcher.getLastFailure() == null && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertTrue(watcher.getLastFailure() instanceof SubstitutionException);
+            Assert.assertEquals(watcher.getSnapshot().getVersion(), 1);
+            Assert.assertEquals(watcher.getSnapshot().getConfiguration().get("server").get("port").asInt(), 2);
+        }
+    }
+
+    private static EnvironmentSubstitutor.Builder builder() {
+        return builder(env("APP_SERVER_PORT", "2"));
+    }
+
+    private static EnvironmentSubstitutor.Builder builder(Map<String, String> environment) {
+        return EnvironmentSubstitutor
+            .builder("APP", new FileConfigurationSourceProvider())
+            .environment(environment);
+    }
+
+    private static Map<String, String> env(String... pairs) {
+        final Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            environment.put(pairs[i], pairs[i + 1]);
+        }
+        return environment;
+    }
+
+    private static void write(File file, String yaml) throws IOException {
+        Files.write(file.toPath(), yaml.getBytes(StandardCharsets.UTF_8));
+    }
+}
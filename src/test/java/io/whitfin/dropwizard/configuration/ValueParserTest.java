@@ -0,0 +1,117 @@
+package io.whitfin.dropwizard.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.Jackson;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+
+public class ValueParserTest {
+
+    private static final ValueParser PARSER = new ValueParser(Jackson.newObjectMapper(new YAMLFactory()));
+
+    @Test
+    public void testNullLiterals() {
+        for (String value : new String[] { "~", "null", "Null", "NULL" }) {
+            Assert.assertTrue(parse(value).isNull(), value);
+        }
+        for (String value : new String[] { "nULL", "nil", "none" }) {
+            assertText(value);
+        }
+    }
+
+    @Test
+    public void testBooleanLiterals() {
+        for (String value : new String[] { "true", "True", "TRUE" }) {
+            Assert.assertTrue(parse(value).booleanValue(), value);
+        }
+        for (String value : new String[] { "false", "False", "FALSE" }) {
+            Assert.assertFalse(parse(value).asBoolean(true), value);
+            Assert.assertTrue(parse(value).isBoolean(), value);
+        }
+        for (String value : new String[] { "tRUE", "yes", "on", "f" }) {
+            assertText(value);
+        }
+    }
+
+    @Test
+    public void testIntegers() {
+        Assert.assertTrue(parse("0").isInt());
+        Assert.assertEquals(parse("8080").intValue(), 8080);
+        Assert.assertEquals(parse("-1").intValue(), -1);
+        Assert.assertEquals(parse("+5").intValue(), 5);
+        Assert.assertTrue(parse("2147483647").isInt());
+        Assert.assertTrue(parse("2147483648").isLong());
+        Assert.assertTrue(parse("-9223372036854775808").isLong());
+        Assert.assertTrue(parse("9223372036854775808").isBigInteger());
+        Assert.assertEquals(parse("9223372036854775808").bigIntegerValue(), new BigInteger("9223372036854775808"));
+    }
+
+    @Test
+    public void testLeadingZerosStayStrings() {
+        for (String value : new String[] { "0123", "-007", "00", "0123.5" }) {
+            assertText(value);
+        }
+    }
+
+    @Test
+    public void testDecimals() {
+        Assert.assertEquals(parse("1.5").doubleValue(), 1.5);
+        Assert.assertEquals(parse("-0.25").doubleValue(), -0.25);
+        Assert.assertEquals(parse("1e3").doubleValue(), 1000.0);
+        Assert.assertEquals(parse("2.5E-1").doubleValue(), 0.25);
+        Assert.assertEquals(parse("1E+2").doubleValue(), 100.0);
+        Assert.assertTrue(parse("1e3").isDouble());
+
+        for (String value : new String[] { "1.", ".5", "1e", "1e+", "1.5x", "-", "+", "1_000", "0x1F" }) {
+            assertText(value);
+        }
+    }
+
+    @Test
+    public void testStructuredValues() {
+        Assert.assertEquals(parse("{\"a\":1}").get("a").intValue(), 1);
+        Assert.assertEquals(parse("[1,2]").size(), 2);
+        Assert.assertEquals(parse("\"quoted\"").textValue(), "quoted");
+        Assert.assertEquals(parse("\"123\"").getNodeType(), JsonNodeType.STRING);
+    }
+
+    @Test
+    public void testMalformedStructuredValuesFallBackToStrings() {
+        final ValueParser.Result result = PARSER.parse("{\"a\":");
+
+        Assert.assertTrue(result.isFailure());
+        Assert.assertNotNull(result.getError());
+        Assert.assertEquals(result.getNode().textValue(), "{\"a\":");
+    }
+
+    @Test
+    public void testYamlStyleValuesStayStrings() {
+        assertText("a: b");
+        assertText("- a");
+        assertText("key: {nested: 1}");
+    }
+
+    @Test
+    public void testBareStrings() {
+        assertText("");
+        assertText("localhost");
+        assertText(" 1");
+        assertText("1 ");
+    }
+
+    private static JsonNode parse(String value) {
+        final ValueParser.Result result = PARSER.parse(value);
+        Assert.assertFalse(result.isFailure(), value);
+        return result.getNode();
+    }
+
+    private static void assertText(String value) {
+        final JsonNode node = parse(value);
+        Assert.assertTrue(node.isTextual(), value);
+        Assert.assertEquals(node.textValue(), value);
+    }
+}